@@ -0,0 +1,90 @@
+package de.fhg.igd.pcolor.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
+
+/**
+ * sRGB to and from each correlate configuration of {@link CS_CAMLch},
+ * one color at a time and in bulk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CAMLchBench {
+
+	static final int N = 1024;
+
+	@Param
+	CorrelateConfig configuration;
+
+	@Param
+	Distribution distribution;
+
+	CS_CAMLch space;
+
+	float[] rgb;
+	float[] lch;
+	float[] out = new float[3 * N];
+
+	@Setup
+	public void setup() {
+		space = new CS_CAMLch(CS_CAMLch.defaultJChInstance.getViewingconditions(),
+				configuration);
+		rgb = distribution.rgb(N);
+		lch = new float[3 * N];
+		space.fromRGB(rgb, 0, lch, 0, N);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void fromRGB(Blackhole bh) {
+		float[] c = new float[3];
+		for (int i = 0; i < N; i++) {
+			System.arraycopy(rgb, 3 * i, c, 0, 3);
+			bh.consume(space.fromRGB(c));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void toRGB(Blackhole bh) {
+		float[] c = new float[3];
+		for (int i = 0; i < N; i++) {
+			System.arraycopy(lch, 3 * i, c, 0, 3);
+			bh.consume(space.toRGB(c));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public float[] fromRGBBulk() {
+		space.fromRGB(rgb, 0, out, 0, N);
+		return out;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public float[] toRGBBulk() {
+		space.toRGB(lch, 0, out, 0, N);
+		return out;
+	}
+}
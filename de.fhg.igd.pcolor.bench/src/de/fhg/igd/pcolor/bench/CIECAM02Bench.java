@@ -0,0 +1,67 @@
+package de.fhg.igd.pcolor.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.fhg.igd.pcolor.colorspace.CS_CIECAM02;
+import de.fhg.igd.pcolor.colorspace.CS_sRGB;
+
+/**
+ * The CIECAM02 forward (XYZ to all correlates) and inverse (correlates to
+ * XYZ) transforms.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CIECAM02Bench {
+
+	static final int N = 1024;
+
+	@Param
+	Distribution distribution;
+
+	CS_CIECAM02 space = CS_CIECAM02.defaultInstance;
+
+	float[][] xyz = new float[N][];
+	float[][] cam = new float[N][];
+
+	@Setup
+	public void setup() {
+		float[] rgb = distribution.rgb(N);
+		for (int i = 0; i < N; i++) {
+			float[] c = { rgb[3 * i], rgb[3 * i + 1], rgb[3 * i + 2] };
+			xyz[i] = CS_sRGB.instance.toCIEXYZ(c);
+			cam[i] = space.fromCIEXYZ(xyz[i]);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void forward(Blackhole bh) {
+		for (float[] c : xyz)
+			bh.consume(space.fromCIEXYZ(c));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void inverse(Blackhole bh) {
+		for (float[] c : cam)
+			bh.consume(space.toCIEXYZ(c));
+	}
+}
@@ -0,0 +1,125 @@
+package de.fhg.igd.pcolor.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.sRGB;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+import de.fhg.igd.pcolor.util.ColorPredicates;
+import de.fhg.igd.pcolor.util.ColorTools;
+
+/**
+ * Distances, boundary search, parsing and formatting in {@link ColorTools}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColorToolsBench {
+
+	static final int N = 1024;
+
+	/**
+	 * boundary searches are slow, use fewer colors
+	 */
+	static final int BOUNDARY_N = 64;
+
+	@Param
+	Distribution distribution;
+
+	ViewingConditions vc = ViewingConditions.sRGB_typical_envirnonment;
+
+	sRGB[] rgb;
+	CAMLch[] jch = new CAMLch[N];
+	CAMLch[] jmh = new CAMLch[N];
+	CAMLch[] starts = new CAMLch[BOUNDARY_N];
+	String[] html = new String[N];
+	String[] css = new String[N];
+
+	@Setup
+	public void setup() {
+		rgb = distribution.colors(N);
+		CS_CAMLch jmhSpace = new CS_CAMLch(vc, CorrelateConfig.JMh);
+		for (int i = 0; i < N; i++) {
+			jch[i] = new CAMLch(rgb[i], CS_CAMLch.defaultJChInstance);
+			jmh[i] = new CAMLch(rgb[i], jmhSpace);
+			// the notations as they appear in stylesheets
+			html[i] = ColorTools.toHtml(rgb[i], i % 4 == 0);
+			css[i] = ColorTools.toCss(rgb[i], i % 4 == 0);
+			if (i % 3 == 0)
+				html[i] = "#" + html[i].charAt(1) + html[i].charAt(3) + html[i].charAt(5);
+		}
+		for (int i = 0; i < BOUNDARY_N; i++)
+			starts[i] = ColorTools.setChannel(jch[i * (N / BOUNDARY_N)], CAMLch.c, 0);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void distance(Blackhole bh) {
+		for (int i = 1; i < N; i++)
+			bh.consume(ColorTools.distance(rgb[i - 1], rgb[i], vc));
+		bh.consume(ColorTools.distance(rgb[N - 1], rgb[0], vc));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void distanceCAM(Blackhole bh) {
+		for (int i = 1; i < N; i++)
+			bh.consume(ColorTools.distance(jmh[i - 1], jmh[i]));
+		bh.consume(ColorTools.distance(jmh[N - 1], jmh[0]));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BOUNDARY_N)
+	public void determineBoundaryColor(Blackhole bh) {
+		for (CAMLch start : starts)
+			bh.consume(ColorTools.determineBoundaryColor(start, CAMLch.c, 0, 150, 0.01f, ColorPredicates.is_sRGB));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseColorHtml(Blackhole bh) {
+		for (String s : html)
+			bh.consume(ColorTools.parseColor(s));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void parseColorCss(Blackhole bh) {
+		for (String s : css)
+			bh.consume(ColorTools.parseColor(s));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void toHtml(Blackhole bh) {
+		for (PColor c : rgb)
+			bh.consume(ColorTools.toHtml(c, false));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void toHtmlCAM(Blackhole bh) {
+		for (PColor c : jch)
+			bh.consume(ColorTools.toHtml(c, false));
+	}
+}
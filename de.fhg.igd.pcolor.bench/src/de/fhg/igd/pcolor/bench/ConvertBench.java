@@ -0,0 +1,85 @@
+package de.fhg.igd.pcolor.bench;
+
+import java.awt.color.ColorSpace;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CS_CIELab;
+import de.fhg.igd.pcolor.colorspace.CS_CIEXYZ;
+import de.fhg.igd.pcolor.colorspace.CS_sRGB;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
+
+/**
+ * {@link PColor#convert(PColor, ColorSpace)} for every pair of spaces,
+ * including the no-op and the CAM transpose shortcut.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBench {
+
+	static final int N = 1024;
+
+	/**
+	 * the spaces a PColor may be in
+	 */
+	public enum Space {
+		sRGB(CS_sRGB.instance),
+		CIEXYZ(CS_CIEXYZ.instance),
+		CIELab(CS_CIELab.instance),
+		JCh(CS_CAMLch.defaultJChInstance),
+		JMh(new CS_CAMLch(CS_CAMLch.defaultJChInstance.getViewingconditions(), CorrelateConfig.JMh)),
+		JaMbM(CS_CAMLab.defaultJaMbMInstance);
+
+		final ColorSpace space;
+
+		Space(ColorSpace space) {
+			this.space = space;
+		}
+	}
+
+	@Param
+	Space source;
+
+	@Param
+	Space target;
+
+	@Param({ "IMAGE" })
+	Distribution distribution;
+
+	PColor[] colors = new PColor[N];
+
+	@Setup
+	public void setup() {
+		PColor[] rgb = distribution.colors(N);
+		for (int i = 0; i < N; i++)
+			colors[i] = PColor.convert(rgb[i], source.space);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(N)
+	public void convert(Blackhole bh) {
+		ColorSpace space = target.space;
+		for (PColor c : colors)
+			bh.consume(PColor.convert(c, space));
+	}
+}
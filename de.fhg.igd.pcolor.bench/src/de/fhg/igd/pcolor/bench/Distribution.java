@@ -0,0 +1,116 @@
+package de.fhg.igd.pcolor.bench;
+
+import java.util.Random;
+
+import de.fhg.igd.pcolor.sRGB;
+
+/**
+ * Reproducible sRGB data sets for the benchmarks. Each distribution
+ * stresses different parts of the conversions: uniformly random colors
+ * cover the gamut evenly, image-like colors are what most applications
+ * convert, and edge colors hit the clipping, black point and achromatic
+ * special cases.
+ */
+public enum Distribution {
+
+	/**
+	 * uniformly random sRGB
+	 */
+	RANDOM,
+	/**
+	 * spatially coherent colors clustered around typical photographic tones
+	 * (sky, foliage, skin, shadows), mostly of low to medium chroma
+	 */
+	IMAGE,
+	/**
+	 * corners and edges of the sRGB cube, greys including black and white
+	 * and colors close to zero in one channel
+	 */
+	EDGE;
+
+	/**
+	 * typical tones images are made of
+	 */
+	private static final float[][] TONES = {
+		{ 0.53f, 0.71f, 0.92f }, // sky
+		{ 0.24f, 0.36f, 0.16f }, // foliage
+		{ 0.87f, 0.67f, 0.56f }, // skin
+		{ 0.12f, 0.11f, 0.13f }, // shadow
+		{ 0.62f, 0.60f, 0.57f }, // concrete
+		{ 0.76f, 0.64f, 0.42f }, // sand
+		{ 0.93f, 0.93f, 0.95f }, // overcast
+		{ 0.45f, 0.16f, 0.14f }, // brick
+	};
+
+	/**
+	 * @param n the number of colors
+	 * @return flat sRGB triplets, identical for every call
+	 */
+	public float[] rgb(int n) {
+		Random random = new Random(4711 + ordinal());
+		float[] rgb = new float[3 * n];
+		float[] current = TONES[0].clone();
+		for (int i = 0; i < n; i++) {
+			switch (this) {
+			case RANDOM:
+				for (int k = 0; k < 3; k++)
+					current[k] = random.nextFloat();
+				break;
+			case IMAGE:
+				if (random.nextInt(64) == 0)
+					current = TONES[random.nextInt(TONES.length)].clone();
+				for (int k = 0; k < 3; k++)
+					current[k] = clamp(current[k] + (float) random.nextGaussian() * 0.02f);
+				break;
+			case EDGE:
+				edge(i, random, current);
+				break;
+			}
+			System.arraycopy(current, 0, rgb, 3 * i, 3);
+		}
+		return rgb;
+	}
+
+	/**
+	 * @param n the number of colors
+	 * @return the colors of {@link #rgb(int)}
+	 */
+	public sRGB[] colors(int n) {
+		float[] rgb = rgb(n);
+		sRGB[] colors = new sRGB[n];
+		for (int i = 0; i < n; i++)
+			colors[i] = new sRGB(rgb[3 * i], rgb[3 * i + 1], rgb[3 * i + 2]);
+		return colors;
+	}
+
+	private static void edge(int i, Random random, float[] out) {
+		switch (i % 4) {
+		case 0:
+			// cube corners
+			for (int k = 0; k < 3; k++)
+				out[k] = (i / 4 >> k & 1);
+			break;
+		case 1:
+			// cube edges: two channels saturated
+			int free = random.nextInt(3);
+			for (int k = 0; k < 3; k++)
+				out[k] = k == free ? random.nextFloat() : random.nextInt(2);
+			break;
+		case 2:
+			// greys, including the extremes
+			float grey = random.nextInt(8) == 0 ? random.nextInt(2) : random.nextFloat();
+			out[0] = out[1] = out[2] = grey;
+			break;
+		default:
+			// one channel close to zero
+			for (int k = 0; k < 3; k++)
+				out[k] = random.nextFloat();
+			out[random.nextInt(3)] = random.nextFloat() * 1e-3f;
+			break;
+		}
+	}
+
+	private static float clamp(float f) {
+		return f < 0 ? 0 : f > 1 ? 1 : f;
+	}
+}
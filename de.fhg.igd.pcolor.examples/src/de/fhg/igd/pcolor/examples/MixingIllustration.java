@@ -1,7 +1,7 @@
 package de.fhg.igd.pcolor.examples;
 
+import static de.fhg.igd.pcolor.util.ColorTools.appendHtml;
 import static de.fhg.igd.pcolor.util.ColorTools.parseColor;
-import static de.fhg.igd.pcolor.util.ColorTools.toHtml;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -138,7 +138,11 @@ public class MixingIllustration {
 	}
 
 	private void writeCell(OutputStreamWriter out, PColor c, String text) throws IOException {
-		out.write(String.format("    <td style='background-color: %s'>%s</td>\n", toHtml(c, false), text != null ? text : "&nbsp;"));
+		out.write("    <td style='background-color: ");
+		appendHtml(out, c.getARGB(), false);
+		out.write("'>");
+		out.write(text != null ? text : "&nbsp;");
+		out.write("</td>\n");
 	}
 
 }
@@ -76,7 +76,9 @@ public class TwoDColorMatrix {
 				}
 				
 				// finally, emit the color as a table cell
-				out.write(String.format("    <td bgcolor=%s>delta E: %2.1f</td>\n", ColorTools.toHtml(emitCol, false), error));
+				out.write("    <td bgcolor=");
+				ColorTools.appendHtml(out, emitCol.getARGB(), false);
+				out.write(String.format(">delta E: %2.1f</td>\n", error));
 			}
 			out.write("</tr>\n");
 		}
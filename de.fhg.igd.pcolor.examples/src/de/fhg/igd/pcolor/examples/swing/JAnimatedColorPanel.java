@@ -5,15 +5,24 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.Paint;
 import java.awt.RenderingHints;
+import java.awt.MultipleGradientPaint.CycleMethod;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.geom.GeneralPath;
+import java.awt.geom.Point2D;
 import java.util.List;
 
 import javax.swing.JPanel;
 import javax.swing.Timer;
 
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.sRGB;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.util.Colormap.Interpolation;
+import de.fhg.igd.pcolor.util.PerceptualPaint;
+
 /**
  * An animated panel showing some color information charts
  * @author Martin Steiger
@@ -21,6 +30,23 @@ import javax.swing.Timer;
 public class JAnimatedColorPanel extends JPanel
 {
 	private static final long serialVersionUID = -2728145046907929077L;
+	private static final int BAR_WIDTH = 200;
+	/**
+	 * perceptual gradients from dark gray to red, green and blue, in bar coordinates
+	 */
+	private static final Paint[] BAR_PAINTS = new Paint[3];
+
+	static
+	{
+		Color[] baseColors = new Color[] { Color.RED, Color.GREEN, Color.BLUE };
+		for (int i = 0; i < 3; i++)
+		{
+			PColor[] ends = new PColor[] { sRGB.fromArgb(Color.DARK_GRAY.getRGB()), sRGB.fromArgb(baseColors[i].getRGB()) };
+			BAR_PAINTS[i] = PerceptualPaint.linear(new Point2D.Float(0, 0), new Point2D.Float(BAR_WIDTH, 0),
+					CycleMethod.NO_CYCLE, CS_CAMLch.defaultJChInstance, Interpolation.UCS, ends, null);
+		}
+	}
+
 	private final Timer timer;
 	private List<Color> colors;
 
@@ -69,7 +95,7 @@ public class JAnimatedColorPanel extends JPanel
 		super.paintComponent(g1);
 		Graphics2D g = (Graphics2D) g1;
 
-		int barWidth = 200;
+		int barWidth = BAR_WIDTH;
 		int barDist = 35;
 		int barHeight = 25;
 		Color color = getBackground();
@@ -161,8 +187,10 @@ public class JAnimatedColorPanel extends JPanel
 		for (int i = 0; i < 3; i++)
 		{
 			int w = vals[i] * maxWidth / 255;
-			g.setColor(Color.DARK_GRAY);
-			g.fillRect(x, y + i * barDist, w, barHeight);
+			g.translate(x, y + i * barDist);
+			g.setPaint(BAR_PAINTS[i]);
+			g.fillRect(0, 0, w, barHeight);
+			g.translate(-x, -y - i * barDist);
 			g.setColor(Color.BLACK);
 			g.drawRect(x, y + i * barDist, maxWidth, barHeight);
 		}
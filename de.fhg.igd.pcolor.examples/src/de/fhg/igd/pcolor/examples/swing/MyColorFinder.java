@@ -8,7 +8,7 @@ import java.util.List;
 import de.fhg.igd.pcolor.CAMLch;
 import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
 import de.fhg.igd.pcolor.colorspace.ViewingConditions;
-import de.fhg.igd.pcolor.util.ColorTools;
+import de.fhg.igd.pcolor.util.HueRing;
 
 /**
  * Finds colors
@@ -29,22 +29,10 @@ public class MyColorFinder
 	{
 		List<Color> colors = new ArrayList<>();
 
-		CAMLch prevColor = new CAMLch(new float[] { L, C, 0 }, 1f, JCH_SPACE);
-		CAMLch firstColor = prevColor;
-
-		// sample a ring (0-360 degrees) in tiny steps to identify colors with a color distance of 1
-		for (float hue = 0; hue < 360; hue += 0.1) 
+		// colors equally spaced in CAM02-UCS, neighbours at least minDist apart
+		for (CAMLch color : HueRing.spaced(JCH_SPACE, L, C, minDist, 0, VIEW_ENV))
 		{
-			CAMLch color = new CAMLch(new float[] { L, C, hue }, 1f, JCH_SPACE);
-
-			double dist = ColorTools.distance(prevColor, color, VIEW_ENV);
-			double distToFirst = ColorTools.distance(firstColor, color, VIEW_ENV);
-
-			if (dist > minDist && distToFirst > minDist) 
-			{
-				colors.add(new Color(color.getARGB()));
-				prevColor = color;
-			}
+			colors.add(new Color(color.getARGB()));
 		}
 
 		return colors;
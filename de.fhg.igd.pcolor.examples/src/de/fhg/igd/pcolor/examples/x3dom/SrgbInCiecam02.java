@@ -15,13 +15,12 @@ import de.fhg.igd.pcolor.CAMLch;
 import de.fhg.igd.pcolor.PColor;
 import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
 import de.fhg.igd.pcolor.colorspace.CS_sRGB;
-import de.fhg.igd.pcolor.util.ColorPredicates;
-import de.fhg.igd.pcolor.util.ColorTools;
+import de.fhg.igd.pcolor.util.GamutBoundary;
 import de.fhg.igd.pcolor.util.MathTools;
 
 /**
  * Creates a 3D boundary representation of the sRGB space within
- * CIECAM02 (JCh). Boundaries are determined using binary search.
+ * CIECAM02 (JCh). Boundaries are sampled by {@link GamutBoundary}.
  * 
  * The output is written as an HTML page containing an X3DOM
  * 3D canvas to display the  result.
@@ -31,13 +30,14 @@ public class SrgbInCiecam02 {
 	
 	static SortedMap<Float, List<CAMLch>> create3DColorMap(CS_CAMLch jchSpace) {
 		TreeMap<Float, List<CAMLch>> rings = new TreeMap<>(); 
-		for (float L = 0; L <= 100; L += 4 /* lower than 4 scares x3dom */) {
-			ArrayList<CAMLch> ring = new ArrayList<>(360);
+		// rings every 4 J (lower than 4 scares x3dom), 1 degree apart
+		GamutBoundary boundary = GamutBoundary.sRGB(jchSpace, 25, 360);
+		for (int i = 0; i <= boundary.getLightnessSteps(); i++) {
+			float L = boundary.lightness(i);
+			ArrayList<CAMLch> ring = new ArrayList<>(boundary.getHueSteps());
 			// create a ring (0-360 degree) with maximum colorfulness
-			for (float hue = 0; hue < 360; hue += 1) {
-				CAMLch startColor = new CAMLch(new float[]{L, 0, hue}, 1f, jchSpace);
-				assert ColorPredicates.is_sRGB.apply(startColor);
-				ring.add(ColorTools.determineBoundaryColor(startColor, CAMLch.c, 0f, 150f, 0.01f, ColorPredicates.is_sRGB));
+			for (int j = 0; j < boundary.getHueSteps(); j++) {
+				ring.add(new CAMLch(new float[]{L, boundary.sample(i, j), boundary.hue(j)}, 1f, jchSpace));
 			}
 			rings.put(L, ring);
 		}
@@ -0,0 +1,29 @@
+package de.fhg.igd.pcolor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A binary search for a gamut or predicate boundary, see
+ * {@link de.fhg.igd.pcolor.util.ColorTools#determineBoundaryColor}.
+ */
+@Name("de.fhg.igd.pcolor.BoundarySearch")
+@Label("Boundary Search")
+@Category("PColor")
+@Description("A binary search for the boundary of a color predicate")
+class BoundarySearchEvent extends Event {
+
+	@Label("Channel")
+	int channel;
+
+	@Label("Iterations")
+	@Description("The number of bisection steps")
+	int iterations;
+
+	@Label("Final Error")
+	@Description("The CAM02-UCS distance between the result and the last color tested")
+	float error;
+}
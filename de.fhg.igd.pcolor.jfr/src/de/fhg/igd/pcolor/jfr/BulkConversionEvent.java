@@ -0,0 +1,25 @@
+package de.fhg.igd.pcolor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A conversion of a flat array of color triplets, e.g. by
+ * {@link de.fhg.igd.pcolor.colorspace.CS_CAMLch#toRGB(float[], int, float[], int, int)}.
+ */
+@Name("de.fhg.igd.pcolor.BulkConversion")
+@Label("Bulk Conversion")
+@Category("PColor")
+class BulkConversionEvent extends Event {
+
+	@Label("Source Space")
+	String source;
+
+	@Label("Target Space")
+	String target;
+
+	@Label("Colors")
+	int count;
+}
@@ -0,0 +1,111 @@
+package de.fhg.igd.pcolor.jfr;
+
+import java.awt.color.ColorSpace;
+
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+import de.fhg.igd.pcolor.util.Instrumentation;
+import de.fhg.igd.pcolor.util.InstrumentationListener;
+import jdk.jfr.Event;
+
+/**
+ * Emits JDK Flight Recorder events for expensive color operations. Events
+ * are only created while a recording has them enabled; their stack traces
+ * attribute them to the calling code.
+ * <p>
+ * The listener is provided as a service and installed automatically when
+ * this bundle is on the class path. Where service loading is not
+ * available, e.g. in OSGi, install it with
+ * {@link Instrumentation#setListener(InstrumentationListener)}.
+ * <p>
+ * Events begin when an operation starts and end when it completes, so
+ * their duration is that of the operation and recordings can filter them
+ * with the threshold setting.
+ */
+public class FlightRecorderListener implements InstrumentationListener {
+
+	@Override
+	public Object begin(Kind kind) {
+		Event event;
+		switch (kind) {
+		case BOUNDARY_SEARCH:
+			event = new BoundarySearchEvent();
+			break;
+		case PALETTE_OPTIMIZATION:
+			event = new PaletteOptimizationEvent();
+			break;
+		case VIEWING_CONDITIONS:
+			event = new ViewingConditionsEvent();
+			break;
+		case BULK_CONVERSION:
+			event = new BulkConversionEvent();
+			break;
+		default:
+			return null;
+		}
+		if (!event.isEnabled())
+			return null;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Ends the event begun for an operation.
+	 * @param token the token returned by {@link #begin(Kind)}
+	 * @return whether the event should be committed
+	 */
+	private static boolean end(Object token) {
+		if (!(token instanceof Event))
+			return false;
+		Event event = (Event) token;
+		event.end();
+		return event.shouldCommit();
+	}
+
+	@Override
+	public void boundarySearch(Object token, int channel, int iterations, float error, long nanos) {
+		if (!end(token))
+			return;
+		BoundarySearchEvent event = (BoundarySearchEvent) token;
+		event.channel = channel;
+		event.iterations = iterations;
+		event.error = error;
+		event.commit();
+	}
+
+	@Override
+	public void paletteOptimization(Object token, int size, int channel, float commonMax, long nanos) {
+		if (!end(token))
+			return;
+		PaletteOptimizationEvent event = (PaletteOptimizationEvent) token;
+		event.size = size;
+		event.channel = channel;
+		event.commonMax = commonMax;
+		event.commit();
+	}
+
+	@Override
+	public void viewingConditionsCreated(Object token, ViewingConditions vc, boolean fullyAdapted, long nanos) {
+		if (!end(token))
+			return;
+		ViewingConditionsEvent event = (ViewingConditionsEvent) token;
+		event.adaptingLuminance = vc.getL_A();
+		event.backgroundLuminance = vc.getY_b();
+		event.whiteX = vc.getXYZ_w(0);
+		event.whiteY = vc.getXYZ_w(1);
+		event.whiteZ = vc.getXYZ_w(2);
+		event.surroundFactor = vc.getSurrounding().getF();
+		event.fullyAdapted = fullyAdapted;
+		event.commit();
+	}
+
+	@Override
+	public void bulkConversion(Object token, ColorSpace source, ColorSpace target, int count, long nanos) {
+		if (!end(token))
+			return;
+		BulkConversionEvent event = (BulkConversionEvent) token;
+		event.source = Instrumentation.describe(source);
+		event.target = Instrumentation.describe(target);
+		event.count = count;
+		event.commit();
+	}
+}
@@ -0,0 +1,27 @@
+package de.fhg.igd.pcolor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A palette optimization, see
+ * {@link de.fhg.igd.pcolor.util.ColorTools#optimizePalette}.
+ */
+@Name("de.fhg.igd.pcolor.PaletteOptimization")
+@Label("Palette Optimization")
+@Category("PColor")
+@Description("The search for a common channel value all colors of a palette satisfy a predicate at")
+class PaletteOptimizationEvent extends Event {
+
+	@Label("Palette Size")
+	int size;
+
+	@Label("Channel")
+	int channel;
+
+	@Label("Common Maximum")
+	float commonMax;
+}
@@ -0,0 +1,36 @@
+package de.fhg.igd.pcolor.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The creation of CIECAM02 viewing conditions.
+ */
+@Name("de.fhg.igd.pcolor.ViewingConditions")
+@Label("Viewing Conditions Creation")
+@Category("PColor")
+class ViewingConditionsEvent extends Event {
+
+	@Label("Adapting Luminance")
+	double adaptingLuminance;
+
+	@Label("Background Luminance")
+	double backgroundLuminance;
+
+	@Label("White Point X")
+	double whiteX;
+
+	@Label("White Point Y")
+	double whiteY;
+
+	@Label("White Point Z")
+	double whiteZ;
+
+	@Label("Surround Factor")
+	double surroundFactor;
+
+	@Label("Fully Adapted")
+	boolean fullyAdapted;
+}
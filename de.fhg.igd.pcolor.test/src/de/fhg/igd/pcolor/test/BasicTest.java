@@ -2,16 +2,29 @@ package de.fhg.igd.pcolor.test;
 
 import static de.fhg.igd.pcolor.util.ColorTools.hueDifference;
 import static de.fhg.igd.pcolor.util.ColorTools.hueDistance;
+import static de.fhg.igd.pcolor.util.ColorTools.parseARGB;
 import static de.fhg.igd.pcolor.util.ColorTools.parseColor;
 import static de.fhg.igd.pcolor.util.ColorTools.toCss;
 import static de.fhg.igd.pcolor.util.ColorTools.toCssUnclipped;
 import static de.fhg.igd.pcolor.util.ColorTools.toHtml;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.awt.color.ColorSpace;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Random;
 
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
 import org.junit.Test;
 
 import de.fhg.igd.pcolor.CAMLab;
@@ -21,7 +34,10 @@ import de.fhg.igd.pcolor.sRGB;
 import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
 import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
 import de.fhg.igd.pcolor.colorspace.CS_sRGB;
+import de.fhg.igd.pcolor.util.ColorPredicates;
 import de.fhg.igd.pcolor.util.ColorTools;
+import de.fhg.igd.pcolor.util.Instrumentation;
+import de.fhg.igd.pcolor.util.InstrumentationListener;
 import de.fhg.igd.pcolor.util.MathTools;
 
 public class BasicTest {
@@ -93,6 +109,59 @@ public class BasicTest {
 		assertTrue(compareColor(tc2, parseColor(toCssUnclipped(tc2, true))));
 	}
 	
+	@Test
+	public void testParseColor() {
+		assertEquals(0xff112233, parseARGB("#123"));
+		assertEquals(0x44112233, parseARGB("#1234"));
+		assertEquals(0xffaabbcc, parseARGB("#AaBbCc"));
+		assertEquals(0xddaabbcc, parseARGB("#aabbccdd"));
+		assertEquals(0xff0102ff, parseARGB("rgb(1,2,3000)"));
+		assertEquals(0xff00141e, parseARGB("rgb( -1 ,\t20,30 )"));
+		assertEquals(0x7f0a141e, parseARGB("rgba(10, 20, 30, .5)"));
+		assertEquals(0xaa0a141e, parseARGB(new StringBuilder("rgba(10, 20, 30, 0.67)")));
+		int[] rgba = new int[5];
+		ColorTools.parseRGBA("rgba(-1, 20, 300, 1.)", rgba, 1);
+		assertArrayEquals(new int[] { 0, -1, 20, 300, 255 }, rgba);
+		assertArrayEquals(new int[] { 0xff000000, 0xffffffff },
+				parseARGB(Arrays.asList("#000", "rgb(255, 255, 255)")));
+		for (String bad : new String[] { "", "#", "#12", "#12345", "#1234567", "#12g", "#\uff11\uff12\uff13", "123",
+				"rgb(1, 2)", "rgb(1, 2, 3", "rgb(1, 2, 3) ", " rgb(1, 2, 3)", "rgb(1, 2, 3, 4)", "rgb(1, 2, +3)",
+				"rgba(1, 2, 3)", "rgba(1, 2, 3, .)", "rgba(1, 2, 3, 0.5.)", "rgb(1, 2, 99999999999)", "RGB(1, 2, 3)" }) {
+			try {
+				parseARGB(bad);
+				fail(bad);
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testFormatColor() throws Exception {
+		Random r = new Random(4711);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			int argb = r.nextInt();
+			sRGB c = sRGB.fromArgb(argb);
+			assertEquals(String.format(Locale.US, "#%02x%02x%02x%02x", argb >> 16 & 0xff, argb >> 8 & 0xff,
+					argb & 0xff, argb >>> 24), toHtml(c, true));
+			assertEquals(String.format(Locale.US, "rgba(%3d, %3d, %3d, %1.2f)", argb >> 16 & 0xff,
+					argb >> 8 & 0xff, argb & 0xff, c.getAlpha()), toCss(c, true));
+			sRGB u = new sRGB(r.nextFloat() * 3 - 1, r.nextFloat() * 3 - 1, r.nextFloat() * 3 - 1, r.nextFloat() * 3 - 1);
+			assertEquals(String.format(Locale.US, "rgba(%3d, %3d, %3d, %1.2f)", Math.round(u.get(sRGB.R) * 255),
+					Math.round(u.get(sRGB.G) * 255), Math.round(u.get(sRGB.B) * 255), u.getAlpha()),
+					toCssUnclipped(u, true));
+			sb.setLength(0);
+			assertEquals(toCss(c, false), ColorTools.appendCss(sb, argb, false).toString());
+		}
+		sb.setLength(0);
+		ColorTools.appendHtml(sb, new int[] { 0xff102030, 0x80405060, 0 }, 1, 2, true, "; ");
+		assertEquals("#40506080; #00000000", sb.toString());
+		sb.setLength(0);
+		ColorTools.appendCss(sb, new int[] { 0xff102030, 0x80405060 }, 0, 2, false, ",");
+		assertEquals("rgb( 16,  32,  48),rgb( 64,  80,  96)", sb.toString());
+	}
+
 	@Test
 	public void testHueDifference() {
 		Random r = new Random();
@@ -105,4 +174,76 @@ public class BasicTest {
 		}
 	}
 
+	@Test
+	public void testInstrumentation() throws Exception {
+		sRGB rgb = new sRGB(0.2f, 0.4f, 0.6f);
+		CAMLch jch = new CAMLch(rgb, CS_CAMLch.defaultJChInstance);
+		Instrumentation.reset();
+		PColor.convert(rgb, CS_sRGB.instance);
+		assertTrue(Instrumentation.getConversionCounts().isEmpty());
+		Instrumentation.setEnabled(true);
+		Instrumentation.setHistograms(true);
+		try {
+			PColor.convert(rgb, CS_sRGB.instance);
+			PColor.convert(jch, CS_CAMLab.defaultJaMbMInstance);
+			PColor.convert(jch, CS_sRGB.instance);
+			PColor.convert(jch, CS_sRGB.instance);
+			Map<String, Long> counts = Instrumentation.getConversionCounts();
+			assertEquals(Long.valueOf(1), counts.get("CS_sRGB -> CS_sRGB (NONE)"));
+			assertEquals(Long.valueOf(1), counts.get("CS_CAMLch[JCh] -> CS_CAMLab[JMh] (TRANSPOSE)"));
+			assertEquals(Long.valueOf(2), counts.get("CS_CAMLch[JCh] -> CS_sRGB (XYZ)"));
+
+			ColorTools.determineBoundaryColor(setC(jch, 0), CAMLch.c, 0, 100, 0.5f, ColorPredicates.is_sRGB);
+			assertEquals(Long.valueOf(1), Instrumentation.getOperationCalls().get("determineBoundaryColor"));
+			assertTrue(Instrumentation.getOperationCalls().get("distance") > 1);
+			assertTrue(Instrumentation.getOperationConversions().get("determineBoundaryColor") > 0);
+			assertEquals(1, Arrays.stream(Instrumentation.getLatencyHistogram("determineBoundaryColor")).sum());
+
+			List<String> events = new ArrayList<>();
+			InstrumentationListener previous = Instrumentation.getListener();
+			Instrumentation.setListener(new InstrumentationListener() {
+				@Override
+				public Object begin(Kind kind) {
+					return kind;
+				}
+
+				@Override
+				public void boundarySearch(Object token, int channel, int iterations, float error, long nanos) {
+					assertEquals(Kind.BOUNDARY_SEARCH, token);
+					assertTrue(error < 0.5f && iterations > 1);
+					events.add("boundarySearch");
+				}
+
+				@Override
+				public void bulkConversion(Object token, ColorSpace source, ColorSpace target, int count, long nanos) {
+					assertEquals(Kind.BULK_CONVERSION, token);
+					events.add(Instrumentation.describe(source) + " -> " + Instrumentation.describe(target) + " " + count);
+				}
+			});
+			try {
+				ColorTools.determineBoundaryColor(setC(jch, 0), CAMLch.c, 0, 100, 0.5f, ColorPredicates.is_sRGB);
+				CS_CAMLch.defaultJChInstance.toRGB(new float[6], 0, new float[6], 0, 2);
+			} finally {
+				Instrumentation.setListener(previous);
+			}
+			assertEquals(Arrays.asList("boundarySearch", "CS_CAMLch[JCh] -> CS_sRGB 2"), events);
+
+			ObjectName name = Instrumentation.registerMBean();
+			try {
+				Object calls = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "OperationCalls");
+				assertTrue(calls instanceof TabularData);
+				assertEquals(2, ((TabularData) calls).size());
+			} finally {
+				Instrumentation.unregisterMBean();
+			}
+		} finally {
+			Instrumentation.setEnabled(false);
+			Instrumentation.setHistograms(false);
+			Instrumentation.reset();
+		}
+	}
+
+	private static CAMLch setC(CAMLch col, float c) {
+		return ColorTools.setChannel(col, CAMLch.c, c);
+	}
 }
@@ -0,0 +1,166 @@
+package de.fhg.igd.pcolor.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.sRGB;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.util.ColorPredicates;
+import de.fhg.igd.pcolor.util.Colormap;
+import de.fhg.igd.pcolor.util.Colormap.Interpolation;
+import de.fhg.igd.pcolor.util.PerceptualPaint;
+import de.fhg.igd.pcolor.util.RampRenderer;
+
+/**
+ * Tests baked colormaps against per-color interpolation.
+ */
+public class ColormapTest {
+
+	CS_CAMLch space = CS_CAMLch.defaultJChInstance;
+
+	CAMLch from = new CAMLch(new sRGB(0.1f, 0.2f, 0.6f), space);
+	CAMLch to = new CAMLch(new sRGB(0.95f, 0.8f, 0.1f), space);
+
+	private static void assertARGB(int expected, int actual, int delta) {
+		for (int shift = 0; shift < 32; shift += 8)
+			assertEquals(expected >>> shift & 0xff, actual >>> shift & 0xff, delta);
+	}
+
+	@Test
+	public void testColormap() {
+		for (Interpolation interpolation : Interpolation.values()) {
+			Colormap map = new Colormap.Builder(from, to).interpolation(interpolation).size(64).build();
+			int[] argb = map.getARGB();
+			float[] rgba = map.getRGBA();
+			assertEquals(64, map.size());
+			assertARGB(from.getARGB(), argb[0], 1);
+			assertARGB(to.getARGB(), argb[63], 1);
+			for (int i = 0; i < 64; i++) {
+				sRGB col = new sRGB(rgba[4 * i], rgba[4 * i + 1], rgba[4 * i + 2], rgba[4 * i + 3]);
+				assertEquals(col.getARGB(), argb[i]);
+				assertTrue(ColorPredicates.is_sRGB.apply(col));
+			}
+		}
+		// JCh interpolation matches blending where it is in gamut
+		Colormap map = new Colormap.Builder(from, to).interpolation(Interpolation.JCH).size(11).build();
+		for (int i = 0; i <= 10; i++) {
+			CAMLch blend = CAMLch.blend(from, to, i / 10f);
+			if (ColorPredicates.is_sRGB.apply(blend))
+				assertARGB(blend.getARGB(), map.getARGB()[i], 1);
+		}
+	}
+
+	@Test
+	public void testHardStop() {
+		PColor black = new sRGB(0, 0, 0), blue = new sRGB(0, 0, 1), red = new sRGB(1, 0, 0), white = new sRGB(1, 1, 1);
+		for (Interpolation interpolation : Interpolation.values()) {
+			Colormap map = new Colormap.Builder(space, black, blue, red, white).positions(0, 0.5f, 0.5f, 1)
+					.interpolation(interpolation).size(5).build();
+			int[] argb = map.getARGB();
+			// the last control point at the stop applies at the stop itself
+			assertARGB(red.getARGB(), argb[2], 1);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoControls() {
+		new Colormap.Builder(new CAMLch[0]);
+	}
+
+	@Test
+	public void testApply() {
+		Colormap map = new Colormap.Builder(space, new sRGB(0, 0, 0), new sRGB(1, 1, 1))
+				.size(10).domain(-1, 1).nanColor(0xff00ff00).build();
+		int[] argb = map.getARGB();
+		double[] data = { -5, -1, -0.85, 0, 0.99, 1, 5, Double.NaN };
+		int[] out = new int[data.length];
+		map.apply(data, out);
+		assertEquals(argb[0], out[0]);
+		assertEquals(argb[0], out[1]);
+		assertEquals(argb[0], out[2]);
+		assertEquals(argb[5], out[3]);
+		assertEquals(argb[9], out[4]);
+		assertEquals(argb[9], out[5]);
+		assertEquals(argb[9], out[6]);
+		assertEquals(0xff00ff00, out[7]);
+		// a black to white ramp gets lighter with every entry
+		float last = -1;
+		for (int i = 0; i < argb.length; i++) {
+			float[] jch = PColor.convert(sRGB.fromArgb(argb[i]), CS_CAMLch.defaultJChInstance).getComponents();
+			assertTrue(jch[CAMLch.L] > last);
+			last = jch[CAMLch.L];
+		}
+	}
+
+	@Test
+	public void testRampRenderer() {
+		RampRenderer renderer = new RampRenderer(from, to);
+		int n = 41;
+		int[] row = new int[n];
+		renderer.render(row, 0, n);
+		for (int i = 0; i < n; i++) {
+			CAMLch blend = CAMLch.blend(from, to, i / (n - 1f));
+			if (ColorPredicates.is_sRGB.apply(blend))
+				assertARGB(blend.getARGB(), row[i], 1);
+		}
+		// the same as a baked colormap of the same size
+		int[] baked = new Colormap.Builder(from, to).interpolation(Interpolation.JCH).size(n).build().getARGB();
+		for (int i = 0; i < n; i++)
+			assertEquals(baked[i], row[i]);
+		// areas and rasters repeat the row
+		int[] area = new int[3 * n + 5];
+		renderer.render(area, 5, n, n, 3, false);
+		for (int y = 0; y < 3; y++)
+			for (int x = 0; x < n; x++)
+				assertEquals(row[x], area[5 + y * n + x]);
+		renderer.render(area, 0, 3, 3, n, true);
+		for (int y = 0; y < n; y++)
+			for (int x = 0; x < 3; x++)
+				assertEquals(row[y], area[y * 3 + x]);
+		for (int type : new int[] { BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_4BYTE_ABGR }) {
+			BufferedImage img = new BufferedImage(n, 4, type);
+			renderer.render(img.getRaster(), false);
+			for (int x = 0; x < n; x++)
+				assertEquals(row[x], img.getRGB(x, 3));
+			img = new BufferedImage(2, n, type);
+			renderer.render(img.getRaster(), true);
+			for (int y = 0; y < n; y++)
+				assertEquals(row[y], img.getRGB(1, y));
+		}
+	}
+
+	@Test
+	public void testPerceptualPaint() {
+		BufferedImage img = new BufferedImage(200, 100, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = img.createGraphics();
+		g.setPaint(PerceptualPaint.linear(new Point2D.Float(0, 0), new Point2D.Float(100, 0), from, to));
+		g.fillRect(0, 0, 200, 50);
+		// scaled by two, the radial gradient repeats every 50 device pixels
+		g.scale(2, 2);
+		g.setPaint(PerceptualPaint.radial(new Point2D.Float(25.25f, 37.75f), 25, CycleMethod.REPEAT, space,
+				Interpolation.JAB, new PColor[] { from, to }, null));
+		g.fillRect(0, 25, 100, 25);
+		g.dispose();
+		// a 100 pixel gradient is indexed into a ramp of 128 entries
+		int[] ramp = new int[128];
+		new RampRenderer(from, to).render(ramp, 0, 128);
+		for (int x = 0; x < 200; x++) {
+			float t = Math.min((x + 0.5f) / 100, 1);
+			assertEquals(ramp[(int) (t * 127 + 0.5f)], img.getRGB(x, 10));
+			assertEquals(img.getRGB(x, 10), img.getRGB(x, 49));
+		}
+		assertARGB(from.getARGB(), img.getRGB(50, 75), 3);
+		assertEquals(img.getRGB(40, 75), img.getRGB(60, 75));
+		assertEquals(img.getRGB(50, 65), img.getRGB(50, 85));
+		assertEquals(img.getRGB(30, 75), img.getRGB(120, 75));
+	}
+}
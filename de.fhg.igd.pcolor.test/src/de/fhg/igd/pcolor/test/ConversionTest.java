@@ -21,6 +21,8 @@
 package de.fhg.igd.pcolor.test;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.awt.color.ColorSpace;
@@ -39,6 +41,7 @@ import de.fhg.igd.pcolor.colorspace.CS_CIECAM02;
 import de.fhg.igd.pcolor.colorspace.CS_CIELab;
 import de.fhg.igd.pcolor.colorspace.CS_CIEXYZ;
 import de.fhg.igd.pcolor.colorspace.CS_sRGB;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
 import de.fhg.igd.pcolor.colorspace.Surrounding;
 import de.fhg.igd.pcolor.colorspace.ViewingConditions;
 import de.fhg.igd.pcolor.util.ColorTools;
@@ -102,7 +105,7 @@ public class ConversionTest {
 	public void XYZtoJCh() {
 		float[] xyz = new float[]{0.1901f, 0.2f, 0.2178f};
 
-		CS_CAMLch csJCh = new CS_CAMLch(brightCond, CS_CAMLch.JCh);
+		CS_CAMLch csJCh = new CS_CAMLch(brightCond, CorrelateConfig.JCh);
 		testXYZForwardBackward(xyz, csJCh, 0.001f);
 	}
 
@@ -113,19 +116,19 @@ public class ConversionTest {
 	public void XYZtoJab() {
 		float[] xyz = new float[]{0.5706f, 0.4306f, 0.3196f};
 
-		CS_CAMLab csJab = new CS_CAMLab(darkCond, CS_CAMLch.JMh);
+		CS_CAMLab csJab = new CS_CAMLab(darkCond, CorrelateConfig.JMh);
 		testXYZForwardBackward(xyz, csJab, 0.001f);
 		
 		xyz = new float[]{0.5706f, 0.4306f, 0.3196f};
-		csJab = new CS_CAMLab(brightCond, CS_CAMLch.JMh);
+		csJab = new CS_CAMLab(brightCond, CorrelateConfig.JMh);
 		testXYZForwardBackward(xyz, csJab, 0.001f);
 		
 		xyz = new float[]{0.1706f, 0.4306f, 0.7196f};
-		csJab = new CS_CAMLab(brightCond, CS_CAMLch.JMh);
+		csJab = new CS_CAMLab(brightCond, CorrelateConfig.JMh);
 		testXYZForwardBackward(xyz, csJab, 0.001f);
 		
 		xyz = new float[]{0.1706f, 0.4306f, 0.7196f};
-		csJab = new CS_CAMLab(brightCond, CS_CAMLch.JMh);
+		csJab = new CS_CAMLab(brightCond, CorrelateConfig.JMh);
 		testXYZForwardBackward(xyz, csJab, 0.001f);
 	}
 	
@@ -136,19 +139,19 @@ public class ConversionTest {
 	public void XYZtoJCh1() {
 		float[] xyz = new float[]{0.5706f, 0.4306f, 0.3196f};
 
-		CS_CAMLch csJch = new CS_CAMLch(darkCond, CS_CAMLch.JMh);
+		CS_CAMLch csJch = new CS_CAMLch(darkCond, CorrelateConfig.JMh);
 		testXYZForwardBackward(xyz, csJch, 0.001f);
 		
 		xyz = new float[]{0.5706f, 0.4306f, 0.3196f};
-		csJch = new CS_CAMLch(brightCond, CS_CAMLch.JMh);
+		csJch = new CS_CAMLch(brightCond, CorrelateConfig.JMh);
 		testXYZForwardBackward(xyz, csJch, 0.001f);
 		
 		xyz = new float[]{0.1706f, 0.4306f, 0.7196f};
-		csJch = new CS_CAMLch(brightCond, CS_CAMLch.JMh);
+		csJch = new CS_CAMLch(brightCond, CorrelateConfig.JMh);
 		testXYZForwardBackward(xyz, csJch, 0.001f);
 		
 		xyz = new float[]{0.1706f, 0.4306f, 0.7196f};
-		csJch = new CS_CAMLch(brightCond, CS_CAMLch.JMh);
+		csJch = new CS_CAMLch(brightCond, CorrelateConfig.JMh);
 		testXYZForwardBackward(xyz, csJch, 0.001f);
 	}
 
@@ -173,7 +176,7 @@ public class ConversionTest {
 	public void RGBtoJCh() {
 		float[] rgb = new float[]{0.4f, 0.5f, 0.8f};
 
-		CS_CAMLch csJCh = new CS_CAMLch(brightCond, CS_CAMLch.JCh);
+		CS_CAMLch csJCh = new CS_CAMLch(brightCond, CorrelateConfig.JCh);
 		testForwardBackward(new sRGB(rgb), csJCh, 0.001f);
 		testRGBForwardBackward(rgb, csJCh, 0.001f);
 	}
@@ -185,7 +188,7 @@ public class ConversionTest {
 	public void RGBtoJCH2() {
 		float[] rgb = new float[]{0.9f, 0.5f, 0.1f};
 
-		CS_CAMLch csJCh = new CS_CAMLch(brightCond, CS_CAMLch.JCh);
+		CS_CAMLch csJCh = new CS_CAMLch(brightCond, CorrelateConfig.JCh);
 		testForwardBackward(new sRGB(rgb), csJCh, 0.001f);
 		testRGBForwardBackward(rgb, csJCh, 0.001f);
 	}
@@ -270,6 +273,50 @@ public class ConversionTest {
 		//testRGBForwardBackward(rgb, csLab, 0.0001f);
 	}
 
+	/**
+	 * tests the bulk conversions against the per-color conversion.
+	 */
+	@Test
+	public void bulkFromRGB() {
+		int n = 1000;
+		float[] rgb = rnd(3 * n);
+		for (CorrelateConfig conf : CorrelateConfig.values()) {
+			for (CS_CAMLch cs : new CS_CAMLch[] {new CS_CAMLch(brightCond, conf), new CS_CAMLab(darkCond, conf)}) {
+				float[] bulk = new float[3 * n];
+				cs.fromRGB(rgb, 0, bulk, 0, n);
+				float[] xyz = new float[3 * n];
+				CS_sRGB.toCIEXYZ(rgb, 0, xyz, 0, n);
+				float[] bulkXYZ = new float[3 * n];
+				cs.fromCIEXYZ(xyz, 0, bulkXYZ, 0, n);
+				for (int i = 0; i < n; i++) {
+					float[] c = new float[] {rgb[3 * i], rgb[3 * i + 1], rgb[3 * i + 2]};
+					float[] ref = PColor.convert(new sRGB(c), cs).getComponents();
+					assertArrayEquals(ref, new float[] {bulk[3 * i], bulk[3 * i + 1], bulk[3 * i + 2]}, 0.001f);
+					assertArrayEquals(ref, new float[] {bulkXYZ[3 * i], bulkXYZ[3 * i + 1], bulkXYZ[3 * i + 2]}, 0.001f);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void bulkToRGB() {
+		int n = 1000;
+		float[] rgb = rnd(3 * n);
+		for (CorrelateConfig conf : CorrelateConfig.values()) {
+			for (CS_CAMLch cs : new CS_CAMLch[] {new CS_CAMLch(brightCond, conf), new CS_CAMLab(darkCond, conf)}) {
+				float[] comp = new float[3 * n];
+				cs.fromRGB(rgb, 0, comp, 0, n);
+				float[] bulk = new float[3 * n];
+				cs.toRGB(comp, 0, bulk, 0, n);
+				for (int i = 0; i < n; i++) {
+					float[] c = new float[] {comp[3 * i], comp[3 * i + 1], comp[3 * i + 2]};
+					float[] ref = cs.toRGB(c);
+					assertArrayEquals(ref, new float[] {bulk[3 * i], bulk[3 * i + 1], bulk[3 * i + 2]}, 1e-5f);
+				}
+			}
+		}
+	}
+
 	// test XYZ -> CS -> XYZ
 	private void testXYZForwardBackward(float[] xyz, ColorSpace cs, float delta) {
 		// test color space ops
@@ -397,5 +444,27 @@ public class ConversionTest {
 		assertTrue(testForwardBackwardRepitition(black, CS_CAMLab.defaultJaMbMInstance, (float) 0.0001, 100) > 50);
 
 	}
-	
-}
\ No newline at end of file
+
+	@Test
+	public void correlateConfigs() {
+		CorrelateConfig[] configs = CorrelateConfig.values();
+		for (int i = 0; i < configs.length; i++) {
+			int[] conf = CS_CAMLch.correlateConfigurations[i];
+			assertArrayEquals(conf, configs[i].toArray());
+			assertSame(configs[i], CorrelateConfig.of(conf));
+			CS_CAMLch cs = new CS_CAMLch(brightCond, conf);
+			assertSame(configs[i], cs.getCorrelateConfig());
+			assertEquals(cs, new CS_CAMLch(brightCond, configs[i]));
+			assertEquals(cs.hashCode(), new CS_CAMLch(brightCond, configs[i]).hashCode());
+			// the space does not share the caller's array
+			int[] copy = conf.clone();
+			cs = new CS_CAMLch(brightCond, copy);
+			copy[0] = CS_CIECAM02.H;
+			assertSame(configs[i], cs.getCorrelateConfig());
+		}
+		// accessors do not expose internal state
+		brightCond.getXYZ_w()[0] = -1;
+		brightCond.getD_RGB()[0] = -1;
+		assertTrue(brightCond.getXYZ_w(0) > 0 && brightCond.getD_RGB(0) > 0);
+	}
+}
@@ -0,0 +1,281 @@
+package de.fhg.igd.pcolor.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.fhg.igd.pcolor.CAMLab;
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.Illuminant;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.sRGB;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CS_sRGB;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
+import de.fhg.igd.pcolor.colorspace.Surrounding;
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+import de.fhg.igd.pcolor.util.ColorBuffer;
+import de.fhg.igd.pcolor.util.ColorIndex;
+import de.fhg.igd.pcolor.util.ColorPredicates;
+import de.fhg.igd.pcolor.util.ColorTools;
+import de.fhg.igd.pcolor.util.DistanceMetric;
+import de.fhg.igd.pcolor.util.HueRing;
+import de.fhg.igd.pcolor.util.PaletteGenerator;
+
+/**
+ * Tests the bulk distance operations against pairwise evaluation.
+ */
+public class DistanceTest {
+
+	ViewingConditions vc = ViewingConditions.sRGB_typical_envirnonment;
+
+	Random random = new Random(4711);
+
+	private PColor[] rndColors(int n) {
+		PColor[] colors = new PColor[n];
+		for (int i = 0; i < n; i++)
+			colors[i] = new sRGB(random.nextFloat(), random.nextFloat(), random.nextFloat());
+		return colors;
+	}
+
+	@Test
+	public void testDistanceMatrix() {
+		// not a multiple of the tile size
+		PColor[] colors = rndColors(150);
+		float[][] full = ColorTools.distanceMatrix(colors, vc);
+		float[] packed = ColorTools.distanceMatrixPacked(colors, vc);
+		assertEquals(150 * 149 / 2, packed.length);
+		for (int i = 0; i < colors.length; i++) {
+			assertEquals(0, full[i][i], 0);
+			for (int j = i + 1; j < colors.length; j++) {
+				float d = ColorTools.distance(colors[i], colors[j], vc);
+				assertEquals(d, full[i][j], 1e-4);
+				assertEquals(full[i][j], full[j][i], 0);
+				assertEquals(d, packed[ColorTools.packedIndex(i, j, colors.length)], 1e-4);
+			}
+		}
+	}
+
+	@Test
+	public void testDistanceMatrixDegenerate() {
+		assertEquals(0, ColorTools.distanceMatrix(new PColor[0], vc).length);
+		assertEquals(0, ColorTools.distanceMatrixPacked(rndColors(1), vc).length);
+	}
+
+	@Test
+	public void testColorIndex() {
+		PColor[] ref = rndColors(500);
+		PColor[] queries = rndColors(100);
+		ColorIndex index = new ColorIndex(ref, vc);
+		float[][] dist = new float[queries.length][];
+		for (int q = 0; q < queries.length; q++) {
+			// brute force reference
+			float[] d = new float[ref.length];
+			for (int i = 0; i < ref.length; i++)
+				d[i] = ColorTools.distance(queries[q], ref[i], vc);
+			dist[q] = d;
+			float[] sorted = d.clone();
+			Arrays.sort(sorted);
+
+			assertEquals(sorted[0], d[index.nearest(queries[q])], 1e-4);
+			int[] knn = index.kNearest(queries[q], 5);
+			assertEquals(5, knn.length);
+			for (int k = 0; k < knn.length; k++)
+				assertEquals(sorted[k], d[knn[k]], 1e-4);
+
+			float radius = sorted[20];
+			int[] within = index.withinRadius(queries[q], radius);
+			for (int i : within)
+				assertTrue(d[i] <= radius + 1e-4);
+			assertTrue(within.length >= 20);
+		}
+		int[] bulk = index.nearest(queries);
+		for (int q = 0; q < queries.length; q++)
+			assertEquals(index.nearest(queries[q]), bulk[q]);
+
+		int[] nn = index.nearestNeighbours();
+		for (int i = 0; i < ref.length; i++) {
+			float best = Float.MAX_VALUE;
+			for (int j = 0; j < ref.length; j++) {
+				if (j != i)
+					best = Math.min(best, ColorTools.distance(ref[i], ref[j], vc));
+			}
+			assertTrue(i != nn[i]);
+			assertEquals(best, ColorTools.distance(ref[i], ref[nn[i]], vc), 1e-4);
+		}
+		assertArrayEquals(new int[0], new ColorIndex(new float[0]).kNearest(new float[3], 3));
+	}
+
+	@Test
+	public void testDistanceMetrics() {
+		PColor[] colors = rndColors(50);
+		CS_CAMLch jch = new CS_CAMLch(vc, CorrelateConfig.JCh);
+		CS_CAMLab jab = new CS_CAMLab(vc, CorrelateConfig.JMh);
+		DistanceMetric ucs = DistanceMetric.cam02UCS(vc);
+		DistanceMetric lcd = DistanceMetric.cam02LCD(vc);
+		DistanceMetric scd = DistanceMetric.cam02SCD(vc);
+		DistanceMetric lch = DistanceMetric.camLch(jch, 1, 0.5f, 2);
+		DistanceMetric lab = DistanceMetric.camLab(jab, 1, 0.5f);
+		float[] prepared = ucs.prepare(colors);
+		float[] out = new float[colors.length];
+		ucs.distance(prepared, prepared, out);
+		for (int i = 0; i < colors.length; i++) {
+			assertEquals(ColorTools.distance(colors[0], colors[i], vc), out[i], 1e-4);
+			CAMLch c0 = (CAMLch) PColor.convert(colors[0], jch);
+			CAMLch ci = (CAMLch) PColor.convert(colors[i], jch);
+			assertEquals(CAMLch.distance(c0, ci, 1, 0.5f, 2), lch.distance(colors[0], colors[i]), 1e-5);
+			CAMLab l0 = (CAMLab) PColor.convert(colors[0], jab);
+			CAMLab li = (CAMLab) PColor.convert(colors[i], jab);
+			assertEquals(CAMLab.distance(l0, li, 1, 0.5f), lab.distance(colors[0], colors[i]), 1e-3);
+			// random colors are distinct
+			if (i > 0) {
+				assertTrue(lcd.distance(colors[0], colors[i]) > 0);
+				assertTrue(scd.distance(colors[0], colors[i]) > 0);
+			}
+		}
+		assertEquals(0, ucs.minDistance(prepared, 3, prepared, colors.length), 0);
+	}
+
+	private float minDistance(PColor c, List<PColor> occupied) {
+		float min = Float.MAX_VALUE;
+		for (PColor o : occupied)
+			min = Math.min(min, ColorTools.distance(c, o, vc));
+		return min;
+	}
+
+	@Test
+	public void testPaletteGenerator() {
+		DistanceMetric ucs = DistanceMetric.cam02UCS(vc);
+		PColor[] candidates = rndColors(300);
+		PaletteGenerator gen = new PaletteGenerator(ucs, candidates);
+		PColor background = new sRGB(1, 1, 1);
+		gen.occupy(background);
+
+		// naive farthest-point selection as reference
+		List<PColor> occupied = new ArrayList<>();
+		occupied.add(background);
+		for (int k = 0; k < 10; k++) {
+			float expectedMin = -1;
+			for (PColor c : candidates)
+				expectedMin = Math.max(expectedMin, minDistance(c, occupied));
+			assertEquals(expectedMin, gen.getNextDistance(), 1e-3);
+			PColor picked = gen.next();
+			assertEquals(expectedMin, minDistance(picked, occupied), 1e-3);
+			occupied.add(picked);
+		}
+
+		// grid candidates are all in sRGB and pairwise distinct
+		PColor[] palette = new PaletteGenerator(ucs, 12).next(20);
+		for (int i = 0; i < palette.length; i++) {
+			assertTrue(palette[i].isInRange(0, 0));
+			for (int j = i + 1; j < palette.length; j++)
+				assertTrue(ColorTools.distance(palette[i], palette[j], vc) > 1);
+		}
+	}
+
+	@Test
+	public void testHueRing() {
+		// closed form (same viewing conditions) and table (default conditions)
+		CS_CAMLch[] spaces = { new CS_CAMLch(vc, CorrelateConfig.JCh), CS_CAMLch.defaultJChInstance };
+		for (CS_CAMLch space : spaces) {
+			CAMLch[] ring = HueRing.equidistant(space, 60, 30, 12, 10, vc);
+			assertEquals(12, ring.length);
+			assertEquals(10, ring[0].get(CAMLch.h), 1e-3);
+			float first = ColorTools.distance(ring[11], ring[0], vc);
+			for (int i = 0; i < ring.length; i++) {
+				assertEquals(60, ring[i].get(CAMLch.L), 1e-2);
+				assertEquals(30, ring[i].get(CAMLch.c), 1e-2);
+				float d = ColorTools.distance(ring[i], ring[(i + 1) % ring.length], vc);
+				assertEquals(first, d, first * 0.01);
+			}
+
+			ring = HueRing.spaced(space, 60, 30, 5, 0, vc);
+			assertTrue(ring.length > 1);
+			float min = Float.MAX_VALUE;
+			for (int i = 0; i < ring.length; i++)
+				min = Math.min(min, ColorTools.distance(ring[i], ring[(i + 1) % ring.length], vc));
+			assertTrue(min >= 5 * 0.999f);
+			// one more color would not fit
+			CAMLch[] denser = HueRing.equidistant(space, 60, 30, ring.length + 1, 0, vc);
+			assertTrue(ColorTools.distance(denser[0], denser[1], vc) < 5 * 1.01f);
+		}
+	}
+
+	@Test
+	public void testColorBuffer() {
+		// two full chunks and a partial one
+		int n = 2 * ColorBuffer.CHUNK + 100;
+		CS_CAMLch space = new CS_CAMLch(vc, CorrelateConfig.JMh);
+		List<PColor> colors = new ArrayList<>();
+		for (int i = 0; i < n; i++)
+			colors.add(new CAMLch(new float[] { 10 + 90 * random.nextFloat(), 60 * random.nextFloat(), 360 * random.nextFloat() }, 1, space));
+		ColorBuffer buffer = ColorBuffer.of(space, colors);
+		assertEquals(3, buffer.chunks().parallel().count());
+		assertTrue(buffer.chunks().parallel().allMatch(c -> c.start() % ColorBuffer.CHUNK == 0));
+		assertEquals(n, buffer.stream().parallel().count());
+
+		ColorBuffer rgb = ColorTools.convert(buffer, CS_sRGB.instance);
+		ColorBuffer jch = ColorTools.convert(buffer, new CS_CAMLch(vc, CorrelateConfig.JCh));
+		PColor reference = new sRGB(0.2f, 0.5f, 0.7f);
+		float[] dE = ColorTools.distances(buffer, reference, vc);
+		float[] ucs = ColorTools.toUCS_Jab(buffer, vc);
+		List<PColor> inGamut = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			assertEquals(ColorTools.distance(colors.get(i), reference, vc), dE[i], 1e-3);
+			assertEquals(0, ColorTools.distance(colors.get(i), jch.get(i), vc), 1e-2);
+			float[] expected = ColorTools.toUCS_Jab((CAMLch) colors.get(i));
+			assertArrayEquals(expected, Arrays.copyOfRange(ucs, 3 * i, 3 * i + 3), 1e-3f);
+			if (ColorPredicates.is_sRGB.apply(colors.get(i))) {
+				inGamut.add(colors.get(i));
+				assertEquals(0, ColorTools.distance(colors.get(i), rgb.get(i), vc), 1e-2);
+			}
+		}
+		ColorBuffer filtered = ColorTools.filterInGamut(buffer);
+		assertTrue(inGamut.size() > 0 && inGamut.size() < n);
+		assertEquals(inGamut.size(), filtered.size());
+		for (int i = 0; i < filtered.size(); i++)
+			assertArrayEquals(inGamut.get(i).getComponents(), filtered.get(i).getComponents(), 0);
+	}
+
+	@Test
+	public void testUnprepare() {
+		for (DistanceMetric metric : new DistanceMetric[] { DistanceMetric.cam02UCS(vc), DistanceMetric.cam02LCD(vc), DistanceMetric.cam02SCD(vc) }) {
+			float[] rgb = new float[3 * 100];
+			for (int i = 0; i < rgb.length; i++)
+				rgb[i] = random.nextFloat();
+			float[] comp = rgb.clone();
+			metric.getColorSpace().fromRGB(comp, 0, comp, 0, 100);
+			float[] back = metric.prepareRGB(rgb);
+			metric.unprepare(back, 0, back, 0, 100);
+			for (int i = 0; i < comp.length; i += 3) {
+				assertEquals(comp[i + CAMLch.L], back[i + CAMLch.L], 1e-3);
+				assertEquals(comp[i + CAMLch.c], back[i + CAMLch.c], 1e-3);
+				assertEquals(0, ColorTools.hueDistance(comp[i + CAMLch.h], back[i + CAMLch.h]), 1e-2);
+			}
+		}
+	}
+
+	@Test
+	public void testDegreeOfAdaptation() {
+		// equal by ViewingConditions#equals, but D differs
+		ViewingConditions adapted = ViewingConditions.createAdapted(Illuminant.D50, 20, 4, Surrounding.dimSurrounding);
+		ViewingConditions full = ViewingConditions.createFullyAdapted(Illuminant.D50, 20, 4, Surrounding.dimSurrounding);
+		PColor a = new sRGB(0.9f, 0.2f, 0.1f), b = new sRGB(0.2f, 0.5f, 0.9f);
+		float dAdapted = ColorTools.distance(a, b, adapted);
+		float dFull = ColorTools.distance(a, b, full);
+		assertTrue(Math.abs(dAdapted - dFull) > 1e-3);
+		// alternating between them must not mix up the cached metrics
+		assertEquals(dAdapted, ColorTools.distance(a, b, adapted), 0);
+		assertEquals(dFull, ColorTools.distance(a, b, full), 0);
+		CAMLch back = ColorTools.fromUCS_Jab(ColorTools.toUCS_Jab(new PColor[] { a }, full), 0, full);
+		assertTrue(back.getColorSpace().getViewingconditions() == full);
+	}
+}
@@ -0,0 +1,160 @@
+package de.fhg.igd.pcolor.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.sRGB;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CS_sRGB;
+import de.fhg.igd.pcolor.util.BoundarySolver;
+import de.fhg.igd.pcolor.util.ColorPredicates;
+import de.fhg.igd.pcolor.util.ColorTools;
+import de.fhg.igd.pcolor.util.GamutBoundary;
+import de.fhg.igd.pcolor.util.GamutHull;
+import de.fhg.igd.pcolor.util.GamutMapper;
+import de.fhg.igd.pcolor.util.PaletteOptimizer;
+
+/**
+ * Tests gamut boundary operations against the predicate-based bisection.
+ */
+public class GamutTest {
+
+	CS_CAMLch space = CS_CAMLch.defaultJChInstance;
+
+	Random random = new Random(4711);
+
+	@Test
+	public void testGamutBoundary() {
+		GamutBoundary boundary = GamutBoundary.sRGB(space, 20, 72);
+		// grid points equal bisection
+		for (int i = 1; i < 20; i += 3) {
+			for (int j = 0; j < 72; j += 7) {
+				CAMLch start = new CAMLch(new float[] { boundary.lightness(i), 0, boundary.hue(j) }, 1f, space);
+				float c = ColorTools.determineBoundaryColor(start, CAMLch.c, 0, 150, 0.01f,
+						ColorPredicates.is_sRGB).get(CAMLch.c);
+				assertEquals(c, boundary.sample(i, j), 0.1);
+			}
+		}
+		// refinement is exact, interpolation is close
+		for (int k = 0; k < 100; k++) {
+			float L = 5 + random.nextFloat() * 90;
+			float h = random.nextFloat() * 360;
+			float c = boundary.maxChroma(L, h, true);
+			assertTrue(ColorPredicates.is_sRGB.apply(new CAMLch(new float[] { L, c, h }, 1f, space)));
+			assertFalse(ColorPredicates.is_sRGB.apply(new CAMLch(new float[] { L, c + 0.05f, h }, 1f, space)));
+			assertEquals(c, boundary.maxChroma(L, h), 0.15 * c + 1);
+		}
+	}
+
+	@Test
+	public void testGamutHull() {
+		GamutHull hull = GamutHull.sRGB(space, 10, 36);
+		GamutBoundary boundary = hull.getBoundary();
+		// the predicate-based sampling agrees with the batched one
+		GamutBoundary generic = new GamutBoundary(space, ColorPredicates.is_sRGB::apply, 10, 36, 150f, 0.01f);
+		assertEquals(11 * 36, hull.getVertexCount());
+		assertEquals(2 * 10 * 36, hull.getTriangleCount());
+		float[] pos = hull.getPositions();
+		float[] rgb = hull.getColors();
+		for (int i = 0; i <= 10; i++) {
+			for (int j = 0; j < 36; j++) {
+				int v = hull.vertex(i, j);
+				float c = boundary.sample(i, j);
+				assertEquals(generic.sample(i, j), c, 0.01);
+				assertEquals(boundary.lightness(i), pos[3 * v], 0);
+				assertEquals(c, Math.hypot(pos[3 * v + 1], pos[3 * v + 2]), 1e-3);
+				CAMLch col = new CAMLch(new float[] { boundary.lightness(i), c, boundary.hue(j) }, 1f, space);
+				float[] ref = PColor.convert(col, CS_sRGB.instance).getComponents();
+				for (int k = 0; k < 3; k++)
+					assertEquals(ref[k], rgb[3 * v + k], 1e-4);
+			}
+		}
+		for (int idx : hull.getIndices())
+			assertTrue(idx >= 0 && idx < hull.getVertexCount());
+	}
+
+	@Test
+	public void testBoundarySolver() {
+		BoundarySolver solver = new BoundarySolver(space);
+		int n = 200;
+		for (int k = 0; k < n; k++) {
+			float L = 2 + random.nextFloat() * 96;
+			float h = random.nextFloat() * 360;
+			CAMLch start = new CAMLch(new float[] { L, 0, h }, 1f, space);
+			float ref = ColorTools.determineBoundaryColor(start, CAMLch.c, 0, 150, 0.01f,
+					ColorPredicates.is_sRGB).get(CAMLch.c);
+			float c = solver.maxChroma(L, h, 0, 150, 0.01f);
+			assertEquals(ref, c, 0.05);
+			assertTrue(solver.outOfGamut(L, c, h) <= 0);
+			assertTrue(ColorPredicates.is_sRGB.apply(new CAMLch(new float[] { L, c, h }, 1f, space)));
+			assertTrue(solver.outOfGamut(L, c + 0.01f, h) > 0);
+		}
+		// well below the 16 conversions bisection needs
+		assertTrue(solver.getEvaluations() < n * 3 + n * 10);
+	}
+
+	@Test
+	public void testGamutMapper() {
+		GamutMapper mapper = new GamutMapper(space);
+		BoundarySolver solver = new BoundarySolver(space);
+		int n = 3000;
+		PColor[] colors = new PColor[n];
+		for (int i = 0; i < n; i++)
+			colors[i] = new CAMLch(new float[] { random.nextFloat() * 100, random.nextFloat() * 120,
+					random.nextFloat() * 360 }, 1f, space);
+		CAMLch[] mapped = mapper.map(colors);
+		sRGB[] rgb = mapper.mapToRGB(colors);
+		for (int i = 0; i < n; i++) {
+			CAMLch orig = (CAMLch) colors[i];
+			assertEquals(orig.get(CAMLch.h), mapped[i].get(CAMLch.h), 0);
+			assertTrue(ColorPredicates.is_sRGB.apply(mapped[i]));
+			// is_sRGB accepts failed (NaN) conversions, the solver does not
+			if (solver.outOfGamut(orig.get(CAMLch.L), orig.get(CAMLch.c), orig.get(CAMLch.h)) <= 0) {
+				assertEquals(orig.get(CAMLch.L), mapped[i].get(CAMLch.L), 0);
+				assertEquals(orig.get(CAMLch.c), mapped[i].get(CAMLch.c), 0);
+			} else if (mapped[i].get(CAMLch.c) > 0) {
+				// lightness is only given up for achromatic results
+				float c = mapped[i].get(CAMLch.c);
+				assertEquals(orig.get(CAMLch.L), mapped[i].get(CAMLch.L), 0);
+				assertTrue(c < orig.get(CAMLch.c));
+				assertTrue(solver.outOfGamut(orig.get(CAMLch.L), c + 0.01f, orig.get(CAMLch.h)) > 0);
+			}
+			float[] ref = PColor.convert(mapped[i], CS_sRGB.instance).getComponents();
+			for (int k = 0; k < 3; k++)
+				assertEquals(ref[k], rgb[i].get(k), 1e-4);
+		}
+	}
+
+	@Test
+	public void testOptimizePaletteParallel() {
+		CAMLch[] palette = new CAMLch[60];
+		for (int i = 0; i < palette.length; i++)
+			palette[i] = new CAMLch(new float[] { 50 + (i % 3) * 10, 0, (i % 20) * 18 }, 1f, space);
+		CAMLch[] ref = ColorTools.optimizePalette(palette, CAMLch.c, 0, 150, 0.01f, ColorPredicates.is_sRGB);
+		// solver path and generic path
+		CAMLch[] fast = ColorTools.optimizePaletteParallel(palette, CAMLch.c, 0, 150, 0.01f, ColorPredicates.is_sRGB);
+		CAMLch[] generic = ColorTools.optimizePaletteParallel(palette, CAMLch.c, 0, 150, 0.01f, ColorPredicates.is_sRGB::apply);
+		float c = ref[0].get(CAMLch.c);
+		assertEquals(c, fast[0].get(CAMLch.c), 0.05);
+		assertEquals(c, generic[0].get(CAMLch.c), 0.05);
+		for (int i = 0; i < palette.length; i++) {
+			assertEquals(fast[0].get(CAMLch.c), fast[i].get(CAMLch.c), 0);
+			assertEquals(palette[i].get(CAMLch.h), fast[i].get(CAMLch.h), 0);
+			assertTrue(ColorPredicates.is_sRGB.apply(fast[i]));
+		}
+		// repeated colors are searched once
+		PaletteOptimizer<CAMLch> optimizer = new PaletteOptimizer<>(CAMLch.c, 0, 150, 0.01f, ColorPredicates.is_sRGB);
+		for (CAMLch col : palette)
+			optimizer.boundary(col);
+		assertEquals(60, optimizer.getCacheSize());
+		optimizer.boundary(ColorTools.setChannel(palette[0], CAMLch.c, 42));
+		assertEquals(60, optimizer.getCacheSize());
+	}
+}
@@ -0,0 +1,153 @@
+package de.fhg.igd.pcolor.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.sRGB;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+import de.fhg.igd.pcolor.util.ColorBuffer;
+import de.fhg.igd.pcolor.util.ColorHistogram;
+import de.fhg.igd.pcolor.util.ColorTools;
+import de.fhg.igd.pcolor.util.DominantColors;
+import de.fhg.igd.pcolor.util.ImageDifference;
+import de.fhg.igd.pcolor.util.Quantizer;
+import de.fhg.igd.pcolor.util.Quantizer.Dithering;
+
+/**
+ * Tests the image operations on synthetic images.
+ */
+public class ImageTest {
+
+	ViewingConditions vc = ViewingConditions.sRGB_typical_envirnonment;
+
+	Color[] colors = { new Color(200, 30, 40), new Color(20, 120, 200), new Color(240, 230, 100) };
+
+	/**
+	 * @return a 1000 x 1000 image of three stripes, 50%, 30% and 20%
+	 *         wide
+	 */
+	private BufferedImage stripes(Color... colors) {
+		BufferedImage img = new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = img.createGraphics();
+		int[] widths = { 500, 300, 200 };
+		for (int i = 0, x = 0; i < colors.length; x += widths[i++]) {
+			g.setColor(colors[i]);
+			g.fillRect(x, 0, widths[i], 1000);
+		}
+		g.dispose();
+		return img;
+	}
+
+	@Test
+	public void testDominantColors() {
+		BufferedImage img = stripes(colors);
+		DominantColors.Cluster[] clusters = new DominantColors(3, vc).extract(img);
+		assertEquals(3, clusters.length);
+		float[] weights = { 0.5f, 0.3f, 0.2f };
+		for (int i = 0; i < 3; i++) {
+			PColor expected = new sRGB(colors[i].getRed() / 255f, colors[i].getGreen() / 255f, colors[i].getBlue() / 255f);
+			assertEquals(0, ColorTools.distance(expected, clusters[i].getColor(), vc), 0.01);
+			assertEquals(weights[i], clusters[i].getWeight(), 0.01);
+		}
+		assertTrue(clusters[0].getWeight() >= clusters[1].getWeight());
+	}
+
+	@Test
+	public void testQuantizer() {
+		BufferedImage img = stripes(colors);
+		Quantizer quantizer = Quantizer.fromImage(img, 3, vc);
+		BufferedImage indexed = quantizer.toIndexed(img, Dithering.NONE);
+		assertEquals(BufferedImage.TYPE_BYTE_INDEXED, indexed.getType());
+		for (int x = 0; x < 1000; x += 50)
+			assertEquals(img.getRGB(x, 10), indexed.getRGB(x, 10));
+
+		// a flat grey that emits half the light of white
+		int grey = 0xffbcbcbc;
+		int[] pixels = new int[100 * 100];
+		Arrays.fill(pixels, grey);
+		Quantizer bw = new Quantizer(new int[] { 0xff000000, 0xffffffff }, vc);
+		assertEquals(0, IntStream.of(bw.map(pixels)).sum() % pixels.length);
+		double white = IntStream.of(bw.map(pixels, 100, Dithering.LINEAR)).sum() / (double) pixels.length;
+		assertEquals(0.5, white, 0.02);
+		// perceptual dithering preserves the average lightness J' instead
+		float[] ucs = ColorTools.toUCS_Jab(ColorBuffer.fromARGB(new int[] { 0xff000000, 0xffffffff, grey }), vc);
+		double expected = (ucs[6] - ucs[0]) / (ucs[3] - ucs[0]);
+		white = IntStream.of(bw.map(pixels, 100, Dithering.PERCEPTUAL)).sum() / (double) pixels.length;
+		assertEquals(expected, white, 0.02);
+	}
+
+	@Test
+	public void testImageDifference() {
+		BufferedImage a = stripes(colors);
+		BufferedImage b = stripes(colors);
+		// change 10% of the pixels
+		Graphics2D g = b.createGraphics();
+		g.setColor(new Color(190, 40, 40));
+		g.fillRect(0, 0, 500, 200);
+		g.dispose();
+		ImageDifference diff = ImageDifference.compare(a, b, vc);
+		float dE = ColorTools.distance(new sRGB(200 / 255f, 30 / 255f, 40 / 255f), new sRGB(190 / 255f, 40 / 255f, 40 / 255f), vc);
+		assertEquals(dE, diff.get(10, 10), 1e-3);
+		assertEquals(0, diff.get(10, 500), 0);
+		assertEquals(100000, diff.getChangedPixels());
+		assertEquals(dE, diff.getMax(), 1e-3);
+		assertEquals(dE / 10, diff.getMean(), 1e-3);
+		assertEquals(0, diff.getPercentile(0.85), 0);
+		assertEquals(dE, diff.getP95(), 1e-3);
+		assertEquals(255, diff.toGreyscale(dE).getRaster().getSample(10, 10, 0));
+
+		BufferedImage c = new BufferedImage(1000, 1000, BufferedImage.TYPE_INT_RGB);
+		diff = ImageDifference.compare(a, c, vc);
+		assertEquals(1000000, diff.getChangedPixels());
+	}
+
+	@Test
+	public void testColorHistogram() {
+		BufferedImage img = stripes(colors);
+		ColorHistogram hist = new ColorHistogram(vc, 10, 10, 36, 100).add(img);
+		assertEquals(1000000, hist.getTotal());
+		CS_CAMLch jch = new CS_CAMLch(vc, CorrelateConfig.JCh);
+		float[] weights = { 0.5f, 0.3f, 0.2f };
+		double meanJ = 0;
+		float[] J = new float[3];
+		for (int i = 0; i < 3; i++) {
+			float[] c = PColor.convert(new sRGB(colors[i].getRed() / 255f, colors[i].getGreen() / 255f, colors[i].getBlue() / 255f), jch).getComponents();
+			J[i] = c[CAMLch.L];
+			meanJ += weights[i] * J[i];
+			assertEquals((long) (weights[i] * 1000000), hist.getCount((int) (c[CAMLch.L] / 10), (int) (c[CAMLch.c] / 10), (int) (c[CAMLch.h] / 10)));
+		}
+		assertEquals(meanJ, hist.getMeanLightness(), 1e-3);
+		// the red stripe is the darkest and covers half the image
+		assertEquals(J[0], hist.getLightnessPercentile(0.25), 0.1);
+		assertEquals(1000000, LongStream.of(hist.getHueMarginal()).sum());
+
+		// a buffer of the same pixels yields the same histogram
+		int[] argb = img.getRGB(0, 0, 1000, 1000, null, 0, 1000);
+		ColorHistogram fromBuffer = new ColorHistogram(vc, 10, 10, 36, 100).add(ColorBuffer.fromARGB(argb));
+		assertArrayEquals(hist.getCounts(), fromBuffer.getCounts());
+		assertEquals(hist.getMeanHue(), fromBuffer.getMeanHue(), 1e-3);
+
+		ColorHistogram red = new ColorHistogram(vc, 10, 10, 36, 100).add(new sRGB(0.8f, 0.1f, 0.1f));
+		assertEquals(PColor.convert(new sRGB(0.8f, 0.1f, 0.1f), jch).get(CAMLch.h), red.getMeanHue(), 1e-3);
+		assertEquals(1, red.getHueConcentration(), 1e-6);
+
+		// lightness beyond 100 is binned as 100 but averaged as it is
+		ColorHistogram bright = new ColorHistogram(vc, 10, 10, 36, 100).add(new CAMLch(new float[] { 110, 10, 90 }, 1, jch));
+		assertEquals(110, bright.getMeanLightness(), 1e-3);
+		assertEquals(1, bright.getLightnessMarginal()[9]);
+	}
+}
@@ -0,0 +1,247 @@
+package de.fhg.igd.pcolor.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.color.ColorSpace;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+import de.fhg.igd.pcolor.util.ColorTools;
+
+/**
+ * Compares a fast implementation of a conversion against a reference
+ * implementation, e.g. a bulk or table driven kernel against the per-color
+ * CIECAM02 route through {@link PColor}. Both run over the same inputs; the
+ * CAM02-UCS differences of their outputs, see
+ * {@link ColorTools#distance(PColor, PColor, ViewingConditions)}, and the
+ * throughput of both are reported.
+ * <p>
+ * Inputs are flat arrays of triplets, usually a stratified sample of the
+ * sRGB cube, see {@link #sRGBCube(int)}. The sample step can be overridden
+ * with the system property {@value #STEP_PROPERTY}; a step of 1 runs the
+ * full 24 bit cube.
+ * <p>
+ * Reports are printed to standard output as comparisons finish if the
+ * system property {@value #REPORT_PROPERTY} is true, which {@link #main(String[])}
+ * sets before running {@link PrecisionTest}.
+ */
+public class PrecisionHarness {
+
+	/**
+	 * the system property overriding the step of sRGB cube samples
+	 */
+	public static final String STEP_PROPERTY = "pcolor.precision.step";
+
+	/**
+	 * the system property enabling printed reports
+	 */
+	public static final String REPORT_PROPERTY = "pcolor.precision.report";
+
+	/**
+	 * A conversion of flat arrays of triplets.
+	 */
+	public interface Kernel {
+		/**
+		 * @param src the source triplets
+		 * @param srcOff the offset of the first source triplet
+		 * @param dst receives the converted triplets
+		 * @param dstOff the offset of the first destination triplet
+		 * @param count the number of triplets
+		 */
+		void apply(float[] src, int srcOff, float[] dst, int dstOff, int count);
+	}
+
+	/**
+	 * The outcome of a comparison.
+	 */
+	public static class Report {
+		final String name;
+		final int count;
+		final double max, mean, p99;
+		final double referenceRate, fastRate;
+
+		Report(String name, float[] dE, double referenceRate, double fastRate) {
+			this.name = name;
+			this.count = dE.length;
+			float[] sorted = dE.clone();
+			Arrays.sort(sorted);
+			double sum = 0;
+			for (float d : sorted)
+				sum += d;
+			this.max = count == 0 ? 0 : sorted[count - 1];
+			this.mean = count == 0 ? 0 : sum / count;
+			this.p99 = count == 0 ? 0 : sorted[Math.min(count - 1, (int) Math.ceil(0.99 * count) - 1)];
+			this.referenceRate = referenceRate;
+			this.fastRate = fastRate;
+		}
+
+		/**
+		 * @return the largest difference
+		 */
+		public double getMax() {
+			return max;
+		}
+
+		/**
+		 * @return the mean difference
+		 */
+		public double getMean() {
+			return mean;
+		}
+
+		/**
+		 * @return the 99th percentile of differences
+		 */
+		public double getP99() {
+			return p99;
+		}
+
+		/**
+		 * @return the colors per second converted by the reference kernel
+		 */
+		public double getReferenceRate() {
+			return referenceRate;
+		}
+
+		/**
+		 * @return the colors per second converted by the kernel under test
+		 */
+		public double getFastRate() {
+			return fastRate;
+		}
+
+		/**
+		 * Fails unless all differences are within bounds.
+		 * @param maxBound the bound on the largest difference
+		 * @param meanBound the bound on the mean difference
+		 * @param p99Bound the bound on the 99th percentile of differences
+		 * @return this report
+		 */
+		public Report assertWithin(double maxBound, double meanBound, double p99Bound) {
+			assertTrue(this + " exceeds max " + maxBound, max <= maxBound);
+			assertTrue(this + " exceeds mean " + meanBound, mean <= meanBound);
+			assertTrue(this + " exceeds p99 " + p99Bound, p99 <= p99Bound);
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT,
+					"%s: %d colors, dE max %.2e mean %.2e p99 %.2e, reference %.0f/s, fast %.0f/s (%.1fx)",
+					name, count, max, mean, p99, referenceRate, fastRate, fastRate / referenceRate);
+		}
+	}
+
+	private final ColorSpace outSpace;
+	private final ViewingConditions vc;
+
+	/**
+	 * @param outSpace the space of the kernels' output triplets
+	 * @param vc the viewing conditions differences are evaluated under
+	 */
+	public PrecisionHarness(ColorSpace outSpace, ViewingConditions vc) {
+		this.outSpace = outSpace;
+		this.vc = vc;
+	}
+
+	/**
+	 * Samples the sRGB cube in 8 bit levels 0, step, 2 step, ... and 255.
+	 * @param step the distance between levels, 1 for the full cube
+	 * @return flat sRGB triplets in 0..1
+	 */
+	public static float[] sRGBCube(int step) {
+		int[] levels = IntStream.concat(IntStream.iterate(0, l -> l + step).limit((255 + step - 1) / step),
+				IntStream.of(255)).toArray();
+		int n = levels.length;
+		float[] rgb = new float[3 * n * n * n];
+		int i = 0;
+		for (int r : levels)
+			for (int g : levels)
+				for (int b : levels) {
+					rgb[i++] = r / 255f;
+					rgb[i++] = g / 255f;
+					rgb[i++] = b / 255f;
+				}
+		return rgb;
+	}
+
+	/**
+	 * Samples the sRGB cube with the step given by {@value #STEP_PROPERTY}.
+	 * @param defaultStep the step if the property is not set
+	 * @return flat sRGB triplets in 0..1
+	 */
+	public static float[] sRGBCubeSample(int defaultStep) {
+		return sRGBCube(Integer.getInteger(STEP_PROPERTY, defaultStep));
+	}
+
+	/**
+	 * Wraps a per-color conversion as a kernel.
+	 * @param conversion converts one triplet
+	 * @return the kernel
+	 */
+	public static Kernel perColor(UnaryOperator<float[]> conversion) {
+		return (src, srcOff, dst, dstOff, count) -> {
+			float[] t = new float[3];
+			for (int i = 0; i < count; i++) {
+				System.arraycopy(src, srcOff + 3 * i, t, 0, 3);
+				System.arraycopy(conversion.apply(t), 0, dst, dstOff + 3 * i, 3);
+			}
+		};
+	}
+
+	/**
+	 * Runs both kernels over the input and compares their outputs.
+	 * @param name the name of the comparison, for reports
+	 * @param input the input triplets
+	 * @param reference the reference kernel
+	 * @param fast the kernel under test
+	 * @return the report
+	 */
+	public Report compare(String name, float[] input, Kernel reference, Kernel fast) {
+		int n = input.length / 3;
+		float[] expected = new float[3 * n];
+		float[] actual = new float[3 * n];
+		// once to warm up, once to measure
+		double referenceRate = 0, fastRate = 0;
+		for (int run = 0; run < 2; run++) {
+			referenceRate = rate(reference, input, expected, n);
+			fastRate = rate(fast, input, actual, n);
+		}
+		float[] dE = new float[n];
+		IntStream.range(0, n).parallel().forEach(i -> {
+			PColor a = PColor.create(outSpace, Arrays.copyOfRange(expected, 3 * i, 3 * i + 3));
+			PColor b = PColor.create(outSpace, Arrays.copyOfRange(actual, 3 * i, 3 * i + 3));
+			dE[i] = ColorTools.distance(a, b, vc);
+		});
+		Report report = new Report(name, dE, referenceRate, fastRate);
+		if (Boolean.getBoolean(REPORT_PROPERTY))
+			System.out.println(report);
+		return report;
+	}
+
+	/**
+	 * Runs {@link PrecisionTest} and prints its reports.
+	 * @param args ignored
+	 */
+	public static void main(String[] args) {
+		System.setProperty(REPORT_PROPERTY, "true");
+		Result result = JUnitCore.runClasses(PrecisionTest.class);
+		for (Failure failure : result.getFailures())
+			System.out.println(failure);
+		System.exit(result.wasSuccessful() ? 0 : 1);
+	}
+
+	private static double rate(Kernel kernel, float[] input, float[] output, int n) {
+		long start = System.nanoTime();
+		kernel.apply(input, 0, output, 0, n);
+		return n / ((System.nanoTime() - start) / 1e9);
+	}
+}
@@ -0,0 +1,68 @@
+package de.fhg.igd.pcolor.test;
+
+import org.junit.Test;
+
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.sRGB;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CS_CIECAM02;
+import de.fhg.igd.pcolor.colorspace.CS_sRGB;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+import de.fhg.igd.pcolor.test.PrecisionHarness.Kernel;
+
+/**
+ * Holds the bulk conversions to the precision of the per-color reference
+ * implementation, see {@link PrecisionHarness}.
+ */
+public class PrecisionTest {
+
+	static final int STEP = 15;
+
+	@Test
+	public void testForward() {
+		float[] rgb = PrecisionHarness.sRGBCubeSample(STEP);
+		for (CS_CAMLch space : new CS_CAMLch[] { CS_CAMLch.defaultJChInstance, CS_CAMLab.defaultJaMbMInstance }) {
+			Kernel reference = PrecisionHarness.perColor(c ->
+					PColor.convert(new sRGB(c[0], c[1], c[2]), space).getComponents());
+			new PrecisionHarness(space, space.getViewingconditions())
+					.compare("sRGB -> " + space.getClass().getSimpleName(), rgb, reference, space::fromRGB)
+					.assertWithin(1e-3, 1e-4, 1e-4);
+		}
+	}
+
+	@Test
+	public void testInverse() {
+		float[] rgb = PrecisionHarness.sRGBCubeSample(STEP);
+		for (CS_CAMLch space : new CS_CAMLch[] { CS_CAMLch.defaultJChInstance, CS_CAMLab.defaultJaMbMInstance }) {
+			float[] cam = new float[rgb.length];
+			space.fromRGB(rgb, 0, cam, 0, rgb.length / 3);
+			Kernel reference = PrecisionHarness.perColor(c ->
+					PColor.convert(PColor.create(space, c), CS_sRGB.instance).getComponents());
+			new PrecisionHarness(CS_sRGB.instance, space.getViewingconditions())
+					.compare(space.getClass().getSimpleName() + " -> sRGB", cam, reference, space::toRGB)
+					.assertWithin(1e-3, 1e-4, 1e-4);
+		}
+	}
+
+	/**
+	 * The CIE 159:2004 worked example, under both of its viewing conditions.
+	 */
+	@Test
+	public void testWorkedExample() {
+		CAMWorkedExample example = new CAMWorkedExample();
+		float[] xyz = example.testSample.getComponents();
+		for (ViewingConditions vc : new ViewingConditions[] { example.Cond20, example.Cond200 }) {
+			CS_CIECAM02 cam = new CS_CIECAM02(vc);
+			CS_CAMLch space = new CS_CAMLch(vc, CorrelateConfig.JCh);
+			Kernel reference = PrecisionHarness.perColor(c -> {
+				float[] all = cam.fromCIEXYZ(c);
+				return new float[] { all[CS_CIECAM02.J], all[CS_CIECAM02.C], all[CS_CIECAM02.h] };
+			});
+			new PrecisionHarness(space, vc)
+					.compare("worked example L_A " + vc.getL_A(), xyz, reference, space::fromCIEXYZ)
+					.assertWithin(1e-4, 1e-4, 1e-4);
+		}
+	}
+}
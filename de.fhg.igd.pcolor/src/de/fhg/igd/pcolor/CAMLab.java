@@ -183,7 +183,7 @@ public class CAMLab extends PColor {
 			// CS_CAMLch or CS_CAMLab by virtue of subtyping:
 			// reduce to reconfiguration and conversion
 			CS_CAMLch toCsLch = (CS_CAMLch) to;
-			float[] components = getColorSpace().reconfigure(getComponents(), toCsLch.getCorrelateConfiguration());
+			float[] components = getColorSpace().reconfigure(getComponents(), toCsLch.getCorrelateConfig());
 			
 			// derive ab from ch?
 			if (toCsLch instanceof CS_CAMLab) {
@@ -26,6 +26,8 @@ import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
 import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
 import de.fhg.igd.pcolor.colorspace.CS_CIECAM02;
 import de.fhg.igd.pcolor.colorspace.CS_CIELab;
+import de.fhg.igd.pcolor.util.Instrumentation;
+import de.fhg.igd.pcolor.util.Instrumentation.Path;
 
 /**
  * PColors represent single colors and provide operations on them.
@@ -279,8 +281,11 @@ public abstract class PColor {
 	 */
 	public static PColor convert(PColor in, ColorSpace targetSpace) {
 		// optimize no conversion
-		if (in.getColorSpace().equals(targetSpace))
+		if (in.getColorSpace().equals(targetSpace)) {
+			if (Instrumentation.isEnabled())
+				Instrumentation.conversion(in.getColorSpace(), targetSpace, Path.NONE);
 			return in;
+		}
 
 		// check if this conversion can be optimized as a degenerate transpose
 		if (in.getColorSpace() instanceof CS_CIECAM02 && targetSpace instanceof CS_CIECAM02) {
@@ -290,11 +295,15 @@ public abstract class PColor {
 			// to get to a new set of correlates. This saves some CPU, and
 			// really has better precision for the intra-CAM cases.
 			if (csCamFrom.getViewingconditions().equals(csCamTo.getViewingconditions())) {
+				if (Instrumentation.isEnabled())
+					Instrumentation.conversion(csCamFrom, csCamTo, Path.TRANSPOSE);
 				return in.transpose(csCamTo);
 			}
 		}
 
 		// convert over XYZ
+		if (Instrumentation.isEnabled())
+			Instrumentation.conversion(in.getColorSpace(), targetSpace, Path.XYZ);
 		if (targetSpace instanceof CS_CAMLab)
 			return new CAMLab(in, (CS_CAMLab)targetSpace);
 		else if (targetSpace instanceof CS_CAMLch)
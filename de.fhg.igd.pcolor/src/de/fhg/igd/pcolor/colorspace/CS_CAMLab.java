@@ -62,6 +62,14 @@ public class CS_CAMLab extends CS_CAMLch {
 	public CS_CAMLab(ViewingConditions cond, int... correlates) {
 		super(cond, correlates);
 	}
+
+	/**
+	 * @param cond viewing conditions
+	 * @param config the correlate configuration of the underlying L, c, h
+	 */
+	public CS_CAMLab(ViewingConditions cond, CorrelateConfig config) {
+		super(cond, config);
+	}
 	
 	/**
 	 * Factory for deriving CAMLab from CAMLch based on identical correlates;
@@ -76,7 +84,7 @@ public class CS_CAMLab extends CS_CAMLch {
 		// be a subtyping helper
 		if (base instanceof CS_CAMLab)
 			return (CS_CAMLab) base;
-		return new CS_CAMLab(base.getViewingconditions(), base.getCorrelateConfiguration());
+		return new CS_CAMLab(base.getViewingconditions(), base.getCorrelateConfig());
 	}
 
 	@Override
@@ -86,6 +94,16 @@ public class CS_CAMLab extends CS_CAMLch {
 	}
 
 	
+	@Override
+	protected void fromCIECAM(float[] cam, float[] out, int off) {
+		super.fromCIECAM(cam, out, off);
+		double toRad = toRadFactor();
+		float C = out[off + c];
+		float ang = out[off + h];
+		out[off + a] = C * (float)Math.cos(ang * toRad);
+		out[off + b] = C * (float)Math.sin(ang * toRad);
+	}
+
 	/**
 	 * Convert a Lch triplet to Lab. This solely involves a geometric transform,
 	 * not much color calculation.
@@ -103,6 +121,16 @@ public class CS_CAMLab extends CS_CAMLch {
 		return super.toCIECAM(Lch);
 	}
 
+	@Override
+	protected void toCIECAM(float[] comp, int off, float[] cam) {
+		float len = (float) Math.hypot(comp[off + a], comp[off + b]);
+		float ang = (float) Math.atan2(comp[off + b], comp[off + a]);
+		if (ang < 0)
+			ang += (float) Math.PI * 2;
+		ang /= toRadFactor();
+		toCIECAM(comp[off + L], len, ang, cam);
+	}
+
 	/**
 	 * Convert a Lab triplet to Lch. This solely involves a geometric transform,
 	 * not much color calculation.
@@ -180,7 +208,7 @@ public class CS_CAMLab extends CS_CAMLch {
 	/**
 	 * A CS_CAMLab instance based on JMh (Ja<sub>M</sub>b<sub>M</sub>).
 	 */
-	public static final CS_CAMLab defaultJaMbMInstance = new CS_CAMLab(defaultContext, CS_CAMLch.JMh);
+	public static final CS_CAMLab defaultJaMbMInstance = new CS_CAMLab(defaultContext, CorrelateConfig.JMh);
 	
 	/**
 	 * An instance with default viewing conditions and JaMbM correlate configuration.
@@ -24,6 +24,8 @@ import java.util.Arrays;
 
 import de.fhg.igd.pcolor.CIEXYZ;
 import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+import de.fhg.igd.pcolor.util.Instrumentation;
+import de.fhg.igd.pcolor.util.InstrumentationListener;
 import de.fhg.igd.pcolor.util.MathTools;
 
 
@@ -31,7 +33,10 @@ import de.fhg.igd.pcolor.util.MathTools;
  * This class implements any colorspace derived from the CIECAM02
  * color appearance model by selecting correlates. The class features
  * a set of pre-defined correlate configurations which completely
- * define an appearance.
+ * define an appearance, see {@link CorrelateConfig}.
+ * <p>
+ * The configuration arrays such as {@link #JCh} are kept for compatibility
+ * and are only read when passed in; use {@link CorrelateConfig} instead.
  */
 public class CS_CAMLch extends CS_CIECAM02 {
 
@@ -54,9 +59,15 @@ public class CS_CAMLch extends CS_CIECAM02 {
 	public static final int h = 2;
 	
 	/**
-	 * the correlate configuration; the array of correlate indexes representing L, c, h in order.
+	 * the correlate configuration
 	 */
-	private final int[] correlateIndex;
+	private final CorrelateConfig config;
+
+	/**
+	 * the CIECAM02 correlates representing L, c, h, unpacked from the
+	 * configuration for the conversion loops
+	 */
+	private final int corrL, corrC, corrH;
 
 	/**
 	 * @param whitePoint XYZ white point
@@ -66,10 +77,7 @@ public class CS_CAMLch extends CS_CIECAM02 {
 	 * @param sur surrounding
 	 */
 	public CS_CAMLch(CIEXYZ whitePoint, double L_A, double Y_b, Surrounding sur, int... correlates) {
-		super(whitePoint, L_A, Y_b, sur);
-		if (correlates.length != getNumComponents())
-			throw new IllegalArgumentException("correlates have the wrong size");
-		this.correlateIndex = correlates;
+		this(ViewingConditions.createAdapted(whitePoint, L_A, Y_b, sur), configOf(correlates));
 	}
 
 	/**
@@ -77,10 +85,25 @@ public class CS_CAMLch extends CS_CIECAM02 {
 	 * @param correlates the CIECAM02 correlates to use for the L, c, h pseudo-correlates
 	 */
 	public CS_CAMLch(ViewingConditions cond, int... correlates) {
+		this(cond, configOf(correlates));
+	}
+
+	/**
+	 * @param cond viewing conditions
+	 * @param config the correlate configuration
+	 */
+	public CS_CAMLch(ViewingConditions cond, CorrelateConfig config) {
 		super(cond);
-		if (correlates.length != getNumComponents())
+		this.config = config;
+		this.corrL = config.getLightness();
+		this.corrC = config.getChroma();
+		this.corrH = config.getHue();
+	}
+
+	private static CorrelateConfig configOf(int[] correlates) {
+		if (correlates.length != 3)
 			throw new IllegalArgumentException("correlates have the wrong size");
-		this.correlateIndex = correlates;
+		return CorrelateConfig.of(correlates);
 	}
 
 	@Override
@@ -92,7 +115,14 @@ public class CS_CAMLch extends CS_CIECAM02 {
 	 * @return the color space's correlate configuration
 	 */
 	public int[] getCorrelateConfiguration() {
-		return correlateIndex.clone();
+		return config.toArray();
+	}
+
+	/**
+	 * @return the color space's correlate configuration
+	 */
+	public CorrelateConfig getCorrelateConfig() {
+		return config;
 	}
 
 	@Override
@@ -107,12 +137,72 @@ public class CS_CAMLch extends CS_CIECAM02 {
 	}
 
 	
+	/**
+	 * Bulk variant of {@link #fromCIEXYZ(float[])} operating on flat arrays
+	 * of triplets. No objects are allocated per color. Source and
+	 * destination may be the same array.
+	 * @param xyz the XYZ triplets
+	 * @param xyzOff the offset of the first XYZ triplet
+	 * @param dst receives the triplets in this space
+	 * @param dstOff the offset of the first destination triplet
+	 * @param count the number of triplets to convert
+	 */
+	public void fromCIEXYZ(float[] xyz, int xyzOff, float[] dst, int dstOff, int count) {
+		InstrumentationListener listener = Instrumentation.getListener();
+		Object token = listener != null ? listener.begin(InstrumentationListener.Kind.BULK_CONVERSION) : null;
+		long start = listener != null ? System.nanoTime() : 0;
+		float[] cam = new float[super.getNumComponents()];
+		for (int i = 0; i < count; i++) {
+			int si = xyzOff + 3 * i;
+			forwardTransform(xyz[si] * 100.0, xyz[si + 1] * 100.0, xyz[si + 2] * 100.0, cam);
+			fromCIECAM(cam, dst, dstOff + 3 * i);
+		}
+		if (listener != null)
+			listener.bulkConversion(token, de.fhg.igd.pcolor.colorspace.CS_CIEXYZ.instance, this, count, System.nanoTime() - start);
+	}
+
+	/**
+	 * Bulk variant of {@link #fromRGB(float[])} operating on flat arrays
+	 * of sRGB triplets. Source and destination may be the same array.
+	 * @param rgb the sRGB triplets
+	 * @param rgbOff the offset of the first sRGB triplet
+	 * @param dst receives the triplets in this space
+	 * @param dstOff the offset of the first destination triplet
+	 * @param count the number of triplets to convert
+	 */
+	public void fromRGB(float[] rgb, int rgbOff, float[] dst, int dstOff, int count) {
+		InstrumentationListener listener = Instrumentation.getListener();
+		Object token = listener != null ? listener.begin(InstrumentationListener.Kind.BULK_CONVERSION) : null;
+		long start = listener != null ? System.nanoTime() : 0;
+		float[] xyz = new float[3];
+		float[] cam = new float[super.getNumComponents()];
+		for (int i = 0; i < count; i++) {
+			de.fhg.igd.pcolor.colorspace.CS_sRGB.toCIEXYZ(rgb, rgbOff + 3 * i, xyz, 0, 1);
+			forwardTransform(xyz[0] * 100.0, xyz[1] * 100.0, xyz[2] * 100.0, cam);
+			fromCIECAM(cam, dst, dstOff + 3 * i);
+		}
+		if (listener != null)
+			listener.bulkConversion(token, de.fhg.igd.pcolor.colorspace.CS_sRGB.instance, this, count, System.nanoTime() - start);
+	}
+
 	protected float[] fromCIECAM(float[] cam) {
-		return fromCIECAMCorrelates(cam, correlateIndex);
+		return new float[] { cam[corrL], cam[corrC], cam[corrH] };
 	}
 
-	private float[] fromCIECAMCorrelates(float[] cam, int[] cIndex) {
-		return new float[] { cam[cIndex[L]], cam[cIndex[c]], cam[cIndex[h]] };
+	/**
+	 * Select the correlates of this space, writing them to an array.
+	 * @param cam the CIECAM02 correlates
+	 * @param out the array to write to
+	 * @param off the offset of the triplet to write
+	 */
+	protected void fromCIECAM(float[] cam, float[] out, int off) {
+		out[off] = cam[corrL];
+		out[off + 1] = cam[corrC];
+		out[off + 2] = cam[corrH];
+	}
+
+	private float[] fromCIECAMCorrelates(float[] cam, CorrelateConfig config) {
+		return new float[] { cam[config.getLightness()], cam[config.getChroma()], cam[config.getHue()] };
 	}
 
 	@Override
@@ -121,6 +211,80 @@ public class CS_CAMLch extends CS_CIECAM02 {
 		return super.toCIEXYZ(cam);
 	}
 
+	/**
+	 * Bulk variant of {@link #toCIEXYZ(float[])} operating on flat arrays
+	 * of triplets. No objects are allocated per color. Source and
+	 * destination may be the same array.
+	 * @param src the triplets in this space
+	 * @param srcOff the offset of the first source triplet
+	 * @param xyz receives the XYZ triplets
+	 * @param xyzOff the offset of the first XYZ triplet
+	 * @param count the number of triplets to convert
+	 */
+	public void toCIEXYZ(float[] src, int srcOff, float[] xyz, int xyzOff, int count) {
+		InstrumentationListener listener = Instrumentation.getListener();
+		Object token = listener != null ? listener.begin(InstrumentationListener.Kind.BULK_CONVERSION) : null;
+		long start = listener != null ? System.nanoTime() : 0;
+		toCIEXYZ0(src, srcOff, xyz, xyzOff, count);
+		if (listener != null)
+			listener.bulkConversion(token, this, de.fhg.igd.pcolor.colorspace.CS_CIEXYZ.instance, count, System.nanoTime() - start);
+	}
+
+	/**
+	 * the bulk inverse transform, without reporting to listeners
+	 */
+	private void toCIEXYZ0(float[] src, int srcOff, float[] xyz, int xyzOff, int count) {
+		float[] cam = new float[super.getNumComponents()];
+		for (int i = 0; i < count; i++) {
+			toCIECAM(src, srcOff + 3 * i, cam);
+			fillReverse(cam);
+			if (!MathTools.isReal(cam[C]) || !MathTools.isReal(cam[J]) || !MathTools.isReal(cam[CS_CIECAM02.h]))
+				throw new IllegalArgumentException("Insufficient correlates were present.");
+			reverseTransform(cam[J], cam[C], cam[CS_CIECAM02.h], xyz, xyzOff + 3 * i);
+		}
+	}
+
+	/**
+	 * Bulk variant of {@link #toRGB(float[])} operating on flat arrays
+	 * of triplets. The sRGB values are not clipped. Source and destination
+	 * may be the same array.
+	 * @param src the triplets in this space
+	 * @param srcOff the offset of the first source triplet
+	 * @param rgb receives the sRGB triplets
+	 * @param rgbOff the offset of the first sRGB triplet
+	 * @param count the number of triplets to convert
+	 */
+	public void toRGB(float[] src, int srcOff, float[] rgb, int rgbOff, int count) {
+		InstrumentationListener listener = Instrumentation.getListener();
+		Object token = listener != null ? listener.begin(InstrumentationListener.Kind.BULK_CONVERSION) : null;
+		long start = listener != null ? System.nanoTime() : 0;
+		toCIEXYZ0(src, srcOff, rgb, rgbOff, count);
+		de.fhg.igd.pcolor.colorspace.CS_sRGB.fromCIEXYZ(rgb, rgbOff, rgb, rgbOff, count);
+		if (listener != null)
+			listener.bulkConversion(token, this, de.fhg.igd.pcolor.colorspace.CS_sRGB.instance, count, System.nanoTime() - start);
+	}
+
+	/**
+	 * Un-pack a triplet of this space to its contained CIECAM02 correlates.
+	 * Unset correlates will be NaN.
+	 * @param comp the array holding the triplet
+	 * @param off the offset of the triplet
+	 * @param cam receives the CIECAM02 correlates
+	 */
+	protected void toCIECAM(float[] comp, int off, float[] cam) {
+		toCIECAM(comp[off], comp[off + 1], comp[off + 2], cam);
+	}
+
+	/**
+	 * translate the pseudo-correlates to CIECAM02 correlates
+	 */
+	final void toCIECAM(float L, float c, float h, float[] cam) {
+		Arrays.fill(cam, Float.NaN);
+		cam[corrL] = L;
+		cam[corrC] = c;
+		cam[corrH] = h;
+	}
+
 	/**
 	 * Un-pack colorvalue from Lch to its contained CIECAM02 correlates.
 	 * Unset correlates will be NaN. 
@@ -131,9 +295,9 @@ public class CS_CAMLch extends CS_CIECAM02 {
 		float[] cam = new float[super.getNumComponents()];
 		Arrays.fill(cam, Float.NaN);
 		// translate channels
-		cam[correlateIndex[L]] = colorvalue[L];
-		cam[correlateIndex[c]] = colorvalue[c];
-		cam[correlateIndex[h]] = colorvalue[h];
+		cam[corrL] = colorvalue[L];
+		cam[corrC] = colorvalue[c];
+		cam[corrH] = colorvalue[h];
 		return cam;
 	}
 	
@@ -146,6 +310,18 @@ public class CS_CAMLch extends CS_CIECAM02 {
 	 * @return a CAMLch color value based on the given correlates
 	 */
 	public float[] reconfigure(float[] colorvalue, int... correlates) {
+		return reconfigure(colorvalue, configOf(correlates));
+	}
+
+	/**
+	 * Reconfigure to a different CIECAM02 correlate configuration.
+	 * This is less cumbersome and more precise than a full
+	 * CAM =&gt; XYZ =&gt; CAM cycle.
+	 * @param colorvalue the value to convert
+	 * @param config the correlate configuration to switch to
+	 * @return a CAMLch color value based on the given correlates
+	 */
+	public float[] reconfigure(float[] colorvalue, CorrelateConfig config) {
 		float[] cam = toCIECAM(colorvalue);
 		// complete the unset correlates (some corner cases need)
 		fillForward(cam);
@@ -154,7 +330,7 @@ public class CS_CAMLch extends CS_CIECAM02 {
 		// but some cases need the final forward fill
 		// if (!MathTools.isReal(cam))
 		fillForward(cam);
-		float[] lch = fromCIECAMCorrelates(cam, correlates);
+		float[] lch = fromCIECAMCorrelates(cam, config);
 		if (!MathTools.isReal(cam))
 			throw new IllegalArgumentException("colorvalue could not be completed to new correlates");
 		return lch;
@@ -162,24 +338,24 @@ public class CS_CAMLch extends CS_CIECAM02 {
 
 	@Override
 	public String getName(int component) {
-		return super.getName(correlateIndex[component]);
+		return super.getName(config.get(component));
 	}
 
 	@Override
 	public float getMaxValue(int component) {
-		return super.getMaxValue(correlateIndex[component]);
+		return super.getMaxValue(config.get(component));
 	}
 
 	@Override
 	public float getMinValue(int component) {
-		return super.getMinValue(correlateIndex[component]);
+		return super.getMinValue(config.get(component));
 	}
 	
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = super.hashCode();
-		result = prime * result + Arrays.hashCode(correlateIndex);
+		result = prime * result + config.ordinal();
 		return result;
 	}
 
@@ -192,7 +368,7 @@ public class CS_CAMLch extends CS_CIECAM02 {
 		if (getClass() != obj.getClass())
 			return false;
 		CS_CAMLch other = (CS_CAMLch) obj;
-		if (!Arrays.equals(correlateIndex, other.correlateIndex))
+		if (config != other.config)
 			return false;
 		return true;
 	}
@@ -200,63 +376,64 @@ public class CS_CAMLch extends CS_CIECAM02 {
 	/**
 	 * the JCh correlate configuration
 	 */
-	public static int[] JCh = new int[] { CS_CIECAM02.J, CS_CIECAM02.C, CS_CIECAM02.h };
+	public static final int[] JCh = new int[] { CS_CIECAM02.J, CS_CIECAM02.C, CS_CIECAM02.h };
 	/**
 	 * the JCH correlate configuration
 	 */
-	public static int[] JCH = new int[] { CS_CIECAM02.J, CS_CIECAM02.C, CS_CIECAM02.H };
+	public static final int[] JCH = new int[] { CS_CIECAM02.J, CS_CIECAM02.C, CS_CIECAM02.H };
 	/**
 	 * the JMH correlate configuration
 	 */
-	public static int[] JMh = new int[] { CS_CIECAM02.J, CS_CIECAM02.M, CS_CIECAM02.h };
+	public static final int[] JMh = new int[] { CS_CIECAM02.J, CS_CIECAM02.M, CS_CIECAM02.h };
 	/**
 	 * the JMh correlate configuration
 	 */
-	public static int[] JMH = new int[] { CS_CIECAM02.J, CS_CIECAM02.M, CS_CIECAM02.H};
+	public static final int[] JMH = new int[] { CS_CIECAM02.J, CS_CIECAM02.M, CS_CIECAM02.H};
 	/**
 	 * the Jsh correlate configuration
 	 */
-	public static int[] Jsh = new int[] { CS_CIECAM02.J, CS_CIECAM02.s, CS_CIECAM02.h };
+	public static final int[] Jsh = new int[] { CS_CIECAM02.J, CS_CIECAM02.s, CS_CIECAM02.h };
 	/**
 	 * the JsH correlate configuration
 	 */
-	public static int[] JsH = new int[] { CS_CIECAM02.J, CS_CIECAM02.s, CS_CIECAM02.H };
+	public static final int[] JsH = new int[] { CS_CIECAM02.J, CS_CIECAM02.s, CS_CIECAM02.H };
 	/**
 	 * the QCh correlate configuration
 	 */
-	public static int[] QCh = new int[] { CS_CIECAM02.Q, CS_CIECAM02.C, CS_CIECAM02.h };
+	public static final int[] QCh = new int[] { CS_CIECAM02.Q, CS_CIECAM02.C, CS_CIECAM02.h };
 	/**
 	 * the QCH correlate configuration
 	 */
-	public static int[] QCH = new int[] { CS_CIECAM02.Q, CS_CIECAM02.C, CS_CIECAM02.H };
+	public static final int[] QCH = new int[] { CS_CIECAM02.Q, CS_CIECAM02.C, CS_CIECAM02.H };
 	/**
 	 * the QMh correlate configuration
 	 */
-	public static int[] QMh = new int[] { CS_CIECAM02.Q, CS_CIECAM02.M, CS_CIECAM02.h };
+	public static final int[] QMh = new int[] { CS_CIECAM02.Q, CS_CIECAM02.M, CS_CIECAM02.h };
 	/**
 	 * the QMH correlate configuration
 	 */
-	public static int[] QMH = new int[] { CS_CIECAM02.Q, CS_CIECAM02.M, CS_CIECAM02.H };
+	public static final int[] QMH = new int[] { CS_CIECAM02.Q, CS_CIECAM02.M, CS_CIECAM02.H };
 	/**
 	 * the Qsh correlate configuration
 	 */
-	public static int[] Qsh = new int[] { CS_CIECAM02.Q, CS_CIECAM02.s, CS_CIECAM02.h };
+	public static final int[] Qsh = new int[] { CS_CIECAM02.Q, CS_CIECAM02.s, CS_CIECAM02.h };
 	/**
 	 * the QsH correlate configuration
 	 */
-	public static int[] QsH = new int[] { CS_CIECAM02.Q, CS_CIECAM02.s, CS_CIECAM02.H };
+	public static final int[] QsH = new int[] { CS_CIECAM02.Q, CS_CIECAM02.s, CS_CIECAM02.H };
 	
 	/**
-	 * An array containing all supported correlate configurations 
+	 * An array containing all supported correlate configurations, in the
+	 * order of {@link CorrelateConfig#values()}
 	 */
-	public static int[][] correlateConfigurations = new int[][] {
+	public static final int[][] correlateConfigurations = new int[][] {
 														JCh, JCH, JMh, JMH, Jsh, JsH,
 														QCh, QCH, QMh, QMH, Qsh, QsH, };
 	
 	/**
 	 * An instance with default viewing conditions and JCh correlate configuration.
 	 */
-	public static final CS_CAMLch defaultJChInstance = new CS_CAMLch(defaultContext, JCh);
+	public static final CS_CAMLch defaultJChInstance = new CS_CAMLch(defaultContext, CorrelateConfig.JCh);
 	
 	/**
 	 * An instance with default viewing conditions and JCh correlate configuration.
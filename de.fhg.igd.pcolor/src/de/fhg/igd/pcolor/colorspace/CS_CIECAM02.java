@@ -158,6 +158,57 @@ public class CS_CIECAM02 extends ColorSpace {
 		return corr;
 	}
 
+	/**
+	 * Implements the CIECAM02 forward transform without intermediate arrays.
+	 * This is the kernel behind the bulk conversions and follows
+	 * {@link #forwardTransform(double[])} step by step.
+	 * @param X the X tristimulus value (0..100)
+	 * @param Y the Y tristimulus value (0..100)
+	 * @param Z the Z tristimulus value (0..100)
+	 * @param corr receives the seven CIECAM02 appearance correlates
+	 */
+	protected void forwardTransform(double X, double Y, double Z, float[] corr) {
+		double F_L = context.getF_L();
+
+		// sharpened and adapted cone response
+		double R_c = ( 0.7328 * X + 0.4296 * Y - 0.1624 * Z) * context.getD_RGB(0);
+		double G_c = (-0.7036 * X + 1.6975 * Y + 0.0061 * Z) * context.getD_RGB(1);
+		double B_c = ( 0.0030 * X + 0.0136 * Y + 0.9834 * Z) * context.getD_RGB(2);
+
+		// HPE cone fundamentals, response-compressed
+		double R_a = compress(F_L,  0.7409792 * R_c + 0.2180250 * G_c + 0.0410058 * B_c);
+		double G_a = compress(F_L,  0.2853532 * R_c + 0.6242014 * G_c + 0.0904454 * B_c);
+		double B_a = compress(F_L, -0.0096280 * R_c - 0.0056980 * G_c + 1.0153260 * B_c);
+
+		double A = (2.0 * R_a + G_a + B_a / 20.0 - 0.305) * context.getN_bb();
+		double J = forwardJ(A);
+		double a = R_a + (-12.0 * G_a + B_a) / 11.0;
+		double b = (R_a + G_a - 2.0 * B_a) / 9.0;
+		double h = calculateh(a, b);
+		double t = gete(h) * Math.sqrt(a * a + b * b) / (R_a + G_a + 1.05 * B_a);
+		double C = forwardC(J, t);
+
+		corr[CS_CIECAM02.J] = (float) J;
+		corr[CS_CIECAM02.C] = (float) C;
+		corr[CS_CIECAM02.h] = (float) h;
+		corr[Q] = corr[M] = corr[s] = corr[H] = Float.NaN;
+		fillForward(corr);
+	}
+
+	/**
+	 * response compression of a single HPE channel, see
+	 * {@link #forwardResponseCompression(double[])}
+	 */
+	private static double compress(double F_L, double c) {
+		if (c >= 0) {
+			double n = Math.pow(F_L * c / 100.0, 0.42);
+			return 400.0 * n / (n + 27.13) + 0.1;
+		} else {
+			double n = Math.pow(-1.0 * F_L * c / 100.0, 0.42);
+			return -400.0 * n / (n + 27.13) + 0.1;
+		}
+	}
+
 	/**
 	 * Fill those correlates which are NaN and can be derived from existing correlates
 	 * and model parameters during a forward transform. These may be Q, M, s, H.
@@ -207,7 +258,7 @@ public class CS_CIECAM02 extends ColorSpace {
 	 * @return corresponding (sharpened) cone response
 	 */
 	protected double[] forwardPostAdaptationConeResponse(double[] RGB) {
-		return new double[] {context.getD_RGB()[0] * RGB[0], context.getD_RGB()[1] * RGB[1], context.getD_RGB()[2] * RGB[2]};
+		return new double[] {context.getD_RGB(0) * RGB[0], context.getD_RGB(1) * RGB[1], context.getD_RGB(2) * RGB[2]};
 	}
 
 	/**
@@ -374,6 +425,71 @@ public class CS_CIECAM02 extends ColorSpace {
 		return reverseXYZ(RGB);
 	}
 
+	/**
+	 * Implements the CIECAM02 inverse transform without intermediate arrays.
+	 * This is the kernel behind the bulk conversions and follows
+	 * {@link #reverseTransform(float[])} step by step.
+	 * @param J lightness
+	 * @param C chroma
+	 * @param h hue angle
+	 * @param xyz receives the XYZ tristimulus values (0..1)
+	 * @param off the offset of the XYZ triplet
+	 */
+	protected void reverseTransform(double J, double C, double h, float[] xyz, int off) {
+		double e = gete(h);
+		double A = reverseA(J);
+		double t = reverset(J, C);
+		double p2 = reversep2(A);
+		double a = 0, b = 0;
+		if (t > 0) {
+			// see reverseab
+			double p3 = 1.05;
+			double hRad = Math.toRadians(h);
+			double sin = Math.sin(hRad), cos = Math.cos(hRad);
+			double p1 = e * (1.0 / t);
+			if (Math.abs(sin) >= Math.abs(cos)) {
+				double i = cos / sin;
+				double p4 = p1 / sin;
+				b = (p2 * (2 + p3) * (460.0 / 1403.0)) / (p4 + (2 + p3) * (220.0 / 1403.0) * i - (27.0 / 1403.0) + p3 * (6300.0 / 1403.0));
+				a = b * i;
+			} else {
+				double i = sin / cos;
+				double p5 = p1 / cos;
+				a = (p2 * (2.0 + p3) * (460.0 / 1403.0)) / (p5 + (2.0 + p3) * (220.0 / 1403.0) - (27.0 / 1403.0 - p3 * 6300.0 / 1403.0) * i);
+				b = a * i;
+			}
+		}
+
+		// post-adaptation cone response, decompressed to HPE response
+		double F_L = context.getF_L();
+		double j = 460.0 / 1403.0 * p2;
+		double R = decompress(F_L, j + 451.0 / 1403.0 * a + 288.0 / 1403.0 * b);
+		double G = decompress(F_L, j - 891.0 / 1403.0 * a - 261.0 / 1403.0 * b);
+		double B = decompress(F_L, j - 220.0 / 1403.0 * a - 6300.0 / 1403.0 * b);
+
+		// sharpened cone responses
+		double R_c = ( 1.5591524816 * R - 0.54472286880 * G - 0.0144452544 * B) / context.getD_RGB(0);
+		double G_c = (-0.7143269842 * R + 1.85030961140 * G - 0.1359760488 * B) / context.getD_RGB(1);
+		double B_c = ( 0.0107755110 * R + 0.00521876240 * G + 0.9840056152 * B) / context.getD_RGB(2);
+
+		xyz[off]     = (float) (( 1.096124 * R_c - 0.278869 * G_c + 0.182745 * B_c) / 100.0);
+		xyz[off + 1] = (float) (( 0.454369 * R_c + 0.473533 * G_c + 0.072098 * B_c) / 100.0);
+		xyz[off + 2] = (float) ((-0.009628 * R_c - 0.005698 * G_c + 1.015326 * B_c) / 100.0);
+	}
+
+	/**
+	 * inverse response compression of a single channel, see
+	 * {@link #reverseHPEConeFundamentals(double[])}
+	 */
+	private static double decompress(double F_L, double c) {
+		double n = c - 0.1;
+		if (n == 0)
+			return 0.0;
+		double k = Math.abs(n);
+		double res = 100.0 / F_L * Math.pow((27.13 * k) / (400.0 - k), 1.0 / 0.42);
+		return n < 0 ? -res : res;
+	}
+
 	/**
 	 * Fill those correlates which are NaN and can be derived from existing correlates
 	 * and model parameters during a reverse transform. These may be J, Q, C, h.
@@ -508,7 +624,7 @@ public class CS_CIECAM02 extends ColorSpace {
 	protected double[] reversePreAdaptationConeResponse(double[] RGBPrime) {
 		double[] RGB = HPEtoCAT02(RGBPrime);
 		for(int i = 0; i < RGB.length; i++) {
-			RGB[i] /= context.getD_RGB()[i];
+			RGB[i] /= context.getD_RGB(i);
 		}
 		return RGB;
 	}
@@ -75,6 +75,56 @@ public class CS_sRGB extends ColorSpace {
 		return result;
 	}
 
+	/**
+	 * Bulk variant of {@link #fromCIEXYZ(float[])} operating on flat arrays of
+	 * triplets. Source and destination may be the same array.
+	 * @param xyz the XYZ triplets
+	 * @param xyzOff the offset of the first XYZ triplet
+	 * @param rgb receives the sRGB triplets
+	 * @param rgbOff the offset of the first sRGB triplet
+	 * @param count the number of triplets to convert
+	 */
+	public static void fromCIEXYZ(float[] xyz, int xyzOff, float[] rgb, int rgbOff, int count) {
+		for (int i = 0; i < count; i++) {
+			int si = xyzOff + 3 * i, di = rgbOff + 3 * i;
+			double X = xyz[si], Y = xyz[si + 1], Z = xyz[si + 2];
+			rgb[di]     = (float) compand( 3.2404542 * X -  1.5371385 * Y - 0.4985314 * Z);
+			rgb[di + 1] = (float) compand(-0.9692660 * X +  1.8760108 * Y + 0.0415560 * Z);
+			rgb[di + 2] = (float) compand( 0.0556434 * X -  0.2040259 * Y + 1.0572252 * Z);
+		}
+	}
+
+	/**
+	 * Converts flat XYZ triplets to linear (not gamma corrected) sRGB. A color
+	 * is inside the sRGB gamut iff its linear components are in 0..1.
+	 * Source and destination may be the same array.
+	 * @param xyz the XYZ triplets
+	 * @param xyzOff the offset of the first XYZ triplet
+	 * @param rgb receives the linear sRGB triplets
+	 * @param rgbOff the offset of the first linear sRGB triplet
+	 * @param count the number of triplets to convert
+	 */
+	public static void linearFromCIEXYZ(float[] xyz, int xyzOff, float[] rgb, int rgbOff, int count) {
+		for (int i = 0; i < count; i++) {
+			int si = xyzOff + 3 * i, di = rgbOff + 3 * i;
+			double X = xyz[si], Y = xyz[si + 1], Z = xyz[si + 2];
+			rgb[di]     = (float) ( 3.2404542 * X -  1.5371385 * Y - 0.4985314 * Z);
+			rgb[di + 1] = (float) (-0.9692660 * X +  1.8760108 * Y + 0.0415560 * Z);
+			rgb[di + 2] = (float) ( 0.0556434 * X -  0.2040259 * Y + 1.0572252 * Z);
+		}
+	}
+
+	/**
+	 * applies the sRGB transfer function to a single linear channel
+	 */
+	static double compand(double c) {
+		if(Math.abs(c) <= 0.0031308) {
+			return c * 12.92;
+		} else {
+			return Math.signum(c) * (1.055 * Math.pow(Math.abs(c), 1.0 / 2.4) - 0.055);
+		}
+	}
+
 	/**
 	 * converts CIEXYZ to sRGB
 	 * @param XYZ CIEXYZ color
@@ -147,6 +197,38 @@ public class CS_sRGB extends ColorSpace {
 		return result;
 	}
 
+	/**
+	 * Bulk variant of {@link #toCIEXYZ(float[])} operating on flat arrays of
+	 * triplets. Source and destination may be the same array.
+	 * @param rgb the sRGB triplets
+	 * @param rgbOff the offset of the first sRGB triplet
+	 * @param xyz receives the XYZ triplets
+	 * @param xyzOff the offset of the first XYZ triplet
+	 * @param count the number of triplets to convert
+	 */
+	public static void toCIEXYZ(float[] rgb, int rgbOff, float[] xyz, int xyzOff, int count) {
+		for (int i = 0; i < count; i++) {
+			int si = rgbOff + 3 * i, di = xyzOff + 3 * i;
+			double r = linearize(rgb[si]);
+			double g = linearize(rgb[si + 1]);
+			double b = linearize(rgb[si + 2]);
+			xyz[di]     = (float) (0.4124564 * r +  0.3575761 * g + 0.1804375 * b);
+			xyz[di + 1] = (float) (0.2126729 * r +  0.7151522 * g + 0.0721750 * b);
+			xyz[di + 2] = (float) (0.0193339 * r +  0.1191920 * g + 0.9503041 * b);
+		}
+	}
+
+	/**
+	 * removes the sRGB transfer function from a single channel
+	 */
+	static double linearize(float c) {
+		if(c <= 0.04045) {
+			return c / 12.92;
+		} else {
+			return Math.pow((c + 0.055) / 1.055, 2.4);
+		}
+	}
+
 	/**
 	 * converts sRGB to CIEXYZ
 	 * @param rgb sRGB color
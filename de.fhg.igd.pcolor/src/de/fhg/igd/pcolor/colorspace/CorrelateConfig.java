@@ -0,0 +1,134 @@
+package de.fhg.igd.pcolor.colorspace;
+
+/**
+ * The supported correlate configurations of {@link CS_CAMLch}, i.e. the
+ * CIECAM02 correlates used for the lightness, chroma and hue
+ * pseudo-correlates. These are immutable replacements for the
+ * configuration arrays such as {@link CS_CAMLch#JCh}.
+ */
+public enum CorrelateConfig {
+
+	/**
+	 * lightness, chroma, hue angle
+	 */
+	JCh(CS_CIECAM02.J, CS_CIECAM02.C, CS_CIECAM02.h),
+	/**
+	 * lightness, chroma, hue quadrature
+	 */
+	JCH(CS_CIECAM02.J, CS_CIECAM02.C, CS_CIECAM02.H),
+	/**
+	 * lightness, colorfulness, hue angle
+	 */
+	JMh(CS_CIECAM02.J, CS_CIECAM02.M, CS_CIECAM02.h),
+	/**
+	 * lightness, colorfulness, hue quadrature
+	 */
+	JMH(CS_CIECAM02.J, CS_CIECAM02.M, CS_CIECAM02.H),
+	/**
+	 * lightness, saturation, hue angle
+	 */
+	Jsh(CS_CIECAM02.J, CS_CIECAM02.s, CS_CIECAM02.h),
+	/**
+	 * lightness, saturation, hue quadrature
+	 */
+	JsH(CS_CIECAM02.J, CS_CIECAM02.s, CS_CIECAM02.H),
+	/**
+	 * brightness, chroma, hue angle
+	 */
+	QCh(CS_CIECAM02.Q, CS_CIECAM02.C, CS_CIECAM02.h),
+	/**
+	 * brightness, chroma, hue quadrature
+	 */
+	QCH(CS_CIECAM02.Q, CS_CIECAM02.C, CS_CIECAM02.H),
+	/**
+	 * brightness, colorfulness, hue angle
+	 */
+	QMh(CS_CIECAM02.Q, CS_CIECAM02.M, CS_CIECAM02.h),
+	/**
+	 * brightness, colorfulness, hue quadrature
+	 */
+	QMH(CS_CIECAM02.Q, CS_CIECAM02.M, CS_CIECAM02.H),
+	/**
+	 * brightness, saturation, hue angle
+	 */
+	Qsh(CS_CIECAM02.Q, CS_CIECAM02.s, CS_CIECAM02.h),
+	/**
+	 * brightness, saturation, hue quadrature
+	 */
+	QsH(CS_CIECAM02.Q, CS_CIECAM02.s, CS_CIECAM02.H);
+
+	private final int lightness, chroma, hue;
+
+	private CorrelateConfig(int lightness, int chroma, int hue) {
+		this.lightness = lightness;
+		this.chroma = chroma;
+		this.hue = hue;
+	}
+
+	/**
+	 * @return the CIECAM02 correlate used for the lightness pseudo-correlate,
+	 *         {@link CS_CIECAM02#J} or {@link CS_CIECAM02#Q}
+	 */
+	public int getLightness() {
+		return lightness;
+	}
+
+	/**
+	 * @return the CIECAM02 correlate used for the chroma pseudo-correlate,
+	 *         {@link CS_CIECAM02#C}, {@link CS_CIECAM02#M} or
+	 *         {@link CS_CIECAM02#s}
+	 */
+	public int getChroma() {
+		return chroma;
+	}
+
+	/**
+	 * @return the CIECAM02 correlate used for the hue pseudo-correlate,
+	 *         {@link CS_CIECAM02#h} or {@link CS_CIECAM02#H}
+	 */
+	public int getHue() {
+		return hue;
+	}
+
+	/**
+	 * @param pseudoCorrelate {@link CS_CAMLch#L}, {@link CS_CAMLch#c} or
+	 *        {@link CS_CAMLch#h}
+	 * @return the CIECAM02 correlate used for it
+	 */
+	public int get(int pseudoCorrelate) {
+		switch (pseudoCorrelate) {
+		case CS_CAMLch.L:
+			return lightness;
+		case CS_CAMLch.c:
+			return chroma;
+		case CS_CAMLch.h:
+			return hue;
+		default:
+			throw new IllegalArgumentException("no such pseudo-correlate: " + pseudoCorrelate);
+		}
+	}
+
+	/**
+	 * @return a new array of the correlates in L, c, h order, as used by
+	 *         {@link CS_CAMLch#getCorrelateConfiguration()}
+	 */
+	public int[] toArray() {
+		return new int[] { lightness, chroma, hue };
+	}
+
+	/**
+	 * Finds the configuration for an array of correlates.
+	 * @param correlates the correlates in L, c, h order
+	 * @return the configuration
+	 * @throws IllegalArgumentException if the configuration is not supported
+	 */
+	public static CorrelateConfig of(int... correlates) {
+		if (correlates.length == 3) {
+			for (CorrelateConfig config : values()) {
+				if (config.lightness == correlates[0] && config.chroma == correlates[1] && config.hue == correlates[2])
+					return config;
+			}
+		}
+		throw new IllegalArgumentException("unsupported correlate configuration");
+	}
+}
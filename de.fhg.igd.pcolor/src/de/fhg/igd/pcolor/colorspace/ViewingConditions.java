@@ -24,6 +24,8 @@ import java.util.Arrays;
 
 import de.fhg.igd.pcolor.CIEXYZ;
 import de.fhg.igd.pcolor.Illuminant;
+import de.fhg.igd.pcolor.util.Instrumentation;
+import de.fhg.igd.pcolor.util.InstrumentationListener;
 import de.fhg.igd.pcolor.util.MathTools;
 
 /**
@@ -124,12 +126,18 @@ public class ViewingConditions {
 	 * @return a ViewingConditions instance
 	 */
 	public static ViewingConditions createAdapted(CIEXYZ XYZ_w, double L_A, double Y_b, Surrounding sur) {
+		InstrumentationListener listener = Instrumentation.getListener();
+		Object token = listener != null ? listener.begin(InstrumentationListener.Kind.VIEWING_CONDITIONS) : null;
+		long start = listener != null ? System.nanoTime() : 0;
 		double[] xyz_w = MathTools.floatToDoubleArray(XYZ_w.toCIEXYZ100());
 		// calculate RGB whitepoint
 		double[] RGB_w = CS_CIECAM02.XYZtoCAT02(xyz_w);
 		double D = calcD(L_A, sur);
 		double[] RGB_c = calcAdaptedRGBc(XYZ_w, RGB_w, D);
-		return new ViewingConditions(xyz_w, L_A, Y_b, sur, RGB_w, RGB_c);
+		ViewingConditions vc = new ViewingConditions(xyz_w, L_A, Y_b, sur, RGB_w, RGB_c);
+		if (listener != null)
+			listener.viewingConditionsCreated(token, vc, false, System.nanoTime() - start);
+		return vc;
 	}
 
 	/**
@@ -143,10 +151,16 @@ public class ViewingConditions {
 	 * @return a fully adapted viewing conditions instance
 	 */
 	public static ViewingConditions createFullyAdapted(CIEXYZ XYZ_w, float L_A, float Y_b, Surrounding sur) {
+		InstrumentationListener listener = Instrumentation.getListener();
+		Object token = listener != null ? listener.begin(InstrumentationListener.Kind.VIEWING_CONDITIONS) : null;
+		long start = listener != null ? System.nanoTime() : 0;
 		double[] xyz_w = MathTools.floatToDoubleArray(XYZ_w.toCIEXYZ100());
 		double[] RGB_w = CS_CIECAM02.XYZtoCAT02(xyz_w);
 		double[] RGB_c = calcAdaptedRGBc(XYZ_w, RGB_w, 1.0);
-		return new ViewingConditions(xyz_w, L_A, Y_b, sur, RGB_w, RGB_c);
+		ViewingConditions vc = new ViewingConditions(xyz_w, L_A, Y_b, sur, RGB_w, RGB_c);
+		if (listener != null)
+			listener.viewingConditionsCreated(token, vc, true, System.nanoTime() - start);
+		return vc;
 	}
 
 	private static double[] calcAdaptedRGBc(CIEXYZ XYZ_w, double[] RGB_w, double D) {
@@ -211,10 +225,18 @@ public class ViewingConditions {
 	}
 
 	/**
-	 * @return a useful value
+	 * @return a copy of the adopted white point, XYZ in 0..100
 	 */
 	public double[] getXYZ_w() {
-		return XYZ_w;
+		return XYZ_w.clone();
+	}
+
+	/**
+	 * @param component the component, X (0), Y (1) or Z (2)
+	 * @return a component of the adopted white point in 0..100
+	 */
+	public double getXYZ_w(int component) {
+		return XYZ_w[component];
 	}
 
 	/**
@@ -267,9 +289,17 @@ public class ViewingConditions {
 	}
 
 	/**
-	 * @return a useful value
+	 * @return a copy of the degree of adaptation factors per cone response
 	 */
 	public double[] getD_RGB() {
-		return D_RGB;
+		return D_RGB.clone();
+	}
+
+	/**
+	 * @param channel the sharpened cone response, R (0), G (1) or B (2)
+	 * @return the degree of adaptation factor of a cone response
+	 */
+	public double getD_RGB(int channel) {
+		return D_RGB[channel];
 	}
 }
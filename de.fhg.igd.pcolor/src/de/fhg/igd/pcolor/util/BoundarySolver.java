@@ -0,0 +1,157 @@
+package de.fhg.igd.pcolor.util;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CS_sRGB;
+
+/**
+ * Finds the sRGB gamut boundary along the chroma (or colorfulness,
+ * saturation) channel of a {@link CS_CAMLch} space by root finding.
+ * <p>
+ * Where {@link ColorTools#determineBoundaryColor(de.fhg.igd.pcolor.PColor, int, float, float, float, Predicate)}
+ * only knows whether a color is inside, this solver uses the signed amount a
+ * color is out of gamut in linear RGB, see {@link #outOfGamut(float, float, float)}.
+ * That amount is continuous in chroma and crosses zero at the boundary, so
+ * Brent's method (inverse quadratic interpolation and secant steps,
+ * safeguarded by bisection) converges in a handful of conversions instead of
+ * one per bit of precision, and no distances need to be measured.
+ * <p>
+ * Solvers hold scratch arrays and are not thread-safe; use one per thread.
+ */
+public class BoundarySolver {
+
+	private final CS_CAMLch space;
+	private final float[] comp = new float[3];
+	private final float[] rgb = new float[3];
+	private int evaluations;
+
+	/**
+	 * @param space the space to solve in; must not be a CAMLab space
+	 */
+	public BoundarySolver(CS_CAMLch space) {
+		if (space instanceof CS_CAMLab)
+			throw new IllegalArgumentException("boundary solving needs a polar (CAMLch) space");
+		this.space = space;
+	}
+
+	/**
+	 * @return the space this solver works in
+	 */
+	public CS_CAMLch getColorSpace() {
+		return space;
+	}
+
+	/**
+	 * @return the number of conversions done so far, for profiling
+	 */
+	public int getEvaluations() {
+		return evaluations;
+	}
+
+	/**
+	 * Computes how much a color exceeds the sRGB gamut in linear RGB: the
+	 * largest of r - 1, g - 1, b - 1, -r, -g, -b. The color is inside the
+	 * gamut (as decided by {@link ColorPredicates#is_sRGB}) iff the result
+	 * is not positive. Far out of gamut, the inverse CIECAM02 transform may
+	 * fail to produce a color; such correlates are reported as
+	 * {@link Float#MAX_VALUE} out of gamut.
+	 * @param L the lightness (or brightness)
+	 * @param c the chroma (or colorfulness, saturation)
+	 * @param h the hue
+	 * @return the signed out-of-gamut amount
+	 */
+	public float outOfGamut(float L, float c, float h) {
+		evaluations++;
+		comp[0] = L;
+		comp[1] = c;
+		comp[2] = h;
+		space.toCIEXYZ(comp, 0, rgb, 0, 1);
+		CS_sRGB.linearFromCIEXYZ(rgb, 0, rgb, 0, 1);
+		float max = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < 3; i++)
+			max = Math.max(max, Math.max(rgb[i] - 1, -rgb[i]));
+		return Float.isNaN(max) ? Float.MAX_VALUE : max;
+	}
+
+	/**
+	 * Finds the maximum chroma inside sRGB for a given lightness and hue.
+	 * Assuming lower is inside and upper is not, the result is inside and
+	 * less than e below a boundary between them.
+	 * @param L the lightness (or brightness)
+	 * @param h the hue
+	 * @param lower the lower bound on chroma
+	 * @param upper the upper bound on chroma
+	 * @param e the precision on the chroma channel
+	 * @return the boundary chroma; upper if it is inside, lower if nothing
+	 *         between is
+	 */
+	public float maxChroma(float L, float h, float lower, float upper, float e) {
+		double a = lower, b = upper;
+		double fa = outOfGamut(L, lower, h);
+		double fb = outOfGamut(L, upper, h);
+		if (fb <= 0)
+			return upper;
+		if (fa > 0)
+			return lower;
+		// Brent's method, keeping the root bracketed by b and c
+		double c = a, fc = fa, d = b - a, prev = d;
+		while (true) {
+			if ((fb > 0) == (fc > 0)) {
+				c = a;
+				fc = fa;
+				d = prev = b - a;
+			}
+			if (Math.abs(fc) < Math.abs(fb)) {
+				a = b; b = c; c = a;
+				fa = fb; fb = fc; fc = fa;
+			}
+			double tol = e / 4;
+			double m = (c - b) / 2;
+			if (Math.abs(m) <= tol || fb == 0)
+				return (float) (fb <= 0 ? b : c);
+			if (Math.abs(prev) >= tol && Math.abs(fa) > Math.abs(fb)) {
+				double p, q, s = fb / fa;
+				if (a == c) {
+					// secant
+					p = 2 * m * s;
+					q = 1 - s;
+				} else {
+					// inverse quadratic interpolation
+					double r = fb / fc, t = fa / fc;
+					p = s * (2 * m * t * (t - r) - (b - a) * (r - 1));
+					q = (t - 1) * (r - 1) * (s - 1);
+				}
+				if (p > 0)
+					q = -q;
+				else
+					p = -p;
+				if (2 * p < Math.min(3 * m * q - Math.abs(tol * q), Math.abs(prev * q))) {
+					prev = d;
+					d = p / q;
+				} else {
+					d = prev = m;
+				}
+			} else {
+				d = prev = m;
+			}
+			a = b;
+			fa = fb;
+			b += Math.abs(d) > tol ? d : Math.copySign(tol, m);
+			fb = outOfGamut(L, (float) b, h);
+		}
+	}
+
+	/**
+	 * Finds the boundary color for a given lightness and hue, see
+	 * {@link #maxChroma(float, float, float, float, float)}.
+	 * @param L the lightness (or brightness)
+	 * @param h the hue
+	 * @param upper the upper bound on chroma
+	 * @param e the precision on the chroma channel
+	 * @return the color of maximum chroma inside sRGB
+	 */
+	public CAMLch boundaryColor(float L, float h, float upper, float e) {
+		return new CAMLch(new float[] { L, maxChroma(L, h, 0, upper, e), h }, 1f, space);
+	}
+}
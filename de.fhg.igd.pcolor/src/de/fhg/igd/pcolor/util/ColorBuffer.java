@@ -0,0 +1,344 @@
+package de.fhg.igd.pcolor.util;
+
+import java.awt.color.ColorSpace;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.CS_sRGB;
+
+/**
+ * A bulk container of opaque colors in one color space, stored as a flat
+ * array of component triplets.
+ * <p>
+ * Buffers can be streamed per color, see {@link #stream()}, or per chunk of
+ * up to {@value #CHUNK} consecutive colors, see {@link #chunks()}. Chunks
+ * are small enough for their components and a scratch buffer of the same
+ * size to stay in the CPU caches, and the spliterators only split on chunk
+ * boundaries, so parallel streams hand whole chunks to worker threads.
+ * Bulk kernels such as {@link CS_sRGB#toCIEXYZ(float[], int, float[], int, int)}
+ * then run once per chunk, e.g.
+ * <pre>
+ * buffer.chunks().parallel().forEach(chunk -&gt;
+ *     space.fromRGB(chunk.data(), chunk.offset(), chunk.scratch(), 0, chunk.count()));
+ * </pre>
+ * The bulk operations of {@link ColorTools}, e.g.
+ * {@link ColorTools#convert(ColorBuffer, ColorSpace)}, work this way.
+ * <p>
+ * Buffers are not synchronized; concurrent chunks may write to disjoint
+ * parts of their buffer.
+ */
+public final class ColorBuffer implements Iterable<PColor> {
+
+	/**
+	 * the number of colors per chunk
+	 */
+	public static final int CHUNK = 1024;
+
+	private final ColorSpace space;
+	private final float[] data;
+	private final int size;
+
+	/**
+	 * Creates a buffer of black (zero) colors.
+	 * @param space the color space, with three components
+	 * @param size the number of colors
+	 */
+	public ColorBuffer(ColorSpace space, int size) {
+		this(space, new float[3 * size]);
+	}
+
+	private ColorBuffer(ColorSpace space, float[] data) {
+		if (space.getNumComponents() != 3)
+			throw new IllegalArgumentException("only spaces with three components are supported");
+		if (data.length % 3 != 0)
+			throw new IllegalArgumentException("data does not hold triplets");
+		this.space = space;
+		this.data = data;
+		this.size = data.length / 3;
+	}
+
+	/**
+	 * Wraps an array of triplets without copying it.
+	 * @param space the color space of the triplets
+	 * @param triplets the flat component triplets
+	 * @return the buffer
+	 */
+	public static ColorBuffer wrap(ColorSpace space, float[] triplets) {
+		return new ColorBuffer(space, triplets);
+	}
+
+	/**
+	 * Collects colors into a buffer, converting them to a color space in
+	 * parallel. Alpha is dropped.
+	 * @param space the color space of the buffer
+	 * @param colors the colors, in any color space
+	 * @return the buffer
+	 */
+	public static ColorBuffer of(ColorSpace space, List<? extends PColor> colors) {
+		ColorBuffer res = new ColorBuffer(space, colors.size());
+		res.chunks().parallel().forEach(chunk -> {
+			for (int i = 0; i < chunk.count(); i++) {
+				PColor color = PColor.convert(colors.get(chunk.start() + i), space);
+				System.arraycopy(color.getRawComponents(), 0, res.data, chunk.offset() + 3 * i, 3);
+			}
+		});
+		return res;
+	}
+
+	/**
+	 * Unpacks ARGB values into an sRGB buffer. Alpha is dropped.
+	 * @param argb the packed colors
+	 * @return the buffer
+	 */
+	public static ColorBuffer fromARGB(int[] argb) {
+		float[] rgb = new float[3 * argb.length];
+		for (int i = 0; i < argb.length; i++) {
+			rgb[3 * i] = (argb[i] >>> 16 & 0xff) / 255f;
+			rgb[3 * i + 1] = (argb[i] >>> 8 & 0xff) / 255f;
+			rgb[3 * i + 2] = (argb[i] & 0xff) / 255f;
+		}
+		return new ColorBuffer(CS_sRGB.instance, rgb);
+	}
+
+	/**
+	 * @return the number of colors
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the color space of the colors
+	 */
+	public ColorSpace getColorSpace() {
+		return space;
+	}
+
+	/**
+	 * @return the backing array of component triplets; changes write through
+	 */
+	public float[] array() {
+		return data;
+	}
+
+	/**
+	 * @param index the index of a color
+	 * @return the color
+	 */
+	public PColor get(int index) {
+		return PColor.create(space, new float[] { data[3 * index], data[3 * index + 1], data[3 * index + 2] });
+	}
+
+	/**
+	 * @param index the index of a color
+	 * @param out receives the components
+	 * @param off the offset to write the components at
+	 */
+	public void get(int index, float[] out, int off) {
+		System.arraycopy(data, 3 * index, out, off, 3);
+	}
+
+	/**
+	 * @param index the index of a color
+	 * @param color the new color, in any color space
+	 */
+	public void set(int index, PColor color) {
+		System.arraycopy(PColor.convert(color, space).getRawComponents(), 0, data, 3 * index, 3);
+	}
+
+	@Override
+	public Iterator<PColor> iterator() {
+		return Spliterators.iterator(spliterator());
+	}
+
+	/**
+	 * @return a spliterator over the colors, splitting on chunk boundaries
+	 */
+	@Override
+	public Spliterator<PColor> spliterator() {
+		return new ColorSpliterator(0, size);
+	}
+
+	/**
+	 * @return a sequential stream of the colors
+	 */
+	public Stream<PColor> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * @return a spliterator over the chunks
+	 */
+	public Spliterator<Chunk> chunkSpliterator() {
+		return new ChunkSpliterator(0, size);
+	}
+
+	/**
+	 * @return a sequential stream of the chunks; use
+	 *         {@link Stream#parallel()} to process them concurrently
+	 */
+	public Stream<Chunk> chunks() {
+		return StreamSupport.stream(chunkSpliterator(), false);
+	}
+
+	/**
+	 * A run of up to {@value ColorBuffer#CHUNK} consecutive colors of a
+	 * buffer with a scratch array of the same size.
+	 */
+	public final class Chunk {
+
+		private final int start, count;
+		private float[] scratch;
+
+		Chunk(int start, int count) {
+			this.start = start;
+			this.count = count;
+		}
+
+		/**
+		 * @return the buffer
+		 */
+		public ColorBuffer buffer() {
+			return ColorBuffer.this;
+		}
+
+		/**
+		 * @return the index of the first color
+		 */
+		public int start() {
+			return start;
+		}
+
+		/**
+		 * @return the number of colors
+		 */
+		public int count() {
+			return count;
+		}
+
+		/**
+		 * @return the backing array of the buffer
+		 */
+		public float[] data() {
+			return data;
+		}
+
+		/**
+		 * @return the offset of the first triplet in {@link #data()}
+		 */
+		public int offset() {
+			return 3 * start;
+		}
+
+		/**
+		 * @return an array of 3 * {@link #count()} floats owned by this
+		 *         chunk, allocated on first use
+		 */
+		public float[] scratch() {
+			if (scratch == null)
+				scratch = new float[3 * count];
+			return scratch;
+		}
+	}
+
+	/**
+	 * the position to split a range of colors at, on a chunk boundary, or
+	 * -1 if the range is a single chunk
+	 */
+	private static int split(int from, int to) {
+		if (to - from <= CHUNK)
+			return -1;
+		int mid = (from + (to - from) / 2) / CHUNK * CHUNK;
+		return mid <= from ? from + CHUNK : mid;
+	}
+
+	private final class ChunkSpliterator implements Spliterator<Chunk> {
+		private int from;
+		private final int to;
+
+		ChunkSpliterator(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Chunk> action) {
+			if (from >= to)
+				return false;
+			int end = Math.min(from + CHUNK, to);
+			action.accept(new Chunk(from, end - from));
+			from = end;
+			return true;
+		}
+
+		@Override
+		public Spliterator<Chunk> trySplit() {
+			int mid = split(from, to);
+			if (mid < 0)
+				return null;
+			Spliterator<Chunk> prefix = new ChunkSpliterator(from, mid);
+			from = mid;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return (to - from + CHUNK - 1) / CHUNK;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SIZED | SUBSIZED | NONNULL;
+		}
+	}
+
+	private final class ColorSpliterator implements Spliterator<PColor> {
+		private int from;
+		private final int to;
+
+		ColorSpliterator(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super PColor> action) {
+			if (from >= to)
+				return false;
+			action.accept(get(from++));
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super PColor> action) {
+			for (; from < to; from++)
+				action.accept(get(from));
+		}
+
+		@Override
+		public Spliterator<PColor> trySplit() {
+			int mid = split(from, to);
+			if (mid < 0)
+				return null;
+			Spliterator<PColor> prefix = new ColorSpliterator(from, mid);
+			from = mid;
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return to - from;
+		}
+
+		@Override
+		public int characteristics() {
+			return ORDERED | SIZED | SUBSIZED | NONNULL;
+		}
+	}
+}
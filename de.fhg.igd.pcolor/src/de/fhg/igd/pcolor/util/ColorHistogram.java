@@ -0,0 +1,342 @@
+package de.fhg.igd.pcolor.util;
+
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+
+/**
+ * A three-dimensional histogram of colors over CIECAM02 lightness J, chroma
+ * C and hue angle h, with statistics derived from it: means, the
+ * chroma-weighted circular mean hue and lightness and chroma percentiles.
+ * <p>
+ * Lightness bins span 0..100 and hue bins 0..360 degrees; chroma bins span
+ * 0 to a given maximum, larger chroma is counted in the last bin. Means are
+ * taken over the unbinned values, including lightness outside of 0..100.
+ * Percentiles are interpolated in finer marginal histograms of
+ * {@value #FINE} bins per axis.
+ * <p>
+ * Colors are added in one parallel pass per image or buffer: each worker
+ * fills a private histogram and the histograms are merged at the end.
+ * Images are read in blocks of {@value #BLOCK_ROWS} rows whose distinct
+ * pixel values are converted in bulk, once each.
+ * <p>
+ * Histograms are not thread-safe; independent histograms of the same
+ * binning can be combined with {@link #merge(ColorHistogram)}.
+ */
+public class ColorHistogram {
+
+	/**
+	 * the number of bins of the marginal histograms used for percentiles
+	 */
+	public static final int FINE = 1000;
+
+	/**
+	 * the number of image rows per parallel block
+	 */
+	private static final int BLOCK_ROWS = 64;
+
+	private final CS_CAMLch space;
+	private final int binsJ, binsC, binsH;
+	private final float maxChroma;
+	private final long[] counts;
+	private final long[] fineJ, fineC;
+	private long total;
+	private double sumJ, sumC, sumCosH, sumSinH;
+
+	/**
+	 * Creates an empty histogram.
+	 * @param vc the viewing conditions to evaluate colors under
+	 * @param binsJ the number of lightness bins
+	 * @param binsC the number of chroma bins
+	 * @param binsH the number of hue bins
+	 * @param maxChroma the upper end of the chroma bins, e.g. 100
+	 */
+	public ColorHistogram(ViewingConditions vc, int binsJ, int binsC, int binsH, float maxChroma) {
+		this(new CS_CAMLch(vc, CorrelateConfig.JCh), binsJ, binsC, binsH, maxChroma);
+	}
+
+	private ColorHistogram(CS_CAMLch space, int binsJ, int binsC, int binsH, float maxChroma) {
+		if (binsJ < 1 || binsC < 1 || binsH < 1)
+			throw new IllegalArgumentException("bin counts must be positive");
+		if (!(maxChroma > 0))
+			throw new IllegalArgumentException("maxChroma must be positive");
+		this.space = space;
+		this.binsJ = binsJ;
+		this.binsC = binsC;
+		this.binsH = binsH;
+		this.maxChroma = maxChroma;
+		this.counts = new long[binsJ * binsC * binsH];
+		this.fineJ = new long[FINE];
+		this.fineC = new long[FINE];
+	}
+
+	/**
+	 * @return an empty histogram of the same binning
+	 */
+	private ColorHistogram emptyCopy() {
+		return new ColorHistogram(space, binsJ, binsC, binsH, maxChroma);
+	}
+
+	/**
+	 * Adds the pixels of an image. Alpha is ignored.
+	 * @param image the image
+	 * @return this histogram
+	 */
+	public ColorHistogram add(BufferedImage image) {
+		int w = image.getWidth(), h = image.getHeight();
+		Instrumentation.Operation op = Instrumentation.begin("colorHistogram");
+		try {
+			merge(IntStream.range(0, (h + BLOCK_ROWS - 1) / BLOCK_ROWS).parallel().collect(this::emptyCopy, (part, b) -> {
+				int y = b * BLOCK_ROWS, rows = Math.min(BLOCK_ROWS, h - y);
+				int[] pixels = image.getRGB(0, y, w, rows, null, 0, w);
+				DistinctPixels distinct = new DistinctPixels(pixels.length);
+				int[] ids = new int[pixels.length];
+				for (int i = 0; i < pixels.length; i++)
+					ids[i] = distinct.id(pixels[i]);
+				float[] JCh = distinct.coords;
+				space.fromRGB(JCh, 0, JCh, 0, distinct.size);
+				for (int id : ids)
+					part.add(JCh, 3 * id);
+			}, ColorHistogram::merge));
+		} finally {
+			Instrumentation.end(op);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the colors of a buffer.
+	 * @param colors the colors
+	 * @return this histogram
+	 */
+	public ColorHistogram add(ColorBuffer colors) {
+		Instrumentation.Operation op = Instrumentation.begin("colorHistogram");
+		try {
+			merge(colors.chunks().parallel().collect(this::emptyCopy, (part, chunk) -> {
+				float[] JCh = chunk.scratch();
+				ColorTools.convert(chunk, space, JCh, 0);
+				for (int i = 0; i < chunk.count(); i++)
+					part.add(JCh, 3 * i);
+			}, ColorHistogram::merge));
+		} finally {
+			Instrumentation.end(op);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds a single color.
+	 * @param color the color, in any color space
+	 * @return this histogram
+	 */
+	public ColorHistogram add(PColor color) {
+		add(PColor.convert(color, space).getComponents(), 0);
+		return this;
+	}
+
+	/**
+	 * Adds the counts of another histogram of the same binning.
+	 * @param other the other histogram
+	 * @return this histogram
+	 */
+	public ColorHistogram merge(ColorHistogram other) {
+		if (other.binsJ != binsJ || other.binsC != binsC || other.binsH != binsH || other.maxChroma != maxChroma
+				|| !other.space.equals(space))
+			throw new IllegalArgumentException("histograms differ in binning");
+		for (int i = 0; i < counts.length; i++)
+			counts[i] += other.counts[i];
+		for (int i = 0; i < FINE; i++) {
+			fineJ[i] += other.fineJ[i];
+			fineC[i] += other.fineC[i];
+		}
+		total += other.total;
+		sumJ += other.sumJ;
+		sumC += other.sumC;
+		sumCosH += other.sumCosH;
+		sumSinH += other.sumSinH;
+		return this;
+	}
+
+	/**
+	 * counts a JCh triplet
+	 */
+	private void add(float[] JCh, int off) {
+		float rawJ = JCh[off];
+		float C = Math.max(0, JCh[off + 1]);
+		float h = JCh[off + 2];
+		if (!MathTools.isReal(rawJ) || !MathTools.isReal(C))
+			return;
+		float J = Math.min(100, Math.max(0, rawJ));
+		if (!MathTools.isReal(h))
+			h = 0;
+		h %= 360;
+		if (h < 0)
+			h += 360;
+		int j = bin(J / 100, binsJ);
+		int c = bin(C / maxChroma, binsC);
+		int k = bin(h / 360, binsH);
+		counts[(j * binsC + c) * binsH + k]++;
+		fineJ[bin(J / 100, FINE)]++;
+		fineC[bin(C / maxChroma, FINE)]++;
+		total++;
+		sumJ += rawJ;
+		sumC += C;
+		double rad = Math.toRadians(h);
+		sumCosH += C * Math.cos(rad);
+		sumSinH += C * Math.sin(rad);
+	}
+
+	private static int bin(float t, int bins) {
+		return Math.min(bins - 1, (int) (t * bins));
+	}
+
+	/**
+	 * @return the number of colors counted
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return the number of lightness bins
+	 */
+	public int getLightnessBins() {
+		return binsJ;
+	}
+
+	/**
+	 * @return the number of chroma bins
+	 */
+	public int getChromaBins() {
+		return binsC;
+	}
+
+	/**
+	 * @return the number of hue bins
+	 */
+	public int getHueBins() {
+		return binsH;
+	}
+
+	/**
+	 * @param j the lightness bin
+	 * @param c the chroma bin
+	 * @param h the hue bin
+	 * @return the number of colors in the bin
+	 */
+	public long getCount(int j, int c, int h) {
+		return counts[(j * binsC + c) * binsH + h];
+	}
+
+	/**
+	 * @return a copy of the counts, indexed by (j * chroma bins + c) * hue
+	 *         bins + h
+	 */
+	public long[] getCounts() {
+		return counts.clone();
+	}
+
+	/**
+	 * @return the number of colors per lightness bin
+	 */
+	public long[] getLightnessMarginal() {
+		long[] res = new long[binsJ];
+		for (int i = 0; i < counts.length; i++)
+			res[i / (binsC * binsH)] += counts[i];
+		return res;
+	}
+
+	/**
+	 * @return the number of colors per chroma bin
+	 */
+	public long[] getChromaMarginal() {
+		long[] res = new long[binsC];
+		for (int i = 0; i < counts.length; i++)
+			res[i / binsH % binsC] += counts[i];
+		return res;
+	}
+
+	/**
+	 * @return the number of colors per hue bin
+	 */
+	public long[] getHueMarginal() {
+		long[] res = new long[binsH];
+		for (int i = 0; i < counts.length; i++)
+			res[i % binsH] += counts[i];
+		return res;
+	}
+
+	/**
+	 * @return the mean lightness J, or NaN if empty
+	 */
+	public double getMeanLightness() {
+		return sumJ / total;
+	}
+
+	/**
+	 * @return the mean chroma C, or NaN if empty
+	 */
+	public double getMeanChroma() {
+		return sumC / total;
+	}
+
+	/**
+	 * Returns the circular mean of the hue angles, weighted by chroma so
+	 * that the unstable hues of greys hardly count.
+	 * @return the mean hue in degrees, or NaN if there is no chroma
+	 */
+	public double getMeanHue() {
+		if (sumC == 0)
+			return Double.NaN;
+		double h = Math.toDegrees(Math.atan2(sumSinH, sumCosH));
+		return h < 0 ? h + 360 : h;
+	}
+
+	/**
+	 * @return the length of the chroma-weighted mean hue vector relative to
+	 *         the total chroma, from 0 for hues spread evenly to 1 for a
+	 *         single hue
+	 */
+	public double getHueConcentration() {
+		return sumC == 0 ? 0 : Math.hypot(sumSinH, sumCosH) / sumC;
+	}
+
+	/**
+	 * @param p the percentile in 0..1
+	 * @return the lightness J that p of all colors do not exceed
+	 */
+	public double getLightnessPercentile(double p) {
+		return percentile(fineJ, p) * 100;
+	}
+
+	/**
+	 * @param p the percentile in 0..1
+	 * @return the chroma C that p of all colors do not exceed, at most the
+	 *         maximum chroma of the bins
+	 */
+	public double getChromaPercentile(double p) {
+		return percentile(fineC, p) * maxChroma;
+	}
+
+	/**
+	 * interpolates a percentile in a fine histogram, in 0..1
+	 */
+	private double percentile(long[] fine, double p) {
+		if (p < 0 || p > 1)
+			throw new IllegalArgumentException("percentile must be in 0..1");
+		if (total == 0)
+			return Double.NaN;
+		double target = p * total;
+		long cum = 0;
+		for (int i = 0; i < FINE; i++) {
+			if (fine[i] > 0 && cum + fine[i] >= target)
+				return (i + Math.max(0, target - cum) / fine[i]) / FINE;
+			cum += fine[i];
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,497 @@
+package de.fhg.igd.pcolor.util;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+
+/**
+ * A nearest-neighbour index over a fixed set of colors in CAM02-UCS (J'a'b')
+ * coordinates, as produced by {@link ColorTools#toUCS_Jab(CAMLch)}. Since
+ * CAM02-UCS is euclidean, distances reported by this index equal
+ * {@link ColorTools#distance(PColor, PColor, ViewingConditions)}.
+ * <p>
+ * The index is a static k-d tree, built once in O(n log n). Lookups take
+ * logarithmic time on average instead of a linear scan over all reference
+ * colors. Instances are immutable and may be queried from many threads; the
+ * bulk query methods make use of that by querying in parallel.
+ * <p>
+ * Results are reported as indices into the array of colors (or coordinates)
+ * the index was built from.
+ */
+public class ColorIndex {
+
+	/**
+	 * ranges at or below this size are scanned linearly
+	 */
+	private static final int LEAF_SIZE = 8;
+
+	/**
+	 * the space used to convert colors given as {@link PColor}, may be null
+	 */
+	private final CS_CAMLch compSpace;
+
+	/**
+	 * the coordinates, in tree order
+	 */
+	private final float[] pts;
+
+	/**
+	 * maps tree order to the original index
+	 */
+	private final int[] perm;
+
+	/**
+	 * maps the original index to tree order
+	 */
+	private final int[] pos;
+
+	/**
+	 * the split dimension of each inner node, indexed by its median
+	 */
+	private final byte[] splitDim;
+
+	/**
+	 * Build an index over the given colors, which are converted to CAM02-UCS
+	 * under the given viewing conditions.
+	 * @param colors the reference colors
+	 * @param vc the viewing conditions
+	 */
+	public ColorIndex(PColor[] colors, ViewingConditions vc) {
+		this(new CS_CAMLch(vc, CorrelateConfig.JMh), ColorTools.toUCS_Jab(colors, vc));
+	}
+
+	/**
+	 * Build an index over CAM02-UCS coordinates. Queries need to be given in
+	 * CAM02-UCS coordinates as well.
+	 * @param ucs J'a'b' triplets, as returned by
+	 *            {@link ColorTools#toUCS_Jab(PColor[], ViewingConditions)}
+	 */
+	public ColorIndex(float[] ucs) {
+		this(null, ucs.clone());
+	}
+
+	private ColorIndex(CS_CAMLch compSpace, float[] ucs) {
+		if (ucs.length % 3 != 0)
+			throw new IllegalArgumentException("coordinates must be given as triplets");
+		this.compSpace = compSpace;
+		int n = ucs.length / 3;
+		this.pts = ucs;
+		this.perm = new int[n];
+		for (int i = 0; i < n; i++)
+			perm[i] = i;
+		this.splitDim = new byte[n];
+		build(0, n);
+		this.pos = new int[n];
+		for (int p = 0; p < n; p++)
+			pos[perm[p]] = p;
+	}
+
+	/**
+	 * @return the number of indexed colors
+	 */
+	public int size() {
+		return perm.length;
+	}
+
+	/**
+	 * @param i the index of an indexed color
+	 * @return a copy of its CAM02-UCS coordinates
+	 */
+	public float[] getCoordinates(int i) {
+		int p = position(i);
+		return new float[] { pts[3 * p], pts[3 * p + 1], pts[3 * p + 2] };
+	}
+
+	/**
+	 * Converts a color to the CAM02-UCS coordinates used by this index.
+	 * @param color the color
+	 * @return J'a'b' coordinates
+	 * @throws IllegalStateException if the index was built from coordinates
+	 */
+	public float[] toCoordinates(PColor color) {
+		if (compSpace == null)
+			throw new IllegalStateException("index was built from coordinates, query by coordinates");
+		return ColorTools.toUCS_Jab((CAMLch) PColor.convert(color, compSpace));
+	}
+
+	/**
+	 * @param color the query color
+	 * @return the index of the nearest indexed color, or -1 if empty
+	 */
+	public int nearest(PColor color) {
+		return nearest(toCoordinates(color));
+	}
+
+	/**
+	 * @param ucs the query in CAM02-UCS coordinates
+	 * @return the index of the nearest indexed color, or -1 if empty
+	 */
+	public int nearest(float[] ucs) {
+		return nearest(ucs[0], ucs[1], ucs[2], -1);
+	}
+
+	/**
+	 * Finds the nearest other color of an indexed color.
+	 * @param i the index of an indexed color
+	 * @return the index of its nearest neighbour, or -1 if there is none
+	 */
+	public int nearestExcludingSelf(int i) {
+		int p = position(i);
+		return nearest(pts[3 * p], pts[3 * p + 1], pts[3 * p + 2], i);
+	}
+
+	/**
+	 * @param color the query color
+	 * @param k the number of neighbours
+	 * @return the indices of the k nearest colors (fewer if the index is
+	 *         smaller), nearest first
+	 */
+	public int[] kNearest(PColor color, int k) {
+		return kNearest(toCoordinates(color), k);
+	}
+
+	/**
+	 * @param ucs the query in CAM02-UCS coordinates
+	 * @param k the number of neighbours
+	 * @return the indices of the k nearest colors (fewer if the index is
+	 *         smaller), nearest first
+	 */
+	public int[] kNearest(float[] ucs, int k) {
+		if (k < 0)
+			throw new IllegalArgumentException("k must not be negative");
+		Neighbours nb = new Neighbours(Math.min(k, size()));
+		if (nb.capacity > 0)
+			searchK(0, size(), ucs[0], ucs[1], ucs[2], nb);
+		return nb.sorted();
+	}
+
+	/**
+	 * @param color the query color
+	 * @param radius the maximum distance (delta E)
+	 * @return the indices of all colors within radius, in no particular order
+	 */
+	public int[] withinRadius(PColor color, float radius) {
+		return withinRadius(toCoordinates(color), radius);
+	}
+
+	/**
+	 * @param ucs the query in CAM02-UCS coordinates
+	 * @param radius the maximum distance (delta E)
+	 * @return the indices of all colors within radius, in no particular order
+	 */
+	public int[] withinRadius(float[] ucs, float radius) {
+		IntList res = new IntList();
+		searchRadius(0, size(), ucs[0], ucs[1], ucs[2], radius * radius, res);
+		return res.toArray();
+	}
+
+	/**
+	 * @param i the index of an indexed color
+	 * @param ucs a point in CAM02-UCS coordinates
+	 * @return the distance (delta E) between the two
+	 */
+	public float distance(int i, float[] ucs) {
+		int p = position(i);
+		return (float) Math.sqrt(dist2(p, ucs[0], ucs[1], ucs[2]));
+	}
+
+	/**
+	 * Looks up the nearest indexed color for many query colors in parallel.
+	 * @param queries the query colors
+	 * @return for each query, the index of the nearest indexed color
+	 */
+	public int[] nearest(PColor[] queries) {
+		return IntStream.range(0, queries.length).parallel()
+				.map(q -> nearest(queries[q]))
+				.toArray();
+	}
+
+	/**
+	 * Looks up the nearest indexed color for many queries in parallel.
+	 * @param ucs the queries as flat CAM02-UCS triplets
+	 * @return for each query, the index of the nearest indexed color
+	 */
+	public int[] nearestBulk(float[] ucs) {
+		return IntStream.range(0, ucs.length / 3).parallel()
+				.map(q -> nearest(ucs[3 * q], ucs[3 * q + 1], ucs[3 * q + 2], -1))
+				.toArray();
+	}
+
+	/**
+	 * Looks up the k nearest indexed colors for many queries in parallel.
+	 * @param ucs the queries as flat CAM02-UCS triplets
+	 * @param k the number of neighbours
+	 * @return for each query, the result of {@link #kNearest(float[], int)}
+	 */
+	public int[][] kNearestBulk(float[] ucs, int k) {
+		return IntStream.range(0, ucs.length / 3).parallel()
+				.mapToObj(q -> kNearest(new float[] { ucs[3 * q], ucs[3 * q + 1], ucs[3 * q + 2] }, k))
+				.toArray(int[][]::new);
+	}
+
+	/**
+	 * Determines the nearest other color for every indexed color, in parallel.
+	 * @return for each indexed color, the result of {@link #nearestExcludingSelf(int)}
+	 */
+	public int[] nearestNeighbours() {
+		return IntStream.range(0, size()).parallel()
+				.map(this::nearestExcludingSelf)
+				.toArray();
+	}
+
+	/*
+	 * tree construction
+	 */
+
+	private void build(int lo, int hi) {
+		if (hi - lo <= LEAF_SIZE)
+			return;
+		int dim = widestDimension(lo, hi);
+		int mid = (lo + hi) >>> 1;
+		select(lo, hi - 1, mid, dim);
+		splitDim[mid] = (byte) dim;
+		build(lo, mid);
+		build(mid + 1, hi);
+	}
+
+	private int widestDimension(int lo, int hi) {
+		float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+		float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+		for (int p = lo; p < hi; p++) {
+			for (int d = 0; d < 3; d++) {
+				float v = pts[3 * p + d];
+				if (v < min[d]) min[d] = v;
+				if (v > max[d]) max[d] = v;
+			}
+		}
+		int dim = 0;
+		for (int d = 1; d < 3; d++) {
+			if (max[d] - min[d] > max[dim] - min[dim])
+				dim = d;
+		}
+		return dim;
+	}
+
+	/**
+	 * quickselect such that position k holds the median along dim,
+	 * everything before is less or equal and everything after is greater
+	 * or equal.
+	 */
+	private void select(int left, int right, int k, int dim) {
+		while (right > left) {
+			float pivot = pts[3 * ((left + right) >>> 1) + dim];
+			int i = left, j = right;
+			while (i <= j) {
+				while (pts[3 * i + dim] < pivot) i++;
+				while (pts[3 * j + dim] > pivot) j--;
+				if (i <= j) {
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+			if (k <= j)
+				right = j;
+			else if (k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+
+	private void swap(int a, int b) {
+		for (int d = 0; d < 3; d++) {
+			float t = pts[3 * a + d];
+			pts[3 * a + d] = pts[3 * b + d];
+			pts[3 * b + d] = t;
+		}
+		int t = perm[a];
+		perm[a] = perm[b];
+		perm[b] = t;
+	}
+
+	/*
+	 * queries
+	 */
+
+	private int position(int i) {
+		if (i < 0 || i >= pos.length)
+			throw new IndexOutOfBoundsException(Integer.toString(i));
+		return pos[i];
+	}
+
+	private float dist2(int p, float x, float y, float z) {
+		float dx = pts[3 * p] - x;
+		float dy = pts[3 * p + 1] - y;
+		float dz = pts[3 * p + 2] - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private int nearest(float x, float y, float z, int exclude) {
+		if (size() == 0)
+			return -1;
+		float[] best = { Float.POSITIVE_INFINITY };
+		int[] bestIdx = { -1 };
+		searchNearest(0, size(), x, y, z, exclude, best, bestIdx);
+		return bestIdx[0];
+	}
+
+	private void searchNearest(int lo, int hi, float x, float y, float z, int exclude, float[] best, int[] bestIdx) {
+		if (hi - lo <= LEAF_SIZE) {
+			for (int p = lo; p < hi; p++) {
+				float d = dist2(p, x, y, z);
+				if (d < best[0] && perm[p] != exclude) {
+					best[0] = d;
+					bestIdx[0] = perm[p];
+				}
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		int dim = splitDim[mid];
+		float diff = (dim == 0 ? x : dim == 1 ? y : z) - pts[3 * mid + dim];
+		float d = dist2(mid, x, y, z);
+		if (d < best[0] && perm[mid] != exclude) {
+			best[0] = d;
+			bestIdx[0] = perm[mid];
+		}
+		// descend into the near side first
+		if (diff < 0) {
+			searchNearest(lo, mid, x, y, z, exclude, best, bestIdx);
+			if (diff * diff < best[0])
+				searchNearest(mid + 1, hi, x, y, z, exclude, best, bestIdx);
+		} else {
+			searchNearest(mid + 1, hi, x, y, z, exclude, best, bestIdx);
+			if (diff * diff < best[0])
+				searchNearest(lo, mid, x, y, z, exclude, best, bestIdx);
+		}
+	}
+
+	private void searchK(int lo, int hi, float x, float y, float z, Neighbours nb) {
+		if (hi - lo <= LEAF_SIZE) {
+			for (int p = lo; p < hi; p++)
+				nb.offer(perm[p], dist2(p, x, y, z));
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		int dim = splitDim[mid];
+		float diff = (dim == 0 ? x : dim == 1 ? y : z) - pts[3 * mid + dim];
+		nb.offer(perm[mid], dist2(mid, x, y, z));
+		if (diff < 0) {
+			searchK(lo, mid, x, y, z, nb);
+			if (diff * diff < nb.bound())
+				searchK(mid + 1, hi, x, y, z, nb);
+		} else {
+			searchK(mid + 1, hi, x, y, z, nb);
+			if (diff * diff < nb.bound())
+				searchK(lo, mid, x, y, z, nb);
+		}
+	}
+
+	private void searchRadius(int lo, int hi, float x, float y, float z, float r2, IntList res) {
+		if (hi - lo <= LEAF_SIZE) {
+			for (int p = lo; p < hi; p++) {
+				if (dist2(p, x, y, z) <= r2)
+					res.add(perm[p]);
+			}
+			return;
+		}
+		int mid = (lo + hi) >>> 1;
+		int dim = splitDim[mid];
+		float diff = (dim == 0 ? x : dim == 1 ? y : z) - pts[3 * mid + dim];
+		if (dist2(mid, x, y, z) <= r2)
+			res.add(perm[mid]);
+		if (diff <= 0 || diff * diff <= r2)
+			searchRadius(lo, mid, x, y, z, r2, res);
+		if (diff >= 0 || diff * diff <= r2)
+			searchRadius(mid + 1, hi, x, y, z, r2, res);
+	}
+
+	/**
+	 * A bounded max-heap of the k best candidates seen so far.
+	 */
+	private static final class Neighbours {
+		final int capacity;
+		final int[] idx;
+		final float[] d2;
+		int size;
+
+		Neighbours(int capacity) {
+			this.capacity = capacity;
+			this.idx = new int[capacity];
+			this.d2 = new float[capacity];
+		}
+
+		float bound() {
+			return size < capacity ? Float.POSITIVE_INFINITY : d2[0];
+		}
+
+		void offer(int i, float d) {
+			if (size < capacity) {
+				// sift up
+				int c = size++;
+				while (c > 0) {
+					int parent = (c - 1) / 2;
+					if (d2[parent] >= d)
+						break;
+					idx[c] = idx[parent];
+					d2[c] = d2[parent];
+					c = parent;
+				}
+				idx[c] = i;
+				d2[c] = d;
+			} else if (d < d2[0]) {
+				// replace root and sift down
+				int c = 0;
+				while (true) {
+					int l = 2 * c + 1;
+					if (l >= size)
+						break;
+					int r = l + 1;
+					int m = r < size && d2[r] > d2[l] ? r : l;
+					if (d2[m] <= d)
+						break;
+					idx[c] = idx[m];
+					d2[c] = d2[m];
+					c = m;
+				}
+				idx[c] = i;
+				d2[c] = d;
+			}
+		}
+
+		int[] sorted() {
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++)
+				order[i] = i;
+			Arrays.sort(order, (a, b) -> Float.compare(d2[a], d2[b]));
+			int[] res = new int[size];
+			for (int i = 0; i < size; i++)
+				res[i] = idx[order[i]];
+			return res;
+		}
+	}
+
+	/**
+	 * minimal growable int array
+	 */
+	private static final class IntList {
+		int[] data = new int[16];
+		int size;
+
+		void add(int v) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, size * 2);
+			data[size++] = v;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(data, size);
+		}
+	}
+}
@@ -20,17 +20,23 @@
 
 package de.fhg.igd.pcolor.util;
 
+import java.awt.color.ColorSpace;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import de.fhg.igd.pcolor.CAMLab;
 import de.fhg.igd.pcolor.CAMLch;
 import de.fhg.igd.pcolor.PColor;
 import de.fhg.igd.pcolor.sRGB;
 import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CS_CIEXYZ;
 import de.fhg.igd.pcolor.colorspace.CS_sRGB;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
 import de.fhg.igd.pcolor.colorspace.ViewingConditions;
 
 /**
@@ -38,6 +44,40 @@ import de.fhg.igd.pcolor.colorspace.ViewingConditions;
  */
 public class ColorTools {
 
+	/**
+	 * the number of CAM02-UCS metrics kept for recently used viewing
+	 * conditions
+	 */
+	private static final int UCS_METRICS = 8;
+
+	/**
+	 * the CAM02-UCS metrics of recently used viewing conditions, most recent
+	 * first. The array is replaced rather than modified, so lookups need no
+	 * lock; an entry lost to a concurrent replacement is simply created
+	 * again. Entries are matched by identity since
+	 * {@link ViewingConditions#equals(Object)} ignores the degree of
+	 * adaptation.
+	 */
+	private static volatile DistanceMetric[] ucsMetrics = new DistanceMetric[0];
+
+	/**
+	 * @param vc viewing conditions
+	 * @return a CAM02-UCS metric for vc, shared if possible
+	 */
+	private static DistanceMetric ucsMetric(ViewingConditions vc) {
+		DistanceMetric[] metrics = ucsMetrics;
+		for (DistanceMetric m : metrics) {
+			if (m.getViewingConditions() == vc)
+				return m;
+		}
+		DistanceMetric m = DistanceMetric.cam02UCS(vc);
+		DistanceMetric[] next = new DistanceMetric[Math.min(metrics.length + 1, UCS_METRICS)];
+		next[0] = m;
+		System.arraycopy(metrics, 0, next, 1, next.length - 1);
+		ucsMetrics = next;
+		return m;
+	}
+
     /**
 	 * Returns the smallest difference between two hues as a absolute float
 	 * (in degrees).
@@ -103,6 +143,9 @@ public class ColorTools {
 	 * Returns a delta E distance in CAM02-UCS as published in "Uniform Colour Spaces Based on
 	 * CIECAM02 Colour Appearance Model" (Luo et al.). This is shown to be a good
 	 * measure of perceptual distance.
+	 * <p>
+	 * For repeated comparisons, consider preparing colors with
+	 * {@link DistanceMetric#cam02UCS(ViewingConditions)}.
 	 * @see CAMLab#distance(CAMLab, CAMLab)
 	 * @param col1 the first color.
 	 * @param col2 the second color
@@ -110,19 +153,21 @@ public class ColorTools {
 	 * @return a delta E, more accurately the CAM02-UCS distance between col1 and col2 
 	 */
 	public static float distance(PColor col1, PColor col2, ViewingConditions vc) {
-		CS_CAMLch compSpace = new CS_CAMLch(vc, CS_CAMLch.JMh);
-		CAMLch col1Lch = (CAMLch) PColor.convert(col1, compSpace);
-		CAMLch col2Lch = (CAMLch) PColor.convert(col2, compSpace);
-		return distance(col1Lch, col2Lch);
+		Instrumentation.Operation op = Instrumentation.begin("distance");
+		try {
+			return ucsMetric(vc).distance(col1, col2);
+		} finally {
+			Instrumentation.end(op);
+		}
 	}
 
 	/**
 	 * Returns a delta E distance in CAM02-UCS as published in "Uniform Colour Spaces Based on
 	 * CIECAM02 Colour Appearance Model" (Luo et al.). This is shown to be a good
 	 * measure of perceptual distance.
-	 * Note that the input colors MUST be {@link CS_CAMLch#JMh}.
-	 * @param col1 the first color, MUST be {@link CS_CAMLch#JMh}
-	 * @param col2 the second color, MUST be {@link CS_CAMLch#JMh}
+	 * Note that the input colors MUST be {@link CorrelateConfig#JMh}.
+	 * @param col1 the first color, MUST be {@link CorrelateConfig#JMh}
+	 * @param col2 the second color, MUST be {@link CorrelateConfig#JMh}
 	 * @return a delta E, more accurately the CAM02-UCS distance between col1 and col2 
 	 */
 	public static float distance(CAMLch col1, CAMLch col2) {
@@ -136,12 +181,12 @@ public class ColorTools {
 	 * See M. R. Luo, G. Cui, and C. Li, “Uniform colour spaces based on CIECAM02
 	 * colour appearance model,” Color Research &amp; Application,
 	 * vol. 31, no. 4, pp. 320–330, Aug. 2006.
-	 * @param col the input color, MUST be {@link CS_CAMLch#JMh}
+	 * @param col the input color, MUST be {@link CorrelateConfig#JMh}
 	 * @return a float array representing J'a'b'
 	 */
 	public static float[] toUCS_Jab(CAMLch col) {
-		if (!Arrays.equals(col.getColorSpace().getCorrelateConfiguration(), CS_CAMLch.JMh)) {
-			throw new IllegalArgumentException("Appearance correlates have to be J,M,h (CS_CAMLch.JMh)");
+		if (col.getColorSpace().getCorrelateConfig() != CorrelateConfig.JMh) {
+			throw new IllegalArgumentException("Appearance correlates have to be J,M,h (CorrelateConfig.JMh)");
 		}
 		float J = col.get(CAMLch.L);
 		float M = col.get(CAMLch.c);
@@ -152,7 +197,247 @@ public class ColorTools {
 		float b = (float)(sM * Math.sin(Math.toRadians(h)));
 		return new float[] {sJ, a, b };
 	}
-	
+
+	/**
+	 * Converts an array of colors to CAM02-UCS coordinates under the given
+	 * viewing conditions. Each color is converted exactly once.
+	 * @see #toUCS_Jab(CAMLch)
+	 * @param colors the colors, in any color space
+	 * @param vc the viewing conditions
+	 * @return a flat array of J'a'b' triplets, in the order of colors
+	 */
+	public static float[] toUCS_Jab(PColor[] colors, ViewingConditions vc) {
+		return ucsMetric(vc).prepare(colors);
+	}
+
+	/**
+	 * The inverse of {@link #toUCS_Jab(CAMLch)}: converts CAM02-UCS
+	 * coordinates back to a color.
+	 * @param ucs the array holding a J'a'b' triplet
+	 * @param off the offset of the triplet
+	 * @param vc the viewing conditions
+	 * @return the color, in a {@link CorrelateConfig#JMh} space under vc
+	 */
+	public static CAMLch fromUCS_Jab(float[] ucs, int off, ViewingConditions vc) {
+		DistanceMetric metric = ucsMetric(vc);
+		float[] JMh = new float[3];
+		metric.unprepare(ucs, off, JMh, 0, 1);
+		return new CAMLch(JMh, 1, metric.getColorSpace());
+	}
+
+	/**
+	 * Computes the full, symmetric matrix of CAM02-UCS distances between all
+	 * pairs of the given colors. Colors are converted to CAM02-UCS once, and
+	 * the matrix is filled in parallel tiles on the common fork/join pool. The
+	 * result agrees with calling {@link #distance(PColor, PColor, ViewingConditions)}
+	 * for each pair to within float rounding.
+	 * @param colors the colors
+	 * @param vc the viewing conditions the distances are to be evaluated under
+	 * @return an n x n matrix of delta E values with a zero diagonal
+	 */
+	public static float[][] distanceMatrix(PColor[] colors, ViewingConditions vc) {
+		int n = colors.length;
+		float[][] m = new float[n][n];
+		Instrumentation.Operation op = Instrumentation.begin("distanceMatrix");
+		try {
+			DistanceMatrixTask.create(toUCS_Jab(colors, vc), n, m, null).invoke();
+		} finally {
+			Instrumentation.end(op);
+		}
+		return m;
+	}
+
+	/**
+	 * Computes the upper triangle of the CAM02-UCS distance matrix of the given
+	 * colors, excluding the diagonal. This needs half the memory of
+	 * {@link #distanceMatrix(PColor[], ViewingConditions)} and is the
+	 * preferable form for large inputs. The distance between colors i &lt; j
+	 * is found at {@link #packedIndex(int, int, int)}.
+	 * @param colors the colors
+	 * @param vc the viewing conditions the distances are to be evaluated under
+	 * @return the n(n-1)/2 pairwise delta E values, row by row
+	 */
+	public static float[] distanceMatrixPacked(PColor[] colors, ViewingConditions vc) {
+		int n = colors.length;
+		long size = (long) n * (n - 1) / 2;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("too many colors for a packed matrix: " + n);
+		float[] m = new float[(int) size];
+		Instrumentation.Operation op = Instrumentation.begin("distanceMatrixPacked");
+		try {
+			DistanceMatrixTask.create(toUCS_Jab(colors, vc), n, null, m).invoke();
+		} finally {
+			Instrumentation.end(op);
+		}
+		return m;
+	}
+
+	/**
+	 * Returns the index of the pair (i, j) in a packed upper triangular
+	 * matrix as returned by {@link #distanceMatrixPacked(PColor[], ViewingConditions)}.
+	 * @param i the row, must be smaller than j
+	 * @param j the column
+	 * @param n the number of colors
+	 * @return the index into the packed array
+	 */
+	public static int packedIndex(int i, int j, int n) {
+		return (int) ((long) i * n - (long) i * (i + 1) / 2 + (j - i - 1));
+	}
+
+	/**
+	 * Converts a buffer of colors to another color space. Chunks are
+	 * converted in parallel with the bulk kernels of {@link CS_sRGB} and
+	 * {@link CS_CAMLch} where both spaces have one; other spaces are
+	 * converted per color with {@link PColor#convert(PColor, ColorSpace)}.
+	 * Unlike the latter, sRGB results are not clipped.
+	 * @param colors the colors
+	 * @param target the target color space
+	 * @return a new buffer in the target space
+	 */
+	public static ColorBuffer convert(ColorBuffer colors, ColorSpace target) {
+		ColorBuffer res = new ColorBuffer(target, colors.size());
+		Instrumentation.Operation op = Instrumentation.begin("convertBuffer");
+		try {
+			colors.chunks().parallel().forEach(chunk -> convert(chunk, target, res.array(), chunk.offset()));
+		} finally {
+			Instrumentation.end(op);
+		}
+		return res;
+	}
+
+	/**
+	 * Converts the colors of a chunk.
+	 * @param chunk the chunk
+	 * @param target the target color space
+	 * @param out receives the converted triplets, may be the chunk's scratch
+	 * @param outOff the offset of the first converted triplet
+	 */
+	static void convert(ColorBuffer.Chunk chunk, ColorSpace target, float[] out, int outOff) {
+		ColorSpace source = chunk.buffer().getColorSpace();
+		float[] src = chunk.data();
+		int off = chunk.offset();
+		int n = chunk.count();
+		if (source.equals(target)) {
+			System.arraycopy(src, off, out, outOff, 3 * n);
+		} else if (source instanceof CS_sRGB && target instanceof CS_CAMLch) {
+			((CS_CAMLch) target).fromRGB(src, off, out, outOff, n);
+		} else if (source instanceof CS_CAMLch && target instanceof CS_sRGB) {
+			((CS_CAMLch) source).toRGB(src, off, out, outOff, n);
+		} else if (source instanceof CS_CAMLch && target instanceof CS_CIEXYZ) {
+			((CS_CAMLch) source).toCIEXYZ(src, off, out, outOff, n);
+		} else if (source instanceof CS_CIEXYZ && target instanceof CS_CAMLch) {
+			((CS_CAMLch) target).fromCIEXYZ(src, off, out, outOff, n);
+		} else if (source instanceof CS_sRGB && target instanceof CS_CIEXYZ) {
+			CS_sRGB.toCIEXYZ(src, off, out, outOff, n);
+		} else if (source instanceof CS_CIEXYZ && target instanceof CS_sRGB) {
+			CS_sRGB.fromCIEXYZ(src, off, out, outOff, n);
+		} else if (source instanceof CS_CAMLch && target instanceof CS_CAMLch) {
+			// via XYZ, in place
+			((CS_CAMLch) source).toCIEXYZ(src, off, out, outOff, n);
+			((CS_CAMLch) target).fromCIEXYZ(out, outOff, out, outOff, n);
+		} else {
+			for (int i = 0; i < n; i++) {
+				PColor color = chunk.buffer().get(chunk.start() + i);
+				float[] comp = PColor.convert(color, target).getRawComponents();
+				System.arraycopy(comp, 0, out, outOff + 3 * i, 3);
+			}
+		}
+	}
+
+	/**
+	 * Computes the CAM02-UCS distances of a buffer of colors to a reference.
+	 * @see #distance(PColor, PColor, ViewingConditions)
+	 * @param colors the colors
+	 * @param reference the reference color, in any color space
+	 * @param vc the viewing conditions the distances are to be evaluated under
+	 * @return one delta E per color, in the order of colors
+	 */
+	public static float[] distances(ColorBuffer colors, PColor reference, ViewingConditions vc) {
+		return distances(colors, reference, ucsMetric(vc));
+	}
+
+	/**
+	 * Computes the distances of a buffer of colors to a reference. Chunks are
+	 * converted to the metric's space and prepared in their scratch buffers
+	 * in parallel.
+	 * @param colors the colors
+	 * @param reference the reference color, in any color space
+	 * @param metric the metric
+	 * @return one distance per color, in the order of colors
+	 */
+	public static float[] distances(ColorBuffer colors, PColor reference, DistanceMetric metric) {
+		float[] ref = metric.prepare(reference);
+		float[] res = new float[colors.size()];
+		Instrumentation.Operation op = Instrumentation.begin("distances");
+		try {
+			colors.chunks().parallel().forEach(chunk -> {
+				float[] prepared = chunk.scratch();
+				convert(chunk, metric.getColorSpace(), prepared, 0);
+				metric.prepare(prepared, 0, prepared, 0, chunk.count());
+				for (int i = 0; i < chunk.count(); i++)
+					res[chunk.start() + i] = metric.distance(ref, 0, prepared, 3 * i);
+			});
+		} finally {
+			Instrumentation.end(op);
+		}
+		return res;
+	}
+
+	/**
+	 * Selects the colors of a buffer that are within the sRGB gamut, like
+	 * {@link ColorPredicates#is_sRGB} does. Chunks are tested in parallel;
+	 * the order of the colors is kept.
+	 * @param colors the colors
+	 * @return a new buffer in the same color space holding the colors in gamut
+	 */
+	public static ColorBuffer filterInGamut(ColorBuffer colors) {
+		Instrumentation.Operation op = Instrumentation.begin("filterInGamut");
+		try {
+			int[][] kept = colors.chunks().parallel().map(chunk -> {
+				float[] rgb = chunk.scratch();
+				convert(chunk, CS_sRGB.instance, rgb, 0);
+				int[] idx = new int[chunk.count()];
+				int k = 0;
+				for (int i = 0; i < chunk.count(); i++) {
+					float r = rgb[3 * i], g = rgb[3 * i + 1], b = rgb[3 * i + 2];
+					if (r >= 0 && r <= 1 && g >= 0 && g <= 1 && b >= 0 && b <= 1)
+						idx[k++] = chunk.start() + i;
+				}
+				return Arrays.copyOf(idx, k);
+			}).toArray(int[][]::new);
+			int size = 0;
+			for (int[] k : kept)
+				size += k.length;
+			ColorBuffer res = new ColorBuffer(colors.getColorSpace(), size);
+			int j = 0;
+			for (int[] k : kept) {
+				for (int i : k)
+					colors.get(i, res.array(), 3 * j++);
+			}
+			return res;
+		} finally {
+			Instrumentation.end(op);
+		}
+	}
+
+	/**
+	 * Converts a buffer of colors to CAM02-UCS coordinates under the given
+	 * viewing conditions, in parallel chunks.
+	 * @see #toUCS_Jab(PColor[], ViewingConditions)
+	 * @param colors the colors
+	 * @param vc the viewing conditions
+	 * @return a flat array of J'a'b' triplets, in the order of colors
+	 */
+	public static float[] toUCS_Jab(ColorBuffer colors, ViewingConditions vc) {
+		DistanceMetric metric = ucsMetric(vc);
+		float[] res = new float[3 * colors.size()];
+		colors.chunks().parallel().forEach(chunk -> {
+			convert(chunk, metric.getColorSpace(), res, chunk.offset());
+			metric.prepare(res, chunk.offset(), res, chunk.offset(), chunk.count());
+		});
+		return res;
+	}
+
 	/**
 	 * Create a new color which has one channel changed in comparison to the
 	 * argument color.
@@ -220,17 +505,32 @@ public class ColorTools {
 	 */
 	public static <C extends PColor> C determineBoundaryColor(C col, int channel, float lower,
 			float upper, float e, Predicate<? super C> inside, ViewingConditions vc) {
-		float middleValue = (upper + lower) / 2f;
-		C middleColor = ColorTools.setChannel(col, channel, middleValue);
-		// if we woudn't move far anyway, treat as found as col is
-		// always assumed to be inside the space identified by the predicate
-		if (distance(col, middleColor, vc) < e)
-			return col;
-		if (inside.apply(middleColor))
-			return determineBoundaryColor(middleColor, channel, middleValue, upper,
-					e, inside, vc);
-		else
-			return determineBoundaryColor(col, channel, lower, middleValue, e, inside, vc);
+		Instrumentation.Operation op = Instrumentation.begin("determineBoundaryColor");
+		InstrumentationListener listener = Instrumentation.getListener();
+		Object token = listener != null ? listener.begin(InstrumentationListener.Kind.BOUNDARY_SEARCH) : null;
+		long start = listener != null ? System.nanoTime() : 0;
+		try {
+			for (int iterations = 1;; iterations++) {
+				float middleValue = (upper + lower) / 2f;
+				C middleColor = ColorTools.setChannel(col, channel, middleValue);
+				// if we woudn't move far anyway, treat as found as col is
+				// always assumed to be inside the space identified by the predicate
+				float d = distance(col, middleColor, vc);
+				if (d < e) {
+					if (listener != null)
+						listener.boundarySearch(token, channel, iterations, d, System.nanoTime() - start);
+					return col;
+				}
+				if (inside.apply(middleColor)) {
+					col = middleColor;
+					lower = middleValue;
+				} else {
+					upper = middleValue;
+				}
+			}
+		} finally {
+			Instrumentation.end(op);
+		}
 	}
 	
 	/**
@@ -283,26 +583,68 @@ public class ColorTools {
 	 * @param channel the channel to optimize
 	 * @param lower the lower bound for which all colors must satisfy the predicate
 	 * @param upper the upper bound, which may satisfy the predicate for most colors
-	 * @param e the distance in JCh to allow for
+	 * @param e the CAM02-UCS distance below which a boundary search stops,
+	 *        see {@link #determineBoundaryColor(PColor, int, float, float, float, Predicate)}
 	 * @param predicate a predicate defining a color space whose boundary is tested
 	 * @param <C> the color type
 	 * @return new new array of optimized colors
 	 */
 	public static <C extends PColor> C[] optimizePalette(C[] palette,
 			int channel, float lower, float upper, float e, Predicate<? super C> predicate) {
-		// find the common maximum value that satisfies the predicate
-		float common_max = upper;
-		for (C color : palette) {
-			// check if lower satisfies predicate; this is strictly an assumption
-			// to this method but it is better to check than be wrong.
-			C ctemp = setChannel(color, channel, lower);
-			if (!predicate.apply(ctemp))
-				throw new IllegalArgumentException("lower bound does not satisfy predicate for " + color.toString());
-			// lower the common maximum if we need to
-			if (!predicate.apply(setChannel(color, channel, common_max)))
-				common_max = determineBoundaryColor(ctemp, channel, lower, common_max, e, predicate).get(channel);
+		Instrumentation.Operation op = Instrumentation.begin("optimizePalette");
+		InstrumentationListener listener = Instrumentation.getListener();
+		Object token = listener != null ? listener.begin(InstrumentationListener.Kind.PALETTE_OPTIMIZATION) : null;
+		long start = listener != null ? System.nanoTime() : 0;
+		try {
+			// find the common maximum value that satisfies the predicate
+			float common_max = upper;
+			for (C color : palette) {
+				// check if lower satisfies predicate; this is strictly an assumption
+				// to this method but it is better to check than be wrong.
+				C ctemp = setChannel(color, channel, lower);
+				if (!predicate.apply(ctemp))
+					throw new IllegalArgumentException("lower bound does not satisfy predicate for " + color.toString());
+				// lower the common maximum if we need to
+				if (!predicate.apply(setChannel(color, channel, common_max)))
+					common_max = determineBoundaryColor(ctemp, channel, lower, common_max, e, predicate).get(channel);
+			}
+			if (listener != null)
+				listener.paletteOptimization(token, palette.length, channel, common_max, System.nanoTime() - start);
+			return setChannel(palette.clone(), channel, common_max);
+		} finally {
+			Instrumentation.end(op);
+		}
+	}
+
+	/**
+	 * A parallel variant of {@link #optimizePalette(PColor[], int, float, float, float, Predicate)}
+	 * which determines the boundaries of all colors concurrently. Repeated
+	 * colors are searched once unless threads meet them at the same time; to
+	 * share boundaries between palettes, use a {@link PaletteOptimizer}
+	 * directly.
+	 * 
+	 * @param palette the palette to optimize. Will not be modified. The values in
+	 * 		  the optimized channel are ignored.
+	 * @param channel the channel to optimize
+	 * @param lower the lower bound for which all colors must satisfy the predicate
+	 * @param upper the upper bound, which may satisfy the predicate for most colors
+	 * @param e the CAM02-UCS distance below which a boundary search stops;
+	 *        for {@link ColorPredicates#is_sRGB} on the chroma of CAMLch
+	 *        colors, the precision of the boundary chroma instead, see
+	 *        {@link PaletteOptimizer}
+	 * @param predicate a predicate defining a color space whose boundary is
+	 *        tested; it is applied from multiple threads
+	 * @param <C> the color type
+	 * @return new new array of optimized colors
+	 */
+	public static <C extends PColor> C[] optimizePaletteParallel(C[] palette,
+			int channel, float lower, float upper, float e, Predicate<? super C> predicate) {
+		Instrumentation.Operation op = Instrumentation.begin("optimizePaletteParallel");
+		try {
+			return new PaletteOptimizer<C>(channel, lower, upper, e, predicate).optimize(palette);
+		} finally {
+			Instrumentation.end(op);
 		}
-		return setChannel(palette.clone(), channel, common_max);
 	}
 
 	/**
@@ -312,9 +654,7 @@ public class ColorTools {
 	 * @return a string representing c in sRGB, clipped if needed
 	 */
 	public static String toHtml(PColor c, boolean alpha) {
-		int argb = c.getARGB();
-		return String.format(Locale.US, alpha ? "#%02x%02x%02x%02x" : "#%02x%02x%02x",
-				argb >> 16 & 0xff, argb >> 8 & 0xff, argb & 0xff, argb >> 24 & 0xff);
+		return appendHtml(new StringBuilder(9), c.getARGB(), alpha).toString();
 	}
 	
 	/**
@@ -324,14 +664,10 @@ public class ColorTools {
 	 * @return a string representing c in sRGB, clipped if needed
 	 */
 	public static String toCss(PColor c, boolean alpha) {
-		sRGB rgb = (sRGB) PColor.convert(c, CS_sRGB.instance);
-		return String.format(
-				Locale.US, 
-				alpha ? "rgba(%3d, %3d, %3d, %1.2f)" : "rgb(%3d, %3d, %3d)",
-				rgb.getByte(sRGB.R),
-				rgb.getByte(sRGB.G),
-				rgb.getByte(sRGB.B),
-				rgb.getAlpha());
+		PColor rgb = toSRGB(c);
+		StringBuilder sb = new StringBuilder(alpha ? 25 : 18);
+		appendCss(sb, toByte(rgb.get(sRGB.R)), toByte(rgb.get(sRGB.G)), toByte(rgb.get(sRGB.B)), alpha, c.getAlpha());
+		return sb.toString();
 	}
 	
 	/**
@@ -351,24 +687,196 @@ public class ColorTools {
 	 * @return an unclipped functional notation css3 color
 	 */
 	public static String toCssUnclipped(PColor c, boolean alpha) {
-		sRGB rgb = (sRGB) PColor.convert(c, CS_sRGB.instance);
-		return String.format(Locale.US,
-				alpha?"rgba(%3d, %3d, %3d, %1.2f)":"rgb(%3d, %3d, %3d)",
-				Math.round(rgb.get(sRGB.R) * 255),
-				Math.round(rgb.get(sRGB.G) * 255),
-				Math.round(rgb.get(sRGB.B) * 255),
-				rgb.getAlpha());
+		PColor rgb = toSRGB(c);
+		StringBuilder sb = new StringBuilder(alpha ? 25 : 18);
+		appendCss(sb, Math.round(rgb.get(sRGB.R) * 255), Math.round(rgb.get(sRGB.G) * 255),
+				Math.round(rgb.get(sRGB.B) * 255), alpha, c.getAlpha());
+		return sb.toString();
+	}
+
+	/**
+	 * Appends a packed color in the notation of {@link #toHtml(PColor, boolean)}.
+	 * @param out where to append to
+	 * @param argb the packed ARGB color
+	 * @param alpha whether to include alpha
+	 * @throws IOException if out does
+	 */
+	public static void appendHtml(Appendable out, int argb, boolean alpha) throws IOException {
+		out.append('#');
+		appendHex(out, argb >> 16);
+		appendHex(out, argb >> 8);
+		appendHex(out, argb);
+		if (alpha)
+			appendHex(out, argb >> 24);
+	}
+
+	/**
+	 * Appends a packed color in the notation of {@link #toHtml(PColor, boolean)}.
+	 * @param sb where to append to
+	 * @param argb the packed ARGB color
+	 * @param alpha whether to include alpha
+	 * @return sb
+	 */
+	public static StringBuilder appendHtml(StringBuilder sb, int argb, boolean alpha) {
+		try {
+			appendHtml((Appendable) sb, argb, alpha);
+		} catch (IOException e) {
+			// StringBuilders do not throw
+			throw new UncheckedIOException(e);
+		}
+		return sb;
+	}
+
+	/**
+	 * Appends packed colors in the notation of {@link #toHtml(PColor, boolean)}.
+	 * @param out where to append to
+	 * @param argb the packed ARGB colors
+	 * @param off the offset of the first color
+	 * @param count the number of colors
+	 * @param alpha whether to include alpha
+	 * @param separator appended between colors
+	 * @throws IOException if out does
+	 */
+	public static void appendHtml(Appendable out, int[] argb, int off, int count, boolean alpha,
+			CharSequence separator) throws IOException {
+		for (int i = 0; i < count; i++) {
+			if (i > 0)
+				out.append(separator);
+			appendHtml(out, argb[off + i], alpha);
+		}
+	}
+
+	/**
+	 * Appends a packed color in the notation of {@link #toCss(PColor, boolean)}.
+	 * @param out where to append to
+	 * @param argb the packed ARGB color
+	 * @param alpha whether to include alpha
+	 * @throws IOException if out does
+	 */
+	public static void appendCss(Appendable out, int argb, boolean alpha) throws IOException {
+		appendCss(out, argb >> 16 & 0xff, argb >> 8 & 0xff, argb & 0xff, alpha, (argb >>> 24) / 255f);
+	}
+
+	/**
+	 * Appends a packed color in the notation of {@link #toCss(PColor, boolean)}.
+	 * @param sb where to append to
+	 * @param argb the packed ARGB color
+	 * @param alpha whether to include alpha
+	 * @return sb
+	 */
+	public static StringBuilder appendCss(StringBuilder sb, int argb, boolean alpha) {
+		try {
+			appendCss((Appendable) sb, argb, alpha);
+		} catch (IOException e) {
+			// StringBuilders do not throw
+			throw new UncheckedIOException(e);
+		}
+		return sb;
+	}
+
+	/**
+	 * Appends packed colors in the notation of {@link #toCss(PColor, boolean)}.
+	 * @param out where to append to
+	 * @param argb the packed ARGB colors
+	 * @param off the offset of the first color
+	 * @param count the number of colors
+	 * @param alpha whether to include alpha
+	 * @param separator appended between colors
+	 * @throws IOException if out does
+	 */
+	public static void appendCss(Appendable out, int[] argb, int off, int count, boolean alpha,
+			CharSequence separator) throws IOException {
+		for (int i = 0; i < count; i++) {
+			if (i > 0)
+				out.append(separator);
+			appendCss(out, argb[off + i], alpha);
+		}
+	}
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * converts only if c is not already sRGB
+	 */
+	private static PColor toSRGB(PColor c) {
+		return c.getColorSpace().isCS_sRGB() ? c : PColor.convert(c, CS_sRGB.instance);
+	}
+
+	private static int toByte(float f) {
+		if (f <= 0)
+			return 0;
+		if (f >= 1)
+			return 255;
+		return Math.round(f * 255f);
+	}
+
+	private static void appendHex(Appendable out, int b) throws IOException {
+		out.append(HEX_DIGITS[b >> 4 & 0xf]);
+		out.append(HEX_DIGITS[b & 0xf]);
+	}
+
+	/**
+	 * "rgb(%3d, %3d, %3d)" or "rgba(%3d, %3d, %3d, %1.2f)" in Locale.US
+	 */
+	private static void appendCss(StringBuilder sb, int r, int g, int b, boolean alpha, float a) {
+		try {
+			appendCss((Appendable) sb, r, g, b, alpha, a);
+		} catch (IOException e) {
+			// StringBuilders do not throw
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void appendCss(Appendable out, int r, int g, int b, boolean alpha, float a) throws IOException {
+		out.append(alpha ? "rgba(" : "rgb(");
+		appendPadded(out, r);
+		out.append(", ");
+		appendPadded(out, g);
+		out.append(", ");
+		appendPadded(out, b);
+		if (alpha) {
+			out.append(", ");
+			appendFixed2(out, a);
+		}
+		out.append(')');
+	}
+
+	/**
+	 * appends an int right-aligned in three characters, as "%3d"
+	 */
+	private static void appendPadded(Appendable out, int v) throws IOException {
+		int len = v < 0 ? 2 : 1;
+		for (int rest = Math.abs(v / 10); rest > 0; rest /= 10)
+			len++;
+		for (; len < 3; len++)
+			out.append(' ');
+		if (v < 0)
+			out.append('-');
+		appendDigits(out, Math.abs((long) v));
+	}
+
+	private static void appendDigits(Appendable out, long v) throws IOException {
+		if (v >= 10)
+			appendDigits(out, v / 10);
+		out.append((char) ('0' + v % 10));
+	}
+
+	/**
+	 * appends a float with two decimals, rounding half up, as "%1.2f"
+	 */
+	private static void appendFixed2(Appendable out, float f) throws IOException {
+		if (Float.isNaN(f) || Float.isInfinite(f)) {
+			out.append(String.format(Locale.US, "%1.2f", f));
+			return;
+		}
+		long hundredths = Math.round(Math.abs((double) f) * 100);
+		if (Float.floatToRawIntBits(f) < 0)
+			out.append('-');
+		appendDigits(out, hundredths / 100);
+		out.append('.');
+		out.append((char) ('0' + hundredths / 10 % 10));
+		out.append((char) ('0' + hundredths % 10));
 	}
-	
-	private final static Pattern rgbColorPatternX1 = Pattern.compile("#(\\p{XDigit}{1})(\\p{XDigit}{1})(\\p{XDigit}{1})");
-	private final static Pattern rgbColorPatternX1A = Pattern.compile("#(\\p{XDigit}{1})(\\p{XDigit}{1})(\\p{XDigit}{1})(\\p{XDigit}{1})");
-	private final static Pattern rgbColorPatternX2 = Pattern.compile("#(\\p{XDigit}{2})(\\p{XDigit}{2})(\\p{XDigit}{2})");
-	private final static Pattern rgbColorPatternX2A = Pattern.compile("#(\\p{XDigit}{2})(\\p{XDigit}{2})(\\p{XDigit}{2})(\\p{XDigit}{2})");
-	
-	private final static String intP = "\\s*(-?\\d+)\\s*";
-	private final static String alphaP = "\\s*([\\d\\.]+)\\s*";
-	private final static Pattern rgbColorPatternD = Pattern.compile("rgb\\(" + intP + "," + intP + "," + intP + "\\)");
-	private final static Pattern rgbColorPatternDA = Pattern.compile("rgba\\(" + intP + "," + intP + "," + intP + "," + alphaP +"\\)");
 
 	/**
 	 * Parses the HTML/CSS sRGB "simple colors", some "legacy colors" and CSS
@@ -379,46 +887,184 @@ public class ColorTools {
 	 * @throws IllegalArgumentException is the input cannot be parsed
 	 */
 	public static sRGB parseColor(String c) {
-		Matcher m = rgbColorPatternX1.matcher(c);
-		if (m.matches()) {
-			return sRGB.fromBytes(Integer.parseInt(m.group(1), 16) * 17,
-					Integer.parseInt(m.group(2), 16) * 17,
-					Integer.parseInt(m.group(3), 16) * 17);
+		int[] rgba = new int[4];
+		parseRGBA(c, rgba, 0);
+		return sRGB.fromBytes(rgba);
+	}
+
+	/**
+	 * Parses a color as {@link #parseColor(String)} does into a packed ARGB
+	 * int. Values outside of 0..255, which the functional notations allow,
+	 * are clipped.
+	 * @param c the color string
+	 * @return the packed ARGB color
+	 * @throws IllegalArgumentException is the input cannot be parsed
+	 */
+	public static int parseARGB(CharSequence c) {
+		int[] rgba = new int[4];
+		parseRGBA(c, rgba, 0);
+		return clipByte(rgba[3]) << 24 | clipByte(rgba[0]) << 16 | clipByte(rgba[1]) << 8 | clipByte(rgba[2]);
+	}
+
+	/**
+	 * Parses many colors as {@link #parseARGB(CharSequence)} does.
+	 * @param colors the color strings
+	 * @return the packed ARGB colors
+	 * @throws IllegalArgumentException if any input cannot be parsed
+	 */
+	public static int[] parseARGB(List<? extends CharSequence> colors) {
+		int[] res = new int[colors.size()];
+		int[] rgba = new int[4];
+		int i = 0;
+		for (CharSequence c : colors) {
+			parseRGBA(c, rgba, 0);
+			res[i++] = clipByte(rgba[3]) << 24 | clipByte(rgba[0]) << 16 | clipByte(rgba[1]) << 8 | clipByte(rgba[2]);
 		}
-		m = rgbColorPatternX1A.matcher(c);
-		if (m.matches()) {
-			return sRGB.fromBytes(Integer.parseInt(m.group(1), 16) * 17,
-					Integer.parseInt(m.group(2), 16) * 17,
-					Integer.parseInt(m.group(3), 16) * 17,
-					Integer.parseInt(m.group(4), 16) * 17);
+		return res;
+	}
+
+	/**
+	 * Parses a stream of colors as {@link #parseARGB(CharSequence)} does.
+	 * @param colors the color strings
+	 * @return a stream of packed ARGB colors, parallel if colors is
+	 */
+	public static IntStream parseARGB(Stream<? extends CharSequence> colors) {
+		return colors.mapToInt(ColorTools::parseARGB);
+	}
+
+	/**
+	 * Parses a color as {@link #parseColor(String)} does in a single pass,
+	 * without creating objects.
+	 * @param c the color string
+	 * @param rgba receives red, green, blue and alpha as 0..255 integers;
+	 *        the functional notations may exceed that range
+	 * @param off the offset of red in rgba
+	 * @throws IllegalArgumentException is the input cannot be parsed
+	 */
+	public static void parseRGBA(CharSequence c, int[] rgba, int off) {
+		int n = c.length();
+		if (n > 0 && c.charAt(0) == '#') {
+			rgba[off + 3] = 255;
+			switch (n) {
+			case 4:
+			case 5:
+				for (int i = 1; i < n; i++)
+					rgba[off + i - 1] = hex(c.charAt(i)) * 17;
+				return;
+			case 7:
+			case 9:
+				for (int i = 1; i < n; i += 2)
+					rgba[off + i / 2] = hex(c.charAt(i)) << 4 | hex(c.charAt(i + 1));
+				return;
+			default:
+				throw notSupported();
+			}
 		}
-		m = rgbColorPatternX2.matcher(c);
-		if (m.matches()) {
-			return sRGB.fromBytes(Integer.parseInt(m.group(1), 16),
-					Integer.parseInt(m.group(2), 16),
-					Integer.parseInt(m.group(3), 16));
+		int pos;
+		boolean alpha;
+		if (startsWith(c, "rgba(")) {
+			pos = 5;
+			alpha = true;
+		} else if (startsWith(c, "rgb(")) {
+			pos = 4;
+			alpha = false;
+		} else {
+			throw notSupported();
 		}
-		m = rgbColorPatternX2A.matcher(c);
-		if (m.matches()) {
-			return sRGB.fromBytes(Integer.parseInt(m.group(1), 16),
-					Integer.parseInt(m.group(2), 16),
-					Integer.parseInt(m.group(3), 16),
-					Integer.parseInt(m.group(4), 16));
+		for (int k = 0; k < 3; k++) {
+			pos = skipSpace(c, pos);
+			boolean negative = pos < n && c.charAt(pos) == '-';
+			if (negative)
+				pos++;
+			int start = pos;
+			long v = 0;
+			for (; pos < n && isDigit(c.charAt(pos)); pos++) {
+				v = v * 10 + c.charAt(pos) - '0';
+				if (v > Integer.MAX_VALUE)
+					throw notSupported();
+			}
+			if (pos == start)
+				throw notSupported();
+			rgba[off + k] = (int) (negative ? -v : v);
+			pos = expect(c, skipSpace(c, pos), k < 2 || alpha ? ',' : ')');
 		}
-		m = rgbColorPatternD.matcher(c);
-		if (m.matches()) {
-			return sRGB.fromBytes(Integer.parseInt(m.group(1)),
-					Integer.parseInt(m.group(2)),
-					Integer.parseInt(m.group(3)));
+		if (alpha) {
+			pos = skipSpace(c, pos);
+			long mantissa = 0, scale = 1;
+			int digits = 0;
+			boolean dot = false;
+			for (; pos < n; pos++) {
+				char ch = c.charAt(pos);
+				if (ch == '.' && !dot) {
+					dot = true;
+				} else if (isDigit(ch)) {
+					digits++;
+					// further digits do not change the 8 bit result
+					if (mantissa < 100000000000L) {
+						mantissa = mantissa * 10 + ch - '0';
+						if (dot)
+							scale *= 10;
+					}
+				} else {
+					break;
+				}
+			}
+			if (digits == 0)
+				throw notSupported();
+			rgba[off + 3] = (int) ((float) ((double) mantissa / scale) * 255);
+			pos = expect(c, skipSpace(c, pos), ')');
+		} else {
+			rgba[off + 3] = 255;
 		}
-		m = rgbColorPatternDA.matcher(c);
-		if (m.matches()) {
-			return sRGB.fromBytes(Integer.parseInt(m.group(1)),
-					Integer.parseInt(m.group(2)),
-					Integer.parseInt(m.group(3)),
-					(int)(Float.parseFloat(m.group(4)) * 255));
+		if (pos != n)
+			throw notSupported();
+	}
+
+	private static IllegalArgumentException notSupported() {
+		return new IllegalArgumentException("Found none of the supported color notations");
+	}
+
+	private static int hex(char ch) {
+		int d = Character.digit(ch, 16);
+		if (d < 0 || ch > 'f')
+			throw notSupported();
+		return d;
+	}
+
+	private static boolean isDigit(char ch) {
+		return ch >= '0' && ch <= '9';
+	}
+
+	private static boolean startsWith(CharSequence c, String prefix) {
+		if (c.length() < prefix.length())
+			return false;
+		for (int i = 0; i < prefix.length(); i++)
+			if (c.charAt(i) != prefix.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * skips whitespace as matched by \\s
+	 */
+	private static int skipSpace(CharSequence c, int pos) {
+		while (pos < c.length()) {
+			char ch = c.charAt(pos);
+			if (ch != ' ' && ch != '\t' && ch != '\n' && ch != '\u000B' && ch != '\f' && ch != '\r')
+				break;
+			pos++;
 		}
-		throw new IllegalArgumentException("Found none of the supported color notations");
+		return pos;
+	}
+
+	private static int expect(CharSequence c, int pos, char ch) {
+		if (pos >= c.length() || c.charAt(pos) != ch)
+			throw notSupported();
+		return pos + 1;
+	}
+
+	private static int clipByte(int v) {
+		return v < 0 ? 0 : v > 255 ? 255 : v;
 	}
 	
 }
\ No newline at end of file
@@ -0,0 +1,311 @@
+package de.fhg.igd.pcolor.util;
+
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.CAMLab;
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+
+/**
+ * A colormap baked into a lookup table of sRGB colors, for mapping scalar
+ * data to colors quickly.
+ * <p>
+ * Colormaps are built from CAM control points which are interpolated
+ * piecewise linearly in one of several coordinate systems, see
+ * {@link Interpolation}. Each entry is gamut mapped into sRGB by reducing
+ * chroma at constant lightness and hue (see {@link GamutMapper}), so
+ * lightness ramps stay monotonic where clipping in RGB would break them.
+ * Tables are constructed in parallel.
+ * <p>
+ * Once built, colormaps are immutable and may be shared between threads.
+ * The bulk {@link #apply(double[], int[])} methods do not allocate.
+ */
+public class Colormap {
+
+	/**
+	 * The coordinates control points are interpolated in.
+	 */
+	public enum Interpolation {
+		/**
+		 * linear in lightness and chroma, along the shorter way around the hue
+		 * circle, as {@link CAMLch#blend(CAMLch, CAMLch, float)}
+		 */
+		JCH,
+		/**
+		 * linear in the cartesian lightness, a, b coordinates, as
+		 * {@link CAMLab#blend(CAMLab[], float[])}
+		 */
+		JAB,
+		/**
+		 * linear in CAM02-UCS J', a', b' coordinates, where equal steps are
+		 * roughly equal color differences
+		 */
+		UCS
+	}
+
+	private final int[] argb;
+	private final float[] rgba;
+	private final double min, max;
+	private final double scale;
+	private final int nanARGB;
+
+	private Colormap(int[] argb, float[] rgba, double min, double max, int nanARGB) {
+		this.argb = argb;
+		this.rgba = rgba;
+		this.min = min;
+		this.max = max;
+		this.scale = argb.length / (max - min);
+		this.nanARGB = nanARGB;
+	}
+
+	/**
+	 * @return the number of entries
+	 */
+	public int size() {
+		return argb.length;
+	}
+
+	/**
+	 * @return the data value mapped to the first entry
+	 */
+	public double getMinimum() {
+		return min;
+	}
+
+	/**
+	 * @return the upper end of the domain, mapped to the last entry
+	 */
+	public double getMaximum() {
+		return max;
+	}
+
+	/**
+	 * @return the packed ARGB color for NaN values
+	 */
+	public int getNaNColor() {
+		return nanARGB;
+	}
+
+	/**
+	 * @return a copy of the table as packed ARGB values
+	 */
+	public int[] getARGB() {
+		return argb.clone();
+	}
+
+	/**
+	 * @return a copy of the table as sRGB floats, four (r, g, b, alpha) per
+	 *         entry in 0..1
+	 */
+	public float[] getRGBA() {
+		return rgba.clone();
+	}
+
+	/**
+	 * Determines the table entry for a value. The domain is divided into
+	 * {@link #size()} equal bins; values outside of the domain take the first
+	 * or last entry.
+	 * @param value the data value, not NaN
+	 * @return the index of the entry
+	 */
+	public int index(double value) {
+		int idx = (int) ((value - min) * scale);
+		return idx < 0 ? 0 : idx >= argb.length ? argb.length - 1 : idx;
+	}
+
+	/**
+	 * Maps a single value.
+	 * @param value the data value
+	 * @return the packed ARGB color
+	 */
+	public int apply(double value) {
+		return Double.isNaN(value) ? nanARGB : argb[index(value)];
+	}
+
+	/**
+	 * Maps data to colors.
+	 * @param data the data values
+	 * @param argbOut receives the packed ARGB colors, at least as long as data
+	 */
+	public void apply(double[] data, int[] argbOut) {
+		apply(data, 0, argbOut, 0, data.length);
+	}
+
+	/**
+	 * Maps a range of data to colors.
+	 * @param data the data values
+	 * @param dataOff the offset of the first value
+	 * @param argbOut receives the packed ARGB colors
+	 * @param outOff the offset of the first color
+	 * @param count the number of values
+	 */
+	public void apply(double[] data, int dataOff, int[] argbOut, int outOff, int count) {
+		for (int i = 0; i < count; i++)
+			argbOut[outOff + i] = apply(data[dataOff + i]);
+	}
+
+	/**
+	 * Maps a range of data to colors.
+	 * @param data the data values
+	 * @param dataOff the offset of the first value
+	 * @param argbOut receives the packed ARGB colors
+	 * @param outOff the offset of the first color
+	 * @param count the number of values
+	 */
+	public void apply(float[] data, int dataOff, int[] argbOut, int outOff, int count) {
+		for (int i = 0; i < count; i++)
+			argbOut[outOff + i] = apply(data[dataOff + i]);
+	}
+
+	/**
+	 * Packs an sRGB triplet and alpha in 0..1 into an int, rounding as
+	 * {@link PColor#getARGB()} does.
+	 */
+	static int packARGB(float[] rgb, int off, float alpha) {
+		return toi(alpha) << 24 | toi(rgb[off]) << 16 | toi(rgb[off + 1]) << 8 | toi(rgb[off + 2]);
+	}
+
+	private static int toi(float f) {
+		if (f <= 0)
+			return 0;
+		if (f >= 1)
+			return 255;
+		return Math.round(f * 255f);
+	}
+
+	/**
+	 * Builds {@link Colormap}s. By default, control points are spaced
+	 * equally, interpolated in {@link Interpolation#UCS}, baked into 256
+	 * entries and map the domain 0..1; NaN maps to transparent black.
+	 */
+	public static class Builder {
+
+		private final CS_CAMLch space;
+		private final PColor[] controls;
+		private float[] positions;
+		private Interpolation interpolation = Interpolation.UCS;
+		private int size = 256;
+		private double min = 0, max = 1;
+		private int nanARGB = 0;
+		private boolean gamutMapping = true;
+
+		/**
+		 * @param space the CAM space whose viewing conditions and correlates
+		 *        are used for interpolation
+		 * @param controls the control points, in any color space
+		 */
+		public Builder(CS_CAMLch space, PColor... controls) {
+			if (controls.length == 0)
+				throw new IllegalArgumentException("at least one control point is needed");
+			this.space = space;
+			this.controls = controls.clone();
+		}
+
+		/**
+		 * Uses the space of the first control point for interpolation.
+		 * @param controls the control points, the first in a CAM space
+		 */
+		public Builder(CAMLch... controls) {
+			this(first(controls).getColorSpace(), controls);
+		}
+
+		private static CAMLch first(CAMLch[] controls) {
+			if (controls.length == 0)
+				throw new IllegalArgumentException("at least one control point is needed");
+			return controls[0];
+		}
+
+		/**
+		 * @param positions ascending positions of the control points in 0..1;
+		 *        equal positions make a hard stop, where the last of them applies
+		 * @return this builder
+		 */
+		public Builder positions(float... positions) {
+			if (positions.length != controls.length)
+				throw new IllegalArgumentException("positions do not match control points");
+			this.positions = positions.clone();
+			return this;
+		}
+
+		/**
+		 * @param interpolation the coordinates to interpolate in
+		 * @return this builder
+		 */
+		public Builder interpolation(Interpolation interpolation) {
+			this.interpolation = interpolation;
+			return this;
+		}
+
+		/**
+		 * @param size the number of table entries, at least 1
+		 * @return this builder
+		 */
+		public Builder size(int size) {
+			if (size < 1)
+				throw new IllegalArgumentException("size must be positive");
+			this.size = size;
+			return this;
+		}
+
+		/**
+		 * @param min the data value mapped to the first entry
+		 * @param max the data value mapped to the last entry
+		 * @return this builder
+		 */
+		public Builder domain(double min, double max) {
+			if (!(max > min))
+				throw new IllegalArgumentException("empty domain");
+			this.min = min;
+			this.max = max;
+			return this;
+		}
+
+		/**
+		 * @param argb the packed ARGB color for NaN values
+		 * @return this builder
+		 */
+		public Builder nanColor(int argb) {
+			this.nanARGB = argb;
+			return this;
+		}
+
+		/**
+		 * @param gamutMapping whether to reduce chroma of out-of-gamut entries
+		 *        (the default) or to clip them in sRGB
+		 * @return this builder
+		 */
+		public Builder gamutMapping(boolean gamutMapping) {
+			this.gamutMapping = gamutMapping;
+			return this;
+		}
+
+		/**
+		 * Bakes the table.
+		 * @return the colormap
+		 */
+		public Colormap build() {
+			Ramp ramp = new Ramp(space, controls, positions, interpolation);
+			int n = size;
+			float[] comp = new float[3 * n];
+			float[] alpha = new float[n];
+			IntStream.range(0, n).parallel().forEach(i ->
+					alpha[i] = ramp.sample(n == 1 ? 0 : i / (n - 1f), comp, 3 * i));
+			if (gamutMapping) {
+				new GamutMapper(ramp.getColorSpace()).mapToRGB(comp, 0, comp, 0, n);
+			} else {
+				ramp.getColorSpace().toRGB(comp, 0, comp, 0, n);
+				for (int i = 0; i < comp.length; i++)
+					comp[i] = MathTools.saturate(comp[i], 0f, 1f);
+			}
+			int[] argb = new int[n];
+			float[] rgba = new float[4 * n];
+			IntStream.range(0, n).parallel().forEach(i -> {
+				argb[i] = packARGB(comp, 3 * i, alpha[i]);
+				System.arraycopy(comp, 3 * i, rgba, 4 * i, 3);
+				rgba[4 * i + 3] = alpha[i];
+			});
+			return new Colormap(argb, rgba, min, max, nanARGB);
+		}
+	}
+}
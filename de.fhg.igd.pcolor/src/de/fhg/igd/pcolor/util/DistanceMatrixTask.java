@@ -0,0 +1,107 @@
+package de.fhg.igd.pcolor.util;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fills a pairwise distance matrix from flat, interleaved coordinate triplets.
+ * The matrix is processed in square tiles so that both rows of coordinates
+ * involved in a tile stay in cache; tiles of the upper triangle are
+ * distributed over the fork/join pool.
+ * <p>
+ * Results are written either to a full, symmetric matrix or to a packed upper
+ * triangle (without diagonal) in row-major order, see
+ * {@link ColorTools#packedIndex(int, int, int)}.
+ */
+class DistanceMatrixTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 2818465398271093581L;
+
+	/**
+	 * edge length of a tile; 64 triplets per tile side keep both coordinate
+	 * ranges well within L1
+	 */
+	static final int TILE = 64;
+
+	/**
+	 * the number of tiles below which we stop forking
+	 */
+	private static final int SEQUENTIAL_TILES = 4;
+
+	private final float[] coords;
+	private final int n;
+	private final float[][] full;
+	private final float[] packed;
+	private final int[] tileRow, tileCol;
+	private final int from, to;
+
+	private DistanceMatrixTask(float[] coords, int n, float[][] full, float[] packed,
+			int[] tileRow, int[] tileCol, int from, int to) {
+		this.coords = coords;
+		this.n = n;
+		this.full = full;
+		this.packed = packed;
+		this.tileRow = tileRow;
+		this.tileCol = tileCol;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * @param coords the coordinates, three floats per element
+	 * @param n the number of elements
+	 * @param full the full matrix to fill, or null
+	 * @param packed the packed upper triangle to fill, or null
+	 * @return a task covering all tiles of the upper triangle
+	 */
+	static DistanceMatrixTask create(float[] coords, int n, float[][] full, float[] packed) {
+		int tiles = (n + TILE - 1) / TILE;
+		int count = tiles * (tiles + 1) / 2;
+		int[] tileRow = new int[count];
+		int[] tileCol = new int[count];
+		int k = 0;
+		for (int i = 0; i < tiles; i++) {
+			for (int j = i; j < tiles; j++) {
+				tileRow[k] = i;
+				tileCol[k] = j;
+				k++;
+			}
+		}
+		return new DistanceMatrixTask(coords, n, full, packed, tileRow, tileCol, 0, count);
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from <= SEQUENTIAL_TILES) {
+			for (int t = from; t < to; t++) {
+				computeTile(tileRow[t] * TILE, tileCol[t] * TILE);
+			}
+		} else {
+			int mid = (from + to) >>> 1;
+			invokeAll(new DistanceMatrixTask(coords, n, full, packed, tileRow, tileCol, from, mid),
+					new DistanceMatrixTask(coords, n, full, packed, tileRow, tileCol, mid, to));
+		}
+	}
+
+	private void computeTile(int i0, int j0) {
+		int iEnd = Math.min(i0 + TILE, n);
+		int jEnd = Math.min(j0 + TILE, n);
+		for (int i = i0; i < iEnd; i++) {
+			float x = coords[3 * i], y = coords[3 * i + 1], z = coords[3 * i + 2];
+			// on diagonal tiles, only visit the upper triangle
+			int jStart = i0 == j0 ? i + 1 : j0;
+			int rowBase = packed != null ? ColorTools.packedIndex(i, jStart, n) : 0;
+			for (int j = jStart; j < jEnd; j++) {
+				float dx = x - coords[3 * j];
+				float dy = y - coords[3 * j + 1];
+				float dz = z - coords[3 * j + 2];
+				float d = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+				if (packed != null)
+					packed[rowBase + j - jStart] = d;
+				if (full != null) {
+					full[i][j] = d;
+					full[j][i] = d;
+				}
+			}
+		}
+	}
+}
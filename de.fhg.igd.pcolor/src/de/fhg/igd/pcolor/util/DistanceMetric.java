@@ -0,0 +1,396 @@
+package de.fhg.igd.pcolor.util;
+
+import de.fhg.igd.pcolor.CAMLab;
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+
+/**
+ * A color distance bound to a color space and thus to viewing conditions.
+ * <p>
+ * A metric is used in two steps: Colors are first <em>prepared</em>, i.e.
+ * converted once into the metric's coordinates, and prepared coordinates are
+ * then compared as often as needed. Comparing prepared coordinates does not
+ * allocate, which makes metrics suitable for the inner loops of palette
+ * searches. Prepared coordinates are triplets; the batch methods work on flat
+ * arrays of triplets.
+ * <p>
+ * Metrics are immutable and may be shared between threads.
+ */
+public abstract class DistanceMetric {
+
+	/**
+	 * the space colors are converted into before preparation
+	 */
+	private final CS_CAMLch space;
+
+	/**
+	 * @param space the space colors are converted into before preparation
+	 */
+	protected DistanceMetric(CS_CAMLch space) {
+		this.space = space;
+	}
+
+	/**
+	 * @return the space colors are converted into before preparation
+	 */
+	public CS_CAMLch getColorSpace() {
+		return space;
+	}
+
+	/**
+	 * @return the viewing conditions distances are evaluated under
+	 */
+	public ViewingConditions getViewingConditions() {
+		return space.getViewingconditions();
+	}
+
+	/**
+	 * Derive the prepared coordinates from components in this metric's space.
+	 * Implementations must allow comp and out to be the same triplet.
+	 * @param comp the components in {@link #getColorSpace()}
+	 * @param compOff the offset of the component triplet
+	 * @param out the array to write to
+	 * @param off the offset to write the triplet at
+	 */
+	protected abstract void prepare(float[] comp, int compOff, float[] out, int off);
+
+	/**
+	 * Prepares many colors given as components in this metric's space.
+	 * @param comp flat component triplets in {@link #getColorSpace()}
+	 * @param compOff the offset of the first component triplet
+	 * @param out receives the prepared triplets, may be comp
+	 * @param outOff the offset of the first prepared triplet
+	 * @param count the number of triplets
+	 */
+	public void prepare(float[] comp, int compOff, float[] out, int outOff, int count) {
+		for (int i = 0; i < count; i++)
+			prepare(comp, compOff + 3 * i, out, outOff + 3 * i);
+	}
+
+	/**
+	 * Derive components in this metric's space from prepared coordinates,
+	 * the inverse of {@link #prepare(float[], int, float[], int)}.
+	 * Implementations must allow prepared and out to be the same triplet.
+	 * @param prepared the prepared coordinates
+	 * @param preparedOff the offset of the prepared triplet
+	 * @param out the array to write to
+	 * @param off the offset to write the triplet at
+	 * @throws UnsupportedOperationException if the metric cannot be inverted,
+	 *         which is the default
+	 */
+	protected void unprepare(float[] prepared, int preparedOff, float[] out, int off) {
+		throw new UnsupportedOperationException("metric cannot be inverted");
+	}
+
+	/**
+	 * Maps many prepared triplets back to components in this metric's
+	 * space, e.g. after interpolating or averaging in the prepared
+	 * coordinates.
+	 * @param prepared flat prepared triplets
+	 * @param preparedOff the offset of the first prepared triplet
+	 * @param out receives the component triplets in {@link #getColorSpace()},
+	 *        may be prepared
+	 * @param outOff the offset of the first component triplet
+	 * @param count the number of triplets
+	 * @throws UnsupportedOperationException if the metric cannot be inverted
+	 */
+	public void unprepare(float[] prepared, int preparedOff, float[] out, int outOff, int count) {
+		for (int i = 0; i < count; i++)
+			unprepare(prepared, preparedOff + 3 * i, out, outOff + 3 * i);
+	}
+
+	/**
+	 * Prepares many sRGB colors using the bulk conversion of the metric's
+	 * color space.
+	 * @param rgb flat sRGB triplets (0..1)
+	 * @return the prepared triplets, in the order of rgb
+	 */
+	public float[] prepareRGB(float[] rgb) {
+		int n = rgb.length / 3;
+		float[] res = new float[n * 3];
+		space.fromRGB(rgb, 0, res, 0, n);
+		prepare(res, 0, res, 0, n);
+		return res;
+	}
+
+	/**
+	 * Prepares a color for this metric.
+	 * @param color the color, in any color space
+	 * @param out the array to write the prepared triplet to
+	 * @param off the offset to write the triplet at
+	 */
+	public void prepare(PColor color, float[] out, int off) {
+		prepare(PColor.convert(color, space).getComponents(), 0, out, off);
+	}
+
+	/**
+	 * Prepares a color for this metric.
+	 * @param color the color, in any color space
+	 * @return the prepared triplet
+	 */
+	public float[] prepare(PColor color) {
+		float[] res = new float[3];
+		prepare(color, res, 0);
+		return res;
+	}
+
+	/**
+	 * Prepares an array of colors for this metric.
+	 * @param colors the colors, in any color space
+	 * @return the prepared triplets, in the order of colors
+	 */
+	public float[] prepare(PColor[] colors) {
+		float[] res = new float[colors.length * 3];
+		for (int i = 0; i < colors.length; i++)
+			prepare(colors[i], res, i * 3);
+		return res;
+	}
+
+	/**
+	 * Computes the distance between two prepared triplets.
+	 * @param a the array holding the first triplet
+	 * @param aOff the offset of the first triplet
+	 * @param b the array holding the second triplet
+	 * @param bOff the offset of the second triplet
+	 * @return the distance
+	 */
+	public abstract float distance(float[] a, int aOff, float[] b, int bOff);
+
+	/**
+	 * Computes the distance between two prepared triplets.
+	 * @param a the first prepared triplet
+	 * @param b the second prepared triplet
+	 * @return the distance
+	 */
+	public float distance(float[] a, float[] b) {
+		return distance(a, 0, b, 0);
+	}
+
+	/**
+	 * Computes the distance between two colors, preparing both.
+	 * @param a the first color
+	 * @param b the second color
+	 * @return the distance
+	 */
+	public float distance(PColor a, PColor b) {
+		return distance(prepare(a), prepare(b));
+	}
+
+	/**
+	 * Computes the distances of many prepared triplets to a reference.
+	 * @param ref the prepared reference triplet
+	 * @param prepared flat prepared triplets
+	 * @param out receives one distance per triplet
+	 */
+	public void distance(float[] ref, float[] prepared, float[] out) {
+		int n = prepared.length / 3;
+		for (int i = 0; i < n; i++)
+			out[i] = distance(ref, 0, prepared, i * 3);
+	}
+
+	/**
+	 * Computes the smallest distance of a reference to many prepared triplets.
+	 * @param ref the array holding the reference triplet
+	 * @param refOff the offset of the reference triplet
+	 * @param prepared flat prepared triplets
+	 * @param count the number of triplets to consider
+	 * @return the minimum distance, or {@link Float#MAX_VALUE} if count is 0
+	 */
+	public float minDistance(float[] ref, int refOff, float[] prepared, int count) {
+		float min = Float.MAX_VALUE;
+		for (int i = 0; i < count; i++) {
+			float d = distance(ref, refOff, prepared, i * 3);
+			if (d < min)
+				min = d;
+		}
+		return min;
+	}
+
+	/**
+	 * The CAM02-UCS distance, see {@link ColorTools#distance(PColor, PColor, ViewingConditions)}.
+	 * Prepared coordinates agree with {@link ColorTools#toUCS_Jab(CAMLch)} to
+	 * within float rounding; they are computed in double precision.
+	 * @param vc the viewing conditions
+	 * @return a metric
+	 */
+	public static DistanceMetric cam02UCS(ViewingConditions vc) {
+		return new LuoMetric(vc, 1.00, 0.007, 0.0228);
+	}
+
+	/**
+	 * The CAM02-LCD distance for large color differences, as published along
+	 * with CAM02-UCS by Luo et al.
+	 * @param vc the viewing conditions
+	 * @return a metric
+	 */
+	public static DistanceMetric cam02LCD(ViewingConditions vc) {
+		return new LuoMetric(vc, 0.77, 0.007, 0.0053);
+	}
+
+	/**
+	 * The CAM02-SCD distance for small color differences, as published along
+	 * with CAM02-UCS by Luo et al.
+	 * @param vc the viewing conditions
+	 * @return a metric
+	 */
+	public static DistanceMetric cam02SCD(ViewingConditions vc) {
+		return new LuoMetric(vc, 1.24, 0.007, 0.0363);
+	}
+
+	/**
+	 * The weighted polar distance of {@link CAMLch#distance(CAMLch, CAMLch, float, float, float)}.
+	 * @param space the CAMLch space to measure in
+	 * @param lightnessWeight the lightness weight
+	 * @param colorfulnessWeight the colorfulness weight
+	 * @param hueWeight the hue weight
+	 * @return a metric
+	 */
+	public static DistanceMetric camLch(CS_CAMLch space, float lightnessWeight, float colorfulnessWeight, float hueWeight) {
+		if (space instanceof CS_CAMLab)
+			throw new IllegalArgumentException("mismatching colorspace given.");
+		return new LchMetric(space, lightnessWeight, colorfulnessWeight, hueWeight);
+	}
+
+	/**
+	 * The weighted cartesian distance of {@link CAMLab#distance(CAMLab, CAMLab, float, float)}.
+	 * @param space the CAMLab space to measure in
+	 * @param lightnessWeight the lightness weight
+	 * @param colorfulnessWeight the colorfulness weight
+	 * @return a metric
+	 */
+	public static DistanceMetric camLab(CS_CAMLab space, float lightnessWeight, float colorfulnessWeight) {
+		return new LabMetric(space, lightnessWeight, colorfulnessWeight);
+	}
+
+	/**
+	 * The family of CAM02-based uniform spaces by Luo et al. The prepared
+	 * lightness is divided by K_L, so the distance is plainly euclidean.
+	 */
+	private static final class LuoMetric extends DistanceMetric {
+
+		private final double K_L, c1, c2;
+
+		LuoMetric(ViewingConditions vc, double K_L, double c1, double c2) {
+			super(new CS_CAMLch(vc, CorrelateConfig.JMh));
+			this.K_L = K_L;
+			this.c1 = c1;
+			this.c2 = c2;
+		}
+
+		@Override
+		protected void prepare(float[] JMh, int compOff, float[] out, int off) {
+			double J = JMh[compOff + CAMLch.L];
+			double M = JMh[compOff + CAMLch.c];
+			double h = Math.toRadians(JMh[compOff + CAMLch.h]);
+			double sJ = ((1 + 100 * c1) * J) / (1 + c1 * J);
+			double sM = (1.0 / c2) * Math.log(1 + c2 * M);
+			out[off] = (float) (sJ / K_L);
+			out[off + 1] = (float) (sM * Math.cos(h));
+			out[off + 2] = (float) (sM * Math.sin(h));
+		}
+
+		@Override
+		protected void unprepare(float[] prepared, int preparedOff, float[] out, int off) {
+			double sJ = prepared[preparedOff] * K_L;
+			double a = prepared[preparedOff + 1], b = prepared[preparedOff + 2];
+			double h = Math.toDegrees(Math.atan2(b, a));
+			out[off + CAMLch.L] = (float) (sJ / (1 + 100 * c1 - c1 * sJ));
+			out[off + CAMLch.c] = (float) ((Math.exp(c2 * Math.hypot(a, b)) - 1) / c2);
+			out[off + CAMLch.h] = (float) (h < 0 ? h + 360 : h);
+		}
+
+		@Override
+		public float distance(float[] a, int aOff, float[] b, int bOff) {
+			float d0 = a[aOff] - b[bOff];
+			float d1 = a[aOff + 1] - b[bOff + 1];
+			float d2 = a[aOff + 2] - b[bOff + 2];
+			return (float) Math.sqrt(d0 * d0 + d1 * d1 + d2 * d2);
+		}
+	}
+
+	/**
+	 * Polar distance in any CAMLch space. Weights are normalised at
+	 * construction.
+	 */
+	private static final class LchMetric extends DistanceMetric {
+
+		private final float wL, wc, wh, hueCircle;
+
+		LchMetric(CS_CAMLch space, float lightnessWeight, float colorfulnessWeight, float hueWeight) {
+			super(space);
+			float max = Math.max(lightnessWeight, Math.max(colorfulnessWeight, hueWeight));
+			if (max <= 0) {
+				lightnessWeight = colorfulnessWeight = hueWeight = 1;
+			} else {
+				lightnessWeight = lightnessWeight / max;
+				colorfulnessWeight = colorfulnessWeight / max;
+				hueWeight = hueWeight / max;
+			}
+			this.wL = lightnessWeight / space.getMaxValue(CAMLch.L);
+			this.wc = colorfulnessWeight / space.getMaxValue(CAMLch.c);
+			this.wh = hueWeight / space.getMaxValue(CAMLch.h);
+			this.hueCircle = space.getMaxValue(CAMLch.h);
+		}
+
+		@Override
+		protected void prepare(float[] comp, int compOff, float[] out, int off) {
+			System.arraycopy(comp, compOff, out, off, 3);
+		}
+
+		@Override
+		protected void unprepare(float[] prepared, int preparedOff, float[] out, int off) {
+			System.arraycopy(prepared, preparedOff, out, off, 3);
+		}
+
+		@Override
+		public float distance(float[] a, int aOff, float[] b, int bOff) {
+			float dL = (a[aOff] - b[bOff]) * wL;
+			float dc = (a[aOff + 1] - b[bOff + 1]) * wc;
+			float dh = ColorTools.hueDistance(a[aOff + 2], b[bOff + 2], hueCircle) * wh;
+			return (float) Math.sqrt(dL * dL + dc * dc + dh * dh);
+		}
+	}
+
+	/**
+	 * Weighted cartesian distance in any CAMLab space.
+	 */
+	private static final class LabMetric extends DistanceMetric {
+
+		private final float wL, wab;
+
+		LabMetric(CS_CAMLab space, float lightnessWeight, float colorfulnessWeight) {
+			super(space);
+			float max = Math.max(lightnessWeight, colorfulnessWeight);
+			if (max <= 0) {
+				lightnessWeight = colorfulnessWeight = 0;
+			} else {
+				lightnessWeight = lightnessWeight / max;
+				colorfulnessWeight = colorfulnessWeight / max;
+			}
+			this.wL = lightnessWeight;
+			this.wab = colorfulnessWeight;
+		}
+
+		@Override
+		protected void prepare(float[] comp, int compOff, float[] out, int off) {
+			System.arraycopy(comp, compOff, out, off, 3);
+		}
+
+		@Override
+		protected void unprepare(float[] prepared, int preparedOff, float[] out, int off) {
+			System.arraycopy(prepared, preparedOff, out, off, 3);
+		}
+
+		@Override
+		public float distance(float[] a, int aOff, float[] b, int bOff) {
+			float dL = (a[aOff] - b[bOff]) * wL;
+			float da = (a[aOff + 1] - b[bOff + 1]) * wab;
+			float db = (a[aOff + 2] - b[bOff + 2]) * wab;
+			return (float) Math.sqrt(dL * dL + da * da + db * db);
+		}
+	}
+}
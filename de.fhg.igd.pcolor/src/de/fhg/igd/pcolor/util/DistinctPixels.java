@@ -0,0 +1,58 @@
+package de.fhg.igd.pcolor.util;
+
+import java.util.Arrays;
+
+/**
+ * Collects the distinct values of a run of packed pixels as sRGB triplets,
+ * so they can be converted in bulk. A small direct-mapped cache finds the
+ * values seen recently; values evicted from it may be added twice, which
+ * costs a conversion but is harmless otherwise. Alpha is ignored.
+ * <p>
+ * Instances are scratch state of one task and not thread-safe.
+ */
+final class DistinctPixels {
+
+	/**
+	 * the number of cache entries, a power of two
+	 */
+	private static final int CACHE = 4096;
+
+	private final int[] keys = new int[CACHE];
+	private final int[] ids = new int[CACHE];
+
+	/**
+	 * the sRGB triplets of the values added, to be converted in place
+	 */
+	final float[] coords;
+
+	/**
+	 * the number of values added
+	 */
+	int size;
+
+	/**
+	 * @param capacity the maximum number of values to add
+	 */
+	DistinctPixels(int capacity) {
+		Arrays.fill(keys, -1);
+		coords = new float[3 * capacity];
+	}
+
+	/**
+	 * @param argb a packed pixel
+	 * @return the index of its value in {@link #coords}, added if needed
+	 */
+	int id(int argb) {
+		int rgb = argb & 0xffffff;
+		int slot = (rgb * 0x9E3779B1) >>> 20;
+		if (keys[slot] != rgb) {
+			keys[slot] = rgb;
+			ids[slot] = size;
+			coords[3 * size] = (rgb >>> 16) / 255f;
+			coords[3 * size + 1] = (rgb >>> 8 & 0xff) / 255f;
+			coords[3 * size + 2] = (rgb & 0xff) / 255f;
+			size++;
+		}
+		return ids[slot];
+	}
+}
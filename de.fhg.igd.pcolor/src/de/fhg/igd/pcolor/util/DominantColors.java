@@ -0,0 +1,335 @@
+package de.fhg.igd.pcolor.util;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+
+/**
+ * Extracts the dominant colors of an image by k-means clustering in
+ * CAM02-UCS, i.e. using the distance of
+ * {@link ColorTools#distance(PColor, PColor, ViewingConditions)}.
+ * <p>
+ * Images are sampled on a regular grid of at most
+ * {@link #getSampleSize()} pixels; pixels that are mostly transparent are
+ * skipped. Equal samples are merged and converted to CAM02-UCS once, in
+ * bulk, so the cost of an extraction hardly depends on the image size.
+ * Clusters are seeded with k-means++ and refined with Lloyd iterations
+ * whose assignment and update steps run in parallel blocks on the common
+ * fork/join pool.
+ * <p>
+ * Seeding uses a fixed seed, so extractions are reproducible. Instances are
+ * immutable and may be shared between threads.
+ */
+public class DominantColors {
+
+	/**
+	 * the number of samples per parallel block of an iteration
+	 */
+	private static final int BLOCK = 4096;
+
+	/**
+	 * iterations stop once no centroid moves further than this (a delta E)
+	 */
+	private static final double EPSILON = 1e-3;
+
+	/**
+	 * A cluster of similar colors.
+	 */
+	public static final class Cluster {
+		private final CAMLch color;
+		private final float[] ucs;
+		private final float weight;
+
+		Cluster(CAMLch color, float[] ucs, float weight) {
+			this.color = color;
+			this.ucs = ucs;
+			this.weight = weight;
+		}
+
+		/**
+		 * @return the mean color of the cluster, in a
+		 *         {@link de.fhg.igd.pcolor.colorspace.CorrelateConfig#JMh} space
+		 */
+		public CAMLch getColor() {
+			return color;
+		}
+
+		/**
+		 * @return a copy of the mean's CAM02-UCS coordinates
+		 */
+		public float[] getCoordinates() {
+			return ucs.clone();
+		}
+
+		/**
+		 * @return the fraction of the samples in this cluster
+		 */
+		public float getWeight() {
+			return weight;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%s (%.1f%%)", ColorTools.toHtml(color, false), weight * 100);
+		}
+	}
+
+	private final ViewingConditions vc;
+	private final int k;
+	private final int sampleSize;
+	private final int maxIterations;
+
+	/**
+	 * Creates an extractor sampling up to 32768 pixels and iterating up to
+	 * 30 times.
+	 * @param k the number of colors to extract
+	 * @param vc the viewing conditions to cluster under
+	 */
+	public DominantColors(int k, ViewingConditions vc) {
+		this(k, vc, 1 << 15, 30);
+	}
+
+	/**
+	 * @param k the number of colors to extract
+	 * @param vc the viewing conditions to cluster under
+	 * @param sampleSize the maximum number of pixels sampled per image
+	 * @param maxIterations the maximum number of Lloyd iterations
+	 */
+	public DominantColors(int k, ViewingConditions vc, int sampleSize, int maxIterations) {
+		if (k < 1)
+			throw new IllegalArgumentException("k must be positive");
+		if (sampleSize < 1)
+			throw new IllegalArgumentException("sampleSize must be positive");
+		this.k = k;
+		this.vc = vc;
+		this.sampleSize = sampleSize;
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * @return the number of colors to extract
+	 */
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * @return the maximum number of pixels sampled per image
+	 */
+	public int getSampleSize() {
+		return sampleSize;
+	}
+
+	/**
+	 * Extracts the dominant colors of an image.
+	 * @param image the image
+	 * @return up to k clusters, by descending weight
+	 */
+	public Cluster[] extract(BufferedImage image) {
+		int w = image.getWidth(), h = image.getHeight();
+		long n = (long) w * h;
+		int count = (int) Math.min(n, sampleSize);
+		int[] argb = new int[count];
+		double step = (double) n / count;
+		for (int i = 0; i < count; i++) {
+			long p = (long) ((i + 0.5) * step);
+			argb[i] = image.getRGB((int) (p % w), (int) (p / w));
+		}
+		return extract(argb);
+	}
+
+	/**
+	 * Extracts the dominant colors of packed ARGB pixels. All pixels are
+	 * used; pixels with an alpha below 50% are skipped.
+	 * @param argb the pixels
+	 * @return up to k clusters, by descending weight
+	 */
+	public Cluster[] extract(int[] argb) {
+		Instrumentation.Operation op = Instrumentation.begin("dominantColors");
+		try {
+			int[] rgb = new int[argb.length];
+			int n = 0;
+			for (int c : argb) {
+				if ((c >>> 24) >= 0x80)
+					rgb[n++] = c & 0xffffff;
+			}
+			Arrays.sort(rgb, 0, n);
+			// merge equal samples, weighted by their count
+			int m = 0;
+			float[] weights = new float[n];
+			for (int i = 0; i < n; i++) {
+				if (m > 0 && rgb[m - 1] == rgb[i]) {
+					weights[m - 1]++;
+				} else {
+					rgb[m] = rgb[i];
+					weights[m++] = 1;
+				}
+			}
+			float[] ucs = ColorTools.toUCS_Jab(ColorBuffer.fromARGB(Arrays.copyOf(rgb, m)), vc);
+			return cluster(ucs, weights, m);
+		} finally {
+			Instrumentation.end(op);
+		}
+	}
+
+	/**
+	 * Extracts the dominant colors of a buffer. All colors are used and
+	 * weighted equally.
+	 * @param colors the colors
+	 * @return up to k clusters, by descending weight
+	 */
+	public Cluster[] extract(ColorBuffer colors) {
+		Instrumentation.Operation op = Instrumentation.begin("dominantColors");
+		try {
+			float[] weights = new float[colors.size()];
+			Arrays.fill(weights, 1);
+			return cluster(ColorTools.toUCS_Jab(colors, vc), weights, colors.size());
+		} finally {
+			Instrumentation.end(op);
+		}
+	}
+
+	/**
+	 * runs weighted k-means on the first n triplets
+	 */
+	private Cluster[] cluster(float[] ucs, float[] weights, int n) {
+		int kk = Math.min(k, n);
+		double[] centroids = seed(ucs, weights, n, kk);
+		int blocks = (n + BLOCK - 1) / BLOCK;
+		for (int iter = 0; iter < maxIterations; iter++) {
+			double[] c = centroids;
+			// per block sums of J', a', b' and weight per cluster, merged at the end
+			double[] sums = IntStream.range(0, blocks).parallel().mapToObj(b -> {
+				double[] s = new double[4 * kk];
+				for (int i = b * BLOCK, end = Math.min(n, i + BLOCK); i < end; i++) {
+					int j = 4 * nearest(c, kk, ucs, 3 * i);
+					double wi = weights[i];
+					s[j] += wi * ucs[3 * i];
+					s[j + 1] += wi * ucs[3 * i + 1];
+					s[j + 2] += wi * ucs[3 * i + 2];
+					s[j + 3] += wi;
+				}
+				return s;
+			}).reduce(DominantColors::add).orElse(new double[4 * kk]);
+			double shift = 0;
+			double[] next = c.clone();
+			for (int j = 0; j < kk; j++) {
+				double wj = sums[4 * j + 3];
+				if (wj == 0)
+					continue;
+				for (int d = 0; d < 3; d++)
+					next[3 * j + d] = sums[4 * j + d] / wj;
+				shift = Math.max(shift, dist2(next, 3 * j, c, 3 * j));
+			}
+			centroids = next;
+			if (shift <= EPSILON * EPSILON)
+				break;
+		}
+		// the weights of the final centroids
+		double[] c = centroids;
+		double[] total = IntStream.range(0, blocks).parallel().mapToObj(b -> {
+			double[] s = new double[kk];
+			for (int i = b * BLOCK, end = Math.min(n, i + BLOCK); i < end; i++)
+				s[nearest(c, kk, ucs, 3 * i)] += weights[i];
+			return s;
+		}).reduce(DominantColors::add).orElse(new double[kk]);
+		double sum = 0;
+		for (double t : total)
+			sum += t;
+		Cluster[] res = new Cluster[kk];
+		int r = 0;
+		for (int j = 0; j < kk; j++) {
+			if (total[j] == 0)
+				continue;
+			float[] coord = { (float) c[3 * j], (float) c[3 * j + 1], (float) c[3 * j + 2] };
+			res[r++] = new Cluster(ColorTools.fromUCS_Jab(coord, 0, vc), coord, (float) (total[j] / sum));
+		}
+		res = Arrays.copyOf(res, r);
+		Arrays.sort(res, Comparator.comparingDouble(cl -> -cl.weight));
+		return res;
+	}
+
+	/**
+	 * k-means++ seeding: each next centroid is drawn with a probability
+	 * proportional to its weight times its squared distance to the nearest
+	 * centroid so far
+	 */
+	private static double[] seed(float[] ucs, float[] weights, int n, int kk) {
+		Random random = new Random(4711);
+		double[] centroids = new double[3 * kk];
+		double[] d2 = new double[n];
+		Arrays.fill(d2, Double.POSITIVE_INFINITY);
+		int pick = draw(random, weights, null, n);
+		for (int j = 0; j < kk; j++) {
+			for (int d = 0; d < 3; d++)
+				centroids[3 * j + d] = ucs[3 * pick + d];
+			if (j == kk - 1)
+				break;
+			for (int i = 0; i < n; i++) {
+				double dx = ucs[3 * i] - centroids[3 * j];
+				double dy = ucs[3 * i + 1] - centroids[3 * j + 1];
+				double dz = ucs[3 * i + 2] - centroids[3 * j + 2];
+				d2[i] = Math.min(d2[i], dx * dx + dy * dy + dz * dz);
+			}
+			pick = draw(random, weights, d2, n);
+		}
+		return centroids;
+	}
+
+	/**
+	 * draws an index with a probability proportional to weights[i] * d2[i]
+	 */
+	private static int draw(Random random, float[] weights, double[] d2, int n) {
+		double total = 0;
+		for (int i = 0; i < n; i++)
+			total += weights[i] * (d2 != null ? d2[i] : 1);
+		double r = random.nextDouble() * total;
+		int last = 0;
+		for (int i = 0; i < n; i++) {
+			double p = weights[i] * (d2 != null ? d2[i] : 1);
+			if (p > 0) {
+				last = i;
+				r -= p;
+				if (r < 0)
+					return i;
+			}
+		}
+		return last;
+	}
+
+	private static int nearest(double[] centroids, int kk, float[] ucs, int off) {
+		int best = 0;
+		double min = Double.POSITIVE_INFINITY;
+		for (int j = 0; j < kk; j++) {
+			double dx = ucs[off] - centroids[3 * j];
+			double dy = ucs[off + 1] - centroids[3 * j + 1];
+			double dz = ucs[off + 2] - centroids[3 * j + 2];
+			double d = dx * dx + dy * dy + dz * dz;
+			if (d < min) {
+				min = d;
+				best = j;
+			}
+		}
+		return best;
+	}
+
+	private static double dist2(double[] a, int aOff, double[] b, int bOff) {
+		double dx = a[aOff] - b[bOff];
+		double dy = a[aOff + 1] - b[bOff + 1];
+		double dz = a[aOff + 2] - b[bOff + 2];
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	private static double[] add(double[] a, double[] b) {
+		for (int i = 0; i < a.length; i++)
+			a[i] += b[i];
+		return a;
+	}
+}
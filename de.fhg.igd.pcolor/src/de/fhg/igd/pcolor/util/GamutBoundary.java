@@ -0,0 +1,257 @@
+package de.fhg.igd.pcolor.util;
+
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+
+/**
+ * A gamut boundary descriptor: the maximum chroma (or colorfulness,
+ * saturation) a gamut admits, sampled on a regular grid over lightness and
+ * hue of a {@link CS_CAMLch} space.
+ * <p>
+ * The gamut is given as a predicate, e.g. {@link ColorPredicates#is_sRGB}.
+ * As with {@link ColorTools#determineBoundaryColor(de.fhg.igd.pcolor.PColor, int, float, float, float, Predicate)},
+ * it is assumed that for a given lightness and hue, the colors inside the
+ * gamut form an interval of chroma starting at 0. Each grid point is found
+ * once by bisection on the chroma channel, with lightness rows sampled in
+ * parallel. For {@link ColorPredicates#is_sRGB}, a per-thread
+ * {@link BoundarySolver} is used instead, which needs far fewer conversions.
+ * Queries in between are answered by bilinear interpolation, which is a
+ * table lookup. Where the interpolation is not precise enough, queries may
+ * be refined against the predicate.
+ * <p>
+ * Descriptors are immutable and may be shared between threads as long as
+ * the predicate can.
+ */
+public class GamutBoundary {
+
+	private final CS_CAMLch space;
+	private final Predicate<? super CAMLch> inside;
+	private final int lightnessSteps, hueSteps;
+	private final float maxLightness, hueCircle, upper, e;
+
+	/**
+	 * the maximum chroma at (lightness step i, hue step j), at
+	 * i * hueSteps + j
+	 */
+	private final float[] table;
+
+	/**
+	 * per-thread solvers if the gamut is sRGB, null otherwise
+	 */
+	private final ThreadLocal<BoundarySolver> solver;
+
+	/**
+	 * Samples a gamut boundary.
+	 * @param space the space to sample in; must not be a CAMLab space
+	 * @param inside the predicate defining the gamut; it is applied from
+	 *        multiple threads
+	 * @param lightnessSteps the number of lightness intervals between 0 and
+	 *        the space's maximum lightness; there are lightnessSteps + 1 samples
+	 * @param hueSteps the number of hue samples around the hue circle
+	 * @param upper the upper bound on chroma, which must be outside the gamut
+	 * @param e the precision on the chroma channel to sample with
+	 */
+	public GamutBoundary(CS_CAMLch space, Predicate<? super CAMLch> inside,
+			int lightnessSteps, int hueSteps, float upper, float e) {
+		if (space instanceof CS_CAMLab)
+			throw new IllegalArgumentException("gamut boundaries need a polar (CAMLch) space");
+		if (lightnessSteps < 1 || hueSteps < 1)
+			throw new IllegalArgumentException("at least one step is needed");
+		if (!(e > 0))
+			throw new IllegalArgumentException("precision must be positive");
+		this.space = space;
+		this.inside = inside;
+		this.lightnessSteps = lightnessSteps;
+		this.hueSteps = hueSteps;
+		this.maxLightness = space.getMaxValue(CAMLch.L);
+		this.hueCircle = space.getMaxValue(CAMLch.h);
+		this.upper = upper;
+		this.e = e;
+		this.table = new float[(lightnessSteps + 1) * hueSteps];
+		this.solver = inside == ColorPredicates.is_sRGB
+				? ThreadLocal.withInitial(() -> new BoundarySolver(space)) : null;
+		IntStream.rangeClosed(0, lightnessSteps).parallel().forEach(i -> {
+			for (int j = 0; j < hueSteps; j++)
+				table[i * hueSteps + j] = solve(lightness(i), hue(j));
+		});
+	}
+
+	/**
+	 * Samples the sRGB gamut boundary.
+	 * @param space the space to sample in; must not be a CAMLab space
+	 * @param lightnessSteps the number of lightness intervals
+	 * @param hueSteps the number of hue samples
+	 * @return a gamut boundary descriptor
+	 * @see #GamutBoundary(CS_CAMLch, Predicate, int, int, float, float)
+	 */
+	public static GamutBoundary sRGB(CS_CAMLch space, int lightnessSteps, int hueSteps) {
+		return new GamutBoundary(space, ColorPredicates.is_sRGB, lightnessSteps, hueSteps,
+				150f, 0.01f);
+	}
+
+	/**
+	 * @return the space the boundary is sampled in
+	 */
+	public CS_CAMLch getColorSpace() {
+		return space;
+	}
+
+	/**
+	 * @return the number of lightness intervals
+	 */
+	public int getLightnessSteps() {
+		return lightnessSteps;
+	}
+
+	/**
+	 * @return the number of hue samples
+	 */
+	public int getHueSteps() {
+		return hueSteps;
+	}
+
+	/**
+	 * @param i the lightness step, 0..lightnessSteps
+	 * @return the lightness of that step
+	 */
+	public float lightness(int i) {
+		return maxLightness * i / lightnessSteps;
+	}
+
+	/**
+	 * @param j the hue step, 0..hueSteps-1
+	 * @return the hue of that step
+	 */
+	public float hue(int j) {
+		return hueCircle * j / hueSteps;
+	}
+
+	/**
+	 * @param i the lightness step, 0..lightnessSteps
+	 * @param j the hue step, 0..hueSteps-1
+	 * @return the sampled maximum chroma at the given grid point
+	 */
+	public float sample(int i, int j) {
+		return table[i * hueSteps + j];
+	}
+
+	/**
+	 * Interpolates the maximum chroma for a given lightness and hue.
+	 * Lightness is clamped to the space's range.
+	 * @param L the lightness (or brightness)
+	 * @param h the hue, in the hue correlate of the space
+	 * @return the interpolated maximum chroma
+	 */
+	public float maxChroma(float L, float h) {
+		float li = Math.max(0, Math.min(lightnessSteps, L / maxLightness * lightnessSteps));
+		int i0 = Math.min((int) li, lightnessSteps - 1);
+		float lf = li - i0;
+		float hm = h % hueCircle;
+		if (hm < 0)
+			hm += hueCircle;
+		float hi = hm / hueCircle * hueSteps;
+		int j0 = Math.min((int) hi, hueSteps - 1);
+		int j1 = j0 + 1 == hueSteps ? 0 : j0 + 1;
+		float hf = hi - j0;
+		int r0 = i0 * hueSteps, r1 = r0 + hueSteps;
+		float c0 = table[r0 + j0] + (table[r0 + j1] - table[r0 + j0]) * hf;
+		float c1 = table[r1 + j0] + (table[r1 + j1] - table[r1 + j0]) * hf;
+		return c0 + (c1 - c0) * lf;
+	}
+
+	/**
+	 * Determines the maximum chroma for a given lightness and hue.
+	 * @param L the lightness (or brightness)
+	 * @param h the hue, in the hue correlate of the space
+	 * @param refine whether to refine the interpolated value against the
+	 *        predicate to the sampling precision
+	 * @return the maximum chroma; if refined, it satisfies the predicate
+	 */
+	public float maxChroma(float L, float h, boolean refine) {
+		if (refine && solver != null)
+			return solve(L, h);
+		float c = maxChroma(L, h);
+		return refine ? refine(L, h, c) : c;
+	}
+
+	/**
+	 * Determines the boundary color for a given lightness and hue. The
+	 * result is refined, see {@link #maxChroma(float, float, boolean)}.
+	 * @param L the lightness (or brightness)
+	 * @param h the hue, in the hue correlate of the space
+	 * @return the color of maximum chroma inside the gamut
+	 */
+	public CAMLch boundaryColor(float L, float h) {
+		return new CAMLch(new float[] { L, maxChroma(L, h, true), h }, 1f, space);
+	}
+
+	/**
+	 * Tests a color against the interpolated boundary, which is much cheaper
+	 * than testing the predicate but only as precise as the grid.
+	 * @param color a color in this boundary's space
+	 * @return true if the color's chroma does not exceed the interpolated boundary
+	 */
+	public boolean contains(CAMLch color) {
+		if (!space.equals(color.getColorSpace()))
+			throw new IllegalArgumentException("mismatching colorspace given.");
+		return color.get(CAMLch.c) <= maxChroma(color.get(CAMLch.L), color.get(CAMLch.h));
+	}
+
+	/**
+	 * determine the boundary chroma from scratch
+	 */
+	private float solve(float L, float h) {
+		if (solver != null)
+			return solver.get().maxChroma(L, h, 0, upper, e);
+		return bisect(L, h, 0, upper);
+	}
+
+	private boolean test(float L, float c, float h) {
+		return inside.apply(new CAMLch(new float[] { L, c, h }, 1f, space));
+	}
+
+	/**
+	 * bisection on chroma, assuming upper is outside and lower is inside if
+	 * anything is
+	 */
+	private float bisect(float L, float h, float lower, float upper) {
+		if (!test(L, lower, h))
+			return lower;
+		while (upper - lower > e) {
+			float middle = (lower + upper) / 2f;
+			if (test(L, middle, h))
+				lower = middle;
+			else
+				upper = middle;
+		}
+		return lower;
+	}
+
+	/**
+	 * bracket the boundary around an estimate, then bisect. Steps are not
+	 * widened, as far out of gamut colors may convert back into it.
+	 */
+	private float refine(float L, float h, float estimate) {
+		float step = Math.max(4 * e, estimate * 0.02f);
+		float lower, upper;
+		if (test(L, estimate, h)) {
+			lower = estimate;
+			upper = Math.min(estimate + step, this.upper);
+			while (upper < this.upper && test(L, upper, h)) {
+				lower = upper;
+				upper = Math.min(upper + step, this.upper);
+			}
+		} else {
+			upper = estimate;
+			lower = Math.max(estimate - step, 0);
+			while (lower > 0 && !test(L, lower, h)) {
+				upper = lower;
+				lower = Math.max(lower - step, 0);
+			}
+		}
+		return bisect(L, h, lower, upper);
+	}
+}
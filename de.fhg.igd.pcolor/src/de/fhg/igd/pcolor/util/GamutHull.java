@@ -0,0 +1,140 @@
+package de.fhg.igd.pcolor.util;
+
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+
+/**
+ * A triangle mesh of a gamut's hull in a {@link CS_CAMLch} space, built from
+ * the grid of a {@link GamutBoundary}.
+ * <p>
+ * The mesh is indexed: vertex (i, j) is the boundary color at lightness step
+ * i and hue step j and has the index i * hueSteps + j. Positions are
+ * cartesian (L, a, b) triplets, i.e. a = c cos(h) and b = c sin(h) in the
+ * boundary's space; colors are the vertices' sRGB triplets. Neighbouring
+ * lightness rows are joined by two triangles per hue step, wrapping around
+ * the hue circle. The topmost and lowest rows usually collapse to the
+ * lightness axis, which leaves degenerate triangles.
+ * <p>
+ * Vertices are computed in parallel, one lightness row at a time, with
+ * per-thread scratch state.
+ */
+public class GamutHull {
+
+	private final GamutBoundary boundary;
+	private final float[] positions;
+	private final float[] colors;
+	private final int[] indices;
+
+	/**
+	 * Creates the hull mesh of a sampled gamut boundary.
+	 * @param boundary the boundary
+	 */
+	public GamutHull(GamutBoundary boundary) {
+		this.boundary = boundary;
+		int rows = boundary.getLightnessSteps() + 1;
+		int hueSteps = boundary.getHueSteps();
+		int n = rows * hueSteps;
+		this.positions = new float[3 * n];
+		this.colors = new float[3 * n];
+		CS_CAMLch space = boundary.getColorSpace();
+		double toRad = 2 * Math.PI / space.getMaxValue(CAMLch.h);
+		ThreadLocal<float[]> scratch = ThreadLocal.withInitial(() -> new float[3 * hueSteps]);
+		IntStream.range(0, rows).parallel().forEach(i -> {
+			float[] comp = scratch.get();
+			float L = boundary.lightness(i);
+			int off = 3 * i * hueSteps;
+			for (int j = 0; j < hueSteps; j++) {
+				float c = boundary.sample(i, j);
+				float h = boundary.hue(j);
+				comp[3 * j] = L;
+				comp[3 * j + 1] = c;
+				comp[3 * j + 2] = h;
+				positions[off + 3 * j] = L;
+				positions[off + 3 * j + 1] = (float) (c * Math.cos(h * toRad));
+				positions[off + 3 * j + 2] = (float) (c * Math.sin(h * toRad));
+			}
+			space.toRGB(comp, 0, colors, off, hueSteps);
+		});
+		this.indices = new int[6 * (rows - 1) * hueSteps];
+		int k = 0;
+		for (int i = 0; i < rows - 1; i++) {
+			for (int j = 0; j < hueSteps; j++) {
+				int ll = vertex(i, j);
+				int lr = vertex(i, (j + 1) % hueSteps);
+				int ul = vertex(i + 1, j);
+				int ur = vertex(i + 1, (j + 1) % hueSteps);
+				indices[k++] = ll;
+				indices[k++] = ul;
+				indices[k++] = ur;
+				indices[k++] = lr;
+				indices[k++] = ll;
+				indices[k++] = ur;
+			}
+		}
+	}
+
+	/**
+	 * Samples the sRGB gamut and creates its hull mesh.
+	 * @param space the space to create the hull in; must not be a CAMLab space
+	 * @param lightnessSteps the number of lightness intervals
+	 * @param hueSteps the number of hue samples
+	 * @return the hull
+	 * @see GamutBoundary#sRGB(CS_CAMLch, int, int)
+	 */
+	public static GamutHull sRGB(CS_CAMLch space, int lightnessSteps, int hueSteps) {
+		return new GamutHull(GamutBoundary.sRGB(space, lightnessSteps, hueSteps));
+	}
+
+	/**
+	 * @return the boundary this hull is built from
+	 */
+	public GamutBoundary getBoundary() {
+		return boundary;
+	}
+
+	/**
+	 * @param i the lightness step
+	 * @param j the hue step
+	 * @return the index of vertex (i, j)
+	 */
+	public int vertex(int i, int j) {
+		return i * boundary.getHueSteps() + j;
+	}
+
+	/**
+	 * @return the number of vertices
+	 */
+	public int getVertexCount() {
+		return positions.length / 3;
+	}
+
+	/**
+	 * @return the number of triangles
+	 */
+	public int getTriangleCount() {
+		return indices.length / 3;
+	}
+
+	/**
+	 * @return a copy of the flat (L, a, b) vertex positions
+	 */
+	public float[] getPositions() {
+		return positions.clone();
+	}
+
+	/**
+	 * @return a copy of the flat sRGB vertex colors
+	 */
+	public float[] getColors() {
+		return colors.clone();
+	}
+
+	/**
+	 * @return a copy of the vertex indices, three per triangle
+	 */
+	public int[] getIndices() {
+		return indices.clone();
+	}
+}
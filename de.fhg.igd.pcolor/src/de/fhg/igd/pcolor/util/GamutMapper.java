@@ -0,0 +1,190 @@
+package de.fhg.igd.pcolor.util;
+
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.sRGB;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+
+/**
+ * Maps colors into the sRGB gamut by reducing chroma (or colorfulness,
+ * saturation) towards the lightness axis, preserving lightness and hue of a
+ * {@link CS_CAMLch} space. Unlike {@link de.fhg.igd.pcolor.colorspace.CS_sRGB#clipToGamut(double[])},
+ * which scales towards mid-grey in RGB, this keeps the appearance
+ * correlates that matter most for legibility and categorisation.
+ * <p>
+ * Each out-of-gamut color is mapped to its boundary using a
+ * {@link BoundarySolver}, bracketed by its own chroma. Colors that are
+ * already inside are left unchanged, and lightness outside of the space's
+ * range is clamped first. Close to black and white, the achromatic color of
+ * a lightness may be outside sRGB if the viewing conditions are not fully
+ * adapted; such colors become achromatic and their lightness is moved
+ * towards the middle of the range until they are inside. Large arrays are
+ * processed in parallel chunks with one solver per thread; small ones are
+ * mapped on the calling thread without allocating.
+ * <p>
+ * Mappers are immutable and may be shared between threads.
+ */
+public class GamutMapper {
+
+	/**
+	 * the number of colors mapped per parallel work unit
+	 */
+	private static final int CHUNK = 1024;
+
+	private final CS_CAMLch space;
+	private final float e;
+	private final float maxLightness;
+	private final ThreadLocal<BoundarySolver> solver;
+
+	/**
+	 * @param space the space whose lightness and hue are preserved; must not
+	 *        be a CAMLab space
+	 * @param e the precision on the chroma channel
+	 */
+	public GamutMapper(CS_CAMLch space, float e) {
+		if (space instanceof CS_CAMLab)
+			throw new IllegalArgumentException("gamut mapping needs a polar (CAMLch) space");
+		if (!(e > 0))
+			throw new IllegalArgumentException("precision must be positive");
+		this.space = space;
+		this.e = e;
+		this.maxLightness = space.getMaxValue(CAMLch.L);
+		this.solver = ThreadLocal.withInitial(() -> new BoundarySolver(space));
+	}
+
+	/**
+	 * Creates a mapper with a chroma precision of 0.01.
+	 * @param space the space whose lightness and hue are preserved; must not
+	 *        be a CAMLab space
+	 */
+	public GamutMapper(CS_CAMLch space) {
+		this(space, 0.01f);
+	}
+
+	/**
+	 * @return the space whose lightness and hue are preserved
+	 */
+	public CS_CAMLch getColorSpace() {
+		return space;
+	}
+
+	/**
+	 * Maps component triplets of this mapper's space into sRGB, in place.
+	 * @param comp flat triplets in {@link #getColorSpace()}
+	 * @param compOff the offset of the first triplet
+	 * @param count the number of triplets
+	 */
+	public void map(float[] comp, int compOff, int count) {
+		if (count <= CHUNK) {
+			mapChunk(comp, compOff, count);
+			return;
+		}
+		IntStream.range(0, (count + CHUNK - 1) / CHUNK).parallel().forEach(chunk -> {
+			int from = chunk * CHUNK;
+			mapChunk(comp, compOff + 3 * from, Math.min(CHUNK, count - from));
+		});
+	}
+
+	/**
+	 * Maps component triplets of this mapper's space into sRGB and converts
+	 * them. The components are not modified.
+	 * @param comp flat triplets in {@link #getColorSpace()}
+	 * @param compOff the offset of the first triplet
+	 * @param rgb receives the sRGB triplets, which are in 0..1
+	 * @param rgbOff the offset of the first sRGB triplet
+	 * @param count the number of triplets
+	 */
+	public void mapToRGB(float[] comp, int compOff, float[] rgb, int rgbOff, int count) {
+		if (count <= CHUNK) {
+			mapChunkToRGB(comp, compOff, rgb, rgbOff, count);
+			return;
+		}
+		IntStream.range(0, (count + CHUNK - 1) / CHUNK).parallel().forEach(chunk -> {
+			int from = chunk * CHUNK;
+			mapChunkToRGB(comp, compOff + 3 * from, rgb, rgbOff + 3 * from, Math.min(CHUNK, count - from));
+		});
+	}
+
+	/**
+	 * Maps colors into sRGB.
+	 * @param colors the colors, in any color space
+	 * @return the mapped colors in {@link #getColorSpace()}, alpha is retained
+	 */
+	public CAMLch[] map(PColor[] colors) {
+		float[] comp = toComponents(colors);
+		map(comp, 0, colors.length);
+		CAMLch[] res = new CAMLch[colors.length];
+		for (int i = 0; i < colors.length; i++)
+			res[i] = new CAMLch(new float[] { comp[3 * i], comp[3 * i + 1], comp[3 * i + 2] },
+					colors[i].getAlpha(), space);
+		return res;
+	}
+
+	/**
+	 * Maps colors into sRGB and converts them.
+	 * @param colors the colors, in any color space
+	 * @return the mapped sRGB colors, alpha is retained
+	 */
+	public sRGB[] mapToRGB(PColor[] colors) {
+		float[] comp = toComponents(colors);
+		mapToRGB(comp, 0, comp, 0, colors.length);
+		sRGB[] res = new sRGB[colors.length];
+		for (int i = 0; i < colors.length; i++)
+			res[i] = new sRGB(comp[3 * i], comp[3 * i + 1], comp[3 * i + 2], colors[i].getAlpha());
+		return res;
+	}
+
+	private float[] toComponents(PColor[] colors) {
+		float[] comp = new float[3 * colors.length];
+		for (int i = 0; i < colors.length; i++)
+			System.arraycopy(PColor.convert(colors[i], space).getComponents(), 0, comp, 3 * i, 3);
+		return comp;
+	}
+
+	private void mapChunkToRGB(float[] comp, int compOff, float[] rgb, int rgbOff, int count) {
+		System.arraycopy(comp, compOff, rgb, rgbOff, 3 * count);
+		mapChunk(rgb, rgbOff, count);
+		space.toRGB(rgb, rgbOff, rgb, rgbOff, count);
+		// remove rounding noise at the boundary
+		for (int i = rgbOff; i < rgbOff + 3 * count; i++)
+			rgb[i] = MathTools.saturate(rgb[i], 0f, 1f);
+	}
+
+	private void mapChunk(float[] comp, int off, int count) {
+		BoundarySolver s = solver.get();
+		for (int i = off; i < off + 3 * count; i += 3) {
+			float L = MathTools.saturate(comp[i], 0f, maxLightness);
+			float c = comp[i + 1];
+			float h = comp[i + 2];
+			if (s.outOfGamut(L, c, h) > 0) {
+				if (s.outOfGamut(L, 0, h) > 0) {
+					L = achromatic(s, L, h);
+					c = 0;
+				} else {
+					c = s.maxChroma(L, h, 0, c, e);
+				}
+			}
+			comp[i] = L;
+			comp[i + 1] = c;
+		}
+	}
+
+	/**
+	 * bisect lightness towards the middle of the range until the achromatic
+	 * color is inside
+	 */
+	private float achromatic(BoundarySolver s, float L, float h) {
+		float inside = maxLightness / 2, outside = L;
+		while (Math.abs(outside - inside) > e) {
+			float middle = (inside + outside) / 2f;
+			if (s.outOfGamut(middle, 0, h) > 0)
+				outside = middle;
+			else
+				inside = middle;
+		}
+		return inside;
+	}
+}
@@ -0,0 +1,172 @@
+package de.fhg.igd.pcolor.util;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.colorspace.CorrelateConfig;
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+
+/**
+ * Creates colors on a hue ring, i.e. colors sharing lightness and chroma (or
+ * whatever correlates a {@link CS_CAMLch} space uses), that are equally
+ * spaced in CAM02-UCS.
+ * <p>
+ * If the ring's space uses the same viewing conditions as the distance, the
+ * ring is a circle in CAM02-UCS (J' and M' are constant) and the result is
+ * computed in closed form. Otherwise, the ring is sampled once into a table
+ * of cumulative arc length which is then inverted.
+ * @see ColorTools#distance(de.fhg.igd.pcolor.PColor, de.fhg.igd.pcolor.PColor, ViewingConditions)
+ */
+public class HueRing {
+
+	/**
+	 * the number of samples for rings which need to be measured
+	 */
+	private static final int SAMPLES = 720;
+
+	/**
+	 * CAM02-UCS colorfulness compression, see {@link ColorTools#toUCS_Jab(CAMLch)}
+	 */
+	private static final double c2 = 0.0228;
+
+	// hide ctor
+	private HueRing() {}
+
+	/**
+	 * Creates count colors equally spaced around a hue ring.
+	 * @param space the space defining the ring; must not be a CAMLab space
+	 * @param L the lightness (or brightness) of the ring
+	 * @param c the chroma (or colorfulness, saturation) of the ring
+	 * @param count the number of colors
+	 * @param startHue the hue of the first color, in the hue correlate of space
+	 * @param vc the viewing conditions to measure CAM02-UCS distance under
+	 * @return count colors in space, ordered by hue starting at startHue
+	 */
+	public static CAMLch[] equidistant(CS_CAMLch space, float L, float c, int count, float startHue, ViewingConditions vc) {
+		checkSpace(space);
+		if (count < 0)
+			throw new IllegalArgumentException("count must not be negative");
+		if (space.getViewingconditions().equals(vc)) {
+			float[] JMh = space.reconfigure(new float[] { L, c, startHue }, CorrelateConfig.JMh);
+			return circle(space, JMh, count);
+		}
+		return new Table(space, L, c, startHue, vc).invert(count);
+	}
+
+	/**
+	 * Creates as many colors as fit around a hue ring such that neighbouring
+	 * colors are at least minDist apart (a delta E in CAM02-UCS). The colors are
+	 * equally spaced.
+	 * @param space the space defining the ring; must not be a CAMLab space
+	 * @param L the lightness (or brightness) of the ring
+	 * @param c the chroma (or colorfulness, saturation) of the ring
+	 * @param minDist the minimum distance between neighbouring colors
+	 * @param startHue the hue of the first color, in the hue correlate of space
+	 * @param vc the viewing conditions to measure CAM02-UCS distance under
+	 * @return the colors in space, ordered by hue starting at startHue; a
+	 *         single color if the ring is too small to fit two
+	 */
+	public static CAMLch[] spaced(CS_CAMLch space, float L, float c, float minDist, float startHue, ViewingConditions vc) {
+		checkSpace(space);
+		if (!(minDist > 0))
+			throw new IllegalArgumentException("minDist must be positive");
+		if (space.getViewingconditions().equals(vc)) {
+			float[] JMh = space.reconfigure(new float[] { L, c, startHue }, CorrelateConfig.JMh);
+			// chord of a circle with radius M': 2 M' sin(dh / 2)
+			double radius = Math.log(1 + c2 * JMh[CAMLch.c]) / c2;
+			if (minDist >= 2 * radius)
+				return circle(space, JMh, 1);
+			double dh = 2 * Math.asin(minDist / (2 * radius));
+			int count = Math.max(1, (int) Math.floor(2 * Math.PI / dh + 1e-9));
+			return circle(space, JMh, count);
+		}
+		Table table = new Table(space, L, c, startHue, vc);
+		int count = Math.max(1, (int) (table.length / minDist));
+		// arc length overestimates the chord, so check neighbours
+		while (count > 1) {
+			CAMLch[] ring = table.invert(count);
+			if (table.minChord(ring) >= minDist)
+				return ring;
+			count--;
+		}
+		return table.invert(1);
+	}
+
+	private static void checkSpace(CS_CAMLch space) {
+		if (space instanceof CS_CAMLab)
+			throw new IllegalArgumentException("hue rings need a polar (CAMLch) space");
+	}
+
+	/**
+	 * equal hue angle steps are equal steps in CAM02-UCS
+	 */
+	private static CAMLch[] circle(CS_CAMLch space, float[] JMh, int count) {
+		CS_CAMLch jmhSpace = new CS_CAMLch(space.getViewingconditions(), CorrelateConfig.JMh);
+		CorrelateConfig config = space.getCorrelateConfig();
+		CAMLch[] ring = new CAMLch[count];
+		for (int i = 0; i < count; i++) {
+			float h = (float) ((JMh[CAMLch.h] + i * 360.0 / count) % 360.0);
+			float[] comp = jmhSpace.reconfigure(new float[] { JMh[CAMLch.L], JMh[CAMLch.c], h }, config);
+			ring[i] = new CAMLch(comp, 1f, space);
+		}
+		return ring;
+	}
+
+	/**
+	 * The cumulative arc length of a ring that is not a circle in CAM02-UCS.
+	 */
+	private static final class Table {
+
+		final CS_CAMLch space;
+		final float L, c, startHue, hueCircle;
+		final DistanceMetric ucs;
+		/** cumulative length at sample k, SAMPLES + 1 entries */
+		final double[] cumulative = new double[SAMPLES + 1];
+		final double length;
+
+		Table(CS_CAMLch space, float L, float c, float startHue, ViewingConditions vc) {
+			this.space = space;
+			this.L = L;
+			this.c = c;
+			this.startHue = startHue;
+			this.hueCircle = space.getMaxValue(CAMLch.h);
+			this.ucs = DistanceMetric.cam02UCS(vc);
+			float[] pts = new float[3 * SAMPLES];
+			for (int k = 0; k < SAMPLES; k++) {
+				float[] xyz = space.toCIEXYZ(new float[] { L, c, hue(k) });
+				System.arraycopy(xyz, 0, pts, 3 * k, 3);
+			}
+			ucs.getColorSpace().fromCIEXYZ(pts, 0, pts, 0, SAMPLES);
+			ucs.prepare(pts, 0, pts, 0, SAMPLES);
+			for (int k = 1; k <= SAMPLES; k++)
+				cumulative[k] = cumulative[k - 1] + ucs.distance(pts, 3 * (k - 1), pts, 3 * (k % SAMPLES));
+			this.length = cumulative[SAMPLES];
+		}
+
+		private float hue(double k) {
+			return (float) ((startHue + k * hueCircle / SAMPLES) % hueCircle);
+		}
+
+		CAMLch[] invert(int count) {
+			CAMLch[] ring = new CAMLch[count];
+			int k = 0;
+			for (int i = 0; i < count; i++) {
+				double target = i * length / count;
+				while (k < SAMPLES - 1 && cumulative[k + 1] <= target)
+					k++;
+				double seg = cumulative[k + 1] - cumulative[k];
+				double frac = seg > 0 ? (target - cumulative[k]) / seg : 0;
+				ring[i] = new CAMLch(new float[] { L, c, hue(k + frac) }, 1f, space);
+			}
+			return ring;
+		}
+
+		float minChord(CAMLch[] ring) {
+			float[] pts = ucs.prepare(ring);
+			float min = Float.MAX_VALUE;
+			for (int i = 0; i < ring.length; i++)
+				min = Math.min(min, ucs.distance(pts, 3 * i, pts, 3 * ((i + 1) % ring.length)));
+			return min;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package de.fhg.igd.pcolor.util;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+
+/**
+ * The per-pixel perceptual difference of two equally sized images, e.g. for
+ * visual regression tests. Differences are CAM02-UCS delta E values, as
+ * {@link ColorTools#distance(de.fhg.igd.pcolor.PColor, de.fhg.igd.pcolor.PColor, ViewingConditions)}
+ * computes them; alpha is ignored.
+ * <p>
+ * Images are compared in parallel tiles of {@value #TILE_ROWS} rows. Pixels
+ * that are equal in both images have no difference and are skipped. The
+ * distinct values of the others are collected per tile, so runs of equal
+ * pixels as found in screenshots are converted once, with the bulk
+ * {@link de.fhg.igd.pcolor.colorspace.CS_CAMLch#fromRGB(float[], int, float[], int, int)}
+ * of the metric's space and
+ * {@link DistanceMetric#prepare(float[], int, float[], int, int)}.
+ * <p>
+ * Differences are immutable.
+ */
+public class ImageDifference {
+
+	/**
+	 * the number of rows per parallel tile
+	 */
+	public static final int TILE_ROWS = 16;
+
+	private final int width, height;
+	private final float[] map;
+	private final double mean;
+	private final float max;
+	private final int changed;
+	private volatile float[] sorted;
+
+	private ImageDifference(int width, int height, float[] map) {
+		this.width = width;
+		this.height = height;
+		this.map = map;
+		double sum = 0;
+		float m = 0;
+		int c = 0;
+		for (float d : map) {
+			sum += d;
+			if (d > m)
+				m = d;
+			if (d > 0)
+				c++;
+		}
+		this.mean = map.length == 0 ? 0 : sum / map.length;
+		this.max = m;
+		this.changed = c;
+	}
+
+	/**
+	 * Compares two images under the given viewing conditions.
+	 * @param a the first image
+	 * @param b the second image, of the same size
+	 * @param vc the viewing conditions
+	 * @return the difference
+	 */
+	public static ImageDifference compare(BufferedImage a, BufferedImage b, ViewingConditions vc) {
+		return compare(a, b, DistanceMetric.cam02UCS(vc));
+	}
+
+	/**
+	 * Compares two images with any metric.
+	 * @param a the first image
+	 * @param b the second image, of the same size
+	 * @param metric the metric
+	 * @return the difference
+	 */
+	public static ImageDifference compare(BufferedImage a, BufferedImage b, DistanceMetric metric) {
+		int w = a.getWidth(), h = a.getHeight();
+		if (b.getWidth() != w || b.getHeight() != h)
+			throw new IllegalArgumentException("images differ in size");
+		float[] map = new float[w * h];
+		Instrumentation.Operation op = Instrumentation.begin("imageDifference");
+		try {
+			IntStream.range(0, (h + TILE_ROWS - 1) / TILE_ROWS).parallel().forEach(t -> {
+				int y = t * TILE_ROWS, rows = Math.min(TILE_ROWS, h - y);
+				int n = rows * w;
+				int[] pa = a.getRGB(0, y, w, rows, null, 0, w);
+				int[] pb = b.getRGB(0, y, w, rows, null, 0, w);
+				// gather the pixels that differ and their distinct values
+				DistinctPixels tile = new DistinctPixels(2 * n);
+				int[] idx = new int[n], ia = new int[n], ib = new int[n];
+				int m = 0;
+				for (int i = 0; i < n; i++) {
+					if (((pa[i] ^ pb[i]) & 0xffffff) != 0) {
+						idx[m] = i;
+						ia[m] = tile.id(pa[i]);
+						ib[m] = tile.id(pb[i]);
+						m++;
+					}
+				}
+				if (m == 0)
+					return;
+				float[] ucs = tile.coords;
+				metric.getColorSpace().fromRGB(ucs, 0, ucs, 0, tile.size);
+				metric.prepare(ucs, 0, ucs, 0, tile.size);
+				for (int j = 0; j < m; j++)
+					map[y * w + idx[j]] = metric.distance(ucs, 3 * ia[j], ucs, 3 * ib[j]);
+			});
+		} finally {
+			Instrumentation.end(op);
+		}
+		return new ImageDifference(w, h, map);
+	}
+
+	/**
+	 * @return the width of the images
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return the height of the images
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return a copy of the differences, row by row
+	 */
+	public float[] getMap() {
+		return map.clone();
+	}
+
+	/**
+	 * @param x the column
+	 * @param y the row
+	 * @return the difference at a pixel
+	 */
+	public float get(int x, int y) {
+		return map[y * width + x];
+	}
+
+	/**
+	 * @return the number of pixels that differ at all
+	 */
+	public int getChangedPixels() {
+		return changed;
+	}
+
+	/**
+	 * @return the mean difference over all pixels
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return the largest difference
+	 */
+	public float getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the 95th percentile of differences
+	 */
+	public float getP95() {
+		return getPercentile(0.95);
+	}
+
+	/**
+	 * Returns a percentile of the differences; the first call sorts the
+	 * differing pixels.
+	 * @param p the percentile in 0..1
+	 * @return the smallest difference that at least p of all pixels do not
+	 *         exceed
+	 */
+	public float getPercentile(double p) {
+		if (p < 0 || p > 1)
+			throw new IllegalArgumentException("percentile must be in 0..1");
+		if (map.length == 0)
+			return 0;
+		float[] s = sorted;
+		if (s == null) {
+			s = new float[changed];
+			int j = 0;
+			for (float d : map) {
+				if (d > 0)
+					s[j++] = d;
+			}
+			Arrays.parallelSort(s);
+			sorted = s;
+		}
+		int rank = Math.max(0, (int) Math.ceil(p * map.length) - 1);
+		int unchanged = map.length - changed;
+		return rank < unchanged ? 0 : s[rank - unchanged];
+	}
+
+	/**
+	 * Renders the differences as a greyscale image, black for none and white
+	 * for maxDifference or more.
+	 * @param maxDifference the difference rendered white
+	 * @return a {@link BufferedImage#TYPE_BYTE_GRAY} image
+	 */
+	public BufferedImage toGreyscale(float maxDifference) {
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		byte[] grey = new byte[map.length];
+		for (int i = 0; i < map.length; i++)
+			grey[i] = (byte) Math.round(Math.min(1, map[i] / maxDifference) * 255);
+		img.getRaster().setDataElements(0, 0, width, height, grey);
+		return img;
+	}
+
+	/**
+	 * Renders the differences as a heatmap.
+	 * @param colormap maps differences to colors, e.g. over the domain 0..10
+	 * @return a {@link BufferedImage#TYPE_INT_ARGB} image
+	 */
+	public BufferedImage toHeatmap(Colormap colormap) {
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] argb = new int[map.length];
+		colormap.apply(map, 0, argb, 0, map.length);
+		img.setRGB(0, 0, width, height, argb, 0, width);
+		return img;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "dE mean %.3f, p95 %.3f, max %.3f, %d of %d pixels changed",
+				mean, getP95(), max, changed, map.length);
+	}
+}
@@ -0,0 +1,391 @@
+package de.fhg.igd.pcolor.util;
+
+import java.awt.color.ColorSpace;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+
+/**
+ * Opt-in counters for color conversions and {@link ColorTools} operations.
+ * <p>
+ * When enabled, every {@link PColor#convert(PColor, ColorSpace)} is counted
+ * per source space, target space and {@link Path}, and operations count
+ * their calls, the time spent and the conversions they trigger on the
+ * calling thread. Latency histograms with power-of-two buckets can be
+ * enabled additionally. Counters are {@link LongAdder}s, so contention
+ * between threads is low.
+ * <p>
+ * Instrumentation is disabled unless the system property
+ * {@code de.fhg.igd.pcolor.instrumentation} is true or
+ * {@link #setEnabled(boolean)} is called. When disabled, instrumented code
+ * only checks a flag. The counters can be read through this class or
+ * through JMX, see {@link #registerMBean()}.
+ * <p>
+ * Independently of the counters, an {@link InstrumentationListener} can be
+ * installed to receive events about expensive operations such as boundary
+ * searches and bulk conversions, e.g. to record them with the JDK Flight
+ * Recorder. Without a listener, instrumented code only checks a field.
+ */
+public final class Instrumentation {
+
+	/**
+	 * The ways {@link PColor#convert(PColor, ColorSpace)} can take.
+	 */
+	public enum Path {
+		/**
+		 * the color is already in the target space
+		 */
+		NONE,
+		/**
+		 * a transposition between CAM spaces with equal viewing conditions
+		 */
+		TRANSPOSE,
+		/**
+		 * a round trip over CIEXYZ
+		 */
+		XYZ
+	}
+
+	/**
+	 * The name of the MBean registered by {@link #registerMBean()}.
+	 */
+	public static final String MBEAN_NAME = "de.fhg.igd.pcolor:type=Instrumentation";
+
+	/**
+	 * the number of latency histogram buckets; bucket i counts latencies
+	 * below 2^i ns
+	 */
+	private static final int BUCKETS = 40;
+
+	private static volatile boolean enabled = Boolean.getBoolean("de.fhg.igd.pcolor.instrumentation");
+	private static volatile boolean histograms;
+	private static volatile InstrumentationListener listener = loadListener();
+
+	private static final Map<ColorSpace, Map<ColorSpace, LongAdder[]>> conversions = new ConcurrentHashMap<>();
+	private static final Map<String, Stats> operations = new ConcurrentHashMap<>();
+	private static final ThreadLocal<Operation> current = new ThreadLocal<>();
+
+	private Instrumentation() {
+		// static only
+	}
+
+	/**
+	 * @return whether counters are updated
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled whether to update counters
+	 */
+	public static void setEnabled(boolean enabled) {
+		Instrumentation.enabled = enabled;
+	}
+
+	/**
+	 * @return whether operations record latency histograms
+	 */
+	public static boolean isHistograms() {
+		return histograms;
+	}
+
+	/**
+	 * @param histograms whether operations record latency histograms
+	 */
+	public static void setHistograms(boolean histograms) {
+		Instrumentation.histograms = histograms;
+	}
+
+	/**
+	 * @return the installed listener, or null
+	 */
+	public static InstrumentationListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Installs a listener, replacing the current one. Initially, the first
+	 * listener provided through {@link ServiceLoader} is installed.
+	 * @param listener the listener, or null to remove it
+	 */
+	public static void setListener(InstrumentationListener listener) {
+		Instrumentation.listener = listener;
+	}
+
+	/**
+	 * Counts a conversion. Only call this if {@link #isEnabled()}.
+	 * @param source the source space
+	 * @param target the target space
+	 * @param path the path taken
+	 */
+	public static void conversion(ColorSpace source, ColorSpace target, Path path) {
+		conversions.computeIfAbsent(source, s -> new ConcurrentHashMap<>())
+				.computeIfAbsent(target, t -> newAdders(Path.values().length))[path.ordinal()].increment();
+		Operation op = current.get();
+		if (op != null)
+			op.conversions++;
+	}
+
+	/**
+	 * Starts timing an operation on the calling thread. Operations may nest;
+	 * conversions count towards all operations running on the calling
+	 * thread. Conversions done on other threads, e.g. by parallel
+	 * operations, are not attributed.
+	 * @param name the operation's name
+	 * @return a token for {@link #end(Operation)}, null if disabled
+	 */
+	public static Operation begin(String name) {
+		if (!enabled)
+			return null;
+		Operation op = new Operation(name, current.get());
+		current.set(op);
+		return op;
+	}
+
+	/**
+	 * Ends an operation and records it.
+	 * @param op the token returned by {@link #begin(String)}, may be null
+	 */
+	public static void end(Operation op) {
+		if (op == null)
+			return;
+		long nanos = System.nanoTime() - op.start;
+		if (op.outer != null) {
+			op.outer.conversions += op.conversions;
+			current.set(op.outer);
+		} else
+			current.remove();
+		Stats stats = operations.computeIfAbsent(op.name, n -> new Stats());
+		stats.calls.increment();
+		stats.nanos.add(nanos);
+		stats.conversions.add(op.conversions);
+		if (histograms)
+			stats.histogram[Math.min(64 - Long.numberOfLeadingZeros(nanos), BUCKETS - 1)].increment();
+	}
+
+	/**
+	 * @return the number of conversions per path, keyed "source -&gt; target (path)"
+	 */
+	public static Map<String, Long> getConversionCounts() {
+		Map<String, Long> res = new TreeMap<>();
+		for (Map.Entry<ColorSpace, Map<ColorSpace, LongAdder[]>> s : conversions.entrySet()) {
+			for (Map.Entry<ColorSpace, LongAdder[]> t : s.getValue().entrySet()) {
+				LongAdder[] adders = t.getValue();
+				for (Path path : Path.values()) {
+					long n = adders[path.ordinal()].sum();
+					if (n > 0)
+						res.merge(describe(s.getKey()) + " -> " + describe(t.getKey()) + " (" + path + ")", n, Long::sum);
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @return the number of conversions per path, regardless of spaces
+	 */
+	public static Map<Path, Long> getPathCounts() {
+		Map<Path, Long> res = new TreeMap<>();
+		for (Path path : Path.values())
+			res.put(path, 0L);
+		for (Map<ColorSpace, LongAdder[]> targets : conversions.values())
+			for (LongAdder[] adders : targets.values())
+				for (Path path : Path.values())
+					res.merge(path, adders[path.ordinal()].sum(), Long::sum);
+		return res;
+	}
+
+	/**
+	 * @return the number of calls per operation
+	 */
+	public static Map<String, Long> getOperationCalls() {
+		Map<String, Long> res = new TreeMap<>();
+		operations.forEach((name, stats) -> res.put(name, stats.calls.sum()));
+		return res;
+	}
+
+	/**
+	 * @return the total time spent per operation in nanoseconds
+	 */
+	public static Map<String, Long> getOperationNanos() {
+		Map<String, Long> res = new TreeMap<>();
+		operations.forEach((name, stats) -> res.put(name, stats.nanos.sum()));
+		return res;
+	}
+
+	/**
+	 * @return the number of conversions triggered per operation
+	 */
+	public static Map<String, Long> getOperationConversions() {
+		Map<String, Long> res = new TreeMap<>();
+		operations.forEach((name, stats) -> res.put(name, stats.conversions.sum()));
+		return res;
+	}
+
+	/**
+	 * @param operation the operation's name
+	 * @return the latency histogram of an operation; element i counts calls
+	 *         that took less than 2^i ns (and at least 2^(i-1) ns)
+	 */
+	public static long[] getLatencyHistogram(String operation) {
+		long[] res = new long[BUCKETS];
+		Stats stats = operations.get(operation);
+		if (stats != null)
+			for (int i = 0; i < BUCKETS; i++)
+				res[i] = stats.histogram[i].sum();
+		return res;
+	}
+
+	/**
+	 * Clears all counters.
+	 */
+	public static void reset() {
+		conversions.clear();
+		operations.clear();
+	}
+
+	/**
+	 * Registers an {@link InstrumentationMXBean} with the platform MBean
+	 * server under {@link #MBEAN_NAME}, unless it already is.
+	 * @return the name of the MBean
+	 * @throws JMException if registration fails
+	 */
+	public static ObjectName registerMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(MBEAN_NAME);
+		if (!server.isRegistered(name))
+			server.registerMBean(new MXBean(), name);
+		return name;
+	}
+
+	/**
+	 * Removes the MBean registered by {@link #registerMBean()}, if any.
+	 * @throws JMException if unregistration fails
+	 */
+	public static void unregisterMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(MBEAN_NAME);
+		if (server.isRegistered(name))
+			server.unregisterMBean(name);
+	}
+
+	/**
+	 * @param space a color space
+	 * @return a short name of the space, including the correlates of CAM
+	 *         spaces
+	 */
+	public static String describe(ColorSpace space) {
+		StringBuilder sb = new StringBuilder(space.getClass().getSimpleName());
+		if (space instanceof CS_CAMLch) {
+			sb.append('[');
+			sb.append(((CS_CAMLch) space).getCorrelateConfig()).append(']');
+		}
+		return sb.toString();
+	}
+
+	private static InstrumentationListener loadListener() {
+		try {
+			Iterator<InstrumentationListener> it = ServiceLoader.load(InstrumentationListener.class,
+					Instrumentation.class.getClassLoader()).iterator();
+			return it.hasNext() ? it.next() : null;
+		} catch (ServiceConfigurationError | LinkageError e) {
+			// e.g. a provider needing a newer runtime
+			return null;
+		}
+	}
+
+	private static LongAdder[] newAdders(int n) {
+		LongAdder[] adders = new LongAdder[n];
+		for (int i = 0; i < n; i++)
+			adders[i] = new LongAdder();
+		return adders;
+	}
+
+	/**
+	 * A running operation, see {@link Instrumentation#begin(String)}.
+	 */
+	public static final class Operation {
+		private final String name;
+		private final Operation outer;
+		private final long start = System.nanoTime();
+		private long conversions;
+
+		private Operation(String name, Operation outer) {
+			this.name = name;
+			this.outer = outer;
+		}
+	}
+
+	private static final class Stats {
+		final LongAdder calls = new LongAdder();
+		final LongAdder nanos = new LongAdder();
+		final LongAdder conversions = new LongAdder();
+		final LongAdder[] histogram = newAdders(BUCKETS);
+	}
+
+	private static final class MXBean implements InstrumentationMXBean {
+
+		@Override
+		public boolean isEnabled() {
+			return Instrumentation.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			Instrumentation.setEnabled(enabled);
+		}
+
+		@Override
+		public boolean isHistograms() {
+			return Instrumentation.isHistograms();
+		}
+
+		@Override
+		public void setHistograms(boolean histograms) {
+			Instrumentation.setHistograms(histograms);
+		}
+
+		@Override
+		public Map<String, Long> getConversionCounts() {
+			return Instrumentation.getConversionCounts();
+		}
+
+		@Override
+		public Map<String, Long> getOperationCalls() {
+			return Instrumentation.getOperationCalls();
+		}
+
+		@Override
+		public Map<String, Long> getOperationNanos() {
+			return Instrumentation.getOperationNanos();
+		}
+
+		@Override
+		public Map<String, Long> getOperationConversions() {
+			return Instrumentation.getOperationConversions();
+		}
+
+		@Override
+		public long[] getLatencyHistogram(String operation) {
+			return Instrumentation.getLatencyHistogram(operation);
+		}
+
+		@Override
+		public void reset() {
+			Instrumentation.reset();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package de.fhg.igd.pcolor.util;
+
+import java.awt.color.ColorSpace;
+
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+
+/**
+ * Receives events about expensive color operations, e.g. to forward them to
+ * a profiler or the JDK Flight Recorder. Listeners are installed with
+ * {@link Instrumentation#setListener(InstrumentationListener)} or found
+ * through {@link java.util.ServiceLoader} when {@link Instrumentation} is
+ * initialized.
+ * <p>
+ * Before an operation starts, {@link #begin(Kind)} is called; the token it
+ * returns is passed back when the operation is reported after it completed,
+ * e.g. to time an event that began with the operation. Operations that fail
+ * are not reported. Both calls happen on the thread performing the
+ * operation, so listeners must be thread-safe and should return quickly.
+ * All methods do nothing by default.
+ */
+public interface InstrumentationListener {
+
+	/**
+	 * The operations reported to listeners.
+	 */
+	enum Kind {
+		/**
+		 * see {@link InstrumentationListener#boundarySearch(Object, int, int, float, long)}
+		 */
+		BOUNDARY_SEARCH,
+		/**
+		 * see {@link InstrumentationListener#paletteOptimization(Object, int, int, float, long)}
+		 */
+		PALETTE_OPTIMIZATION,
+		/**
+		 * see {@link InstrumentationListener#viewingConditionsCreated(Object, ViewingConditions, boolean, long)}
+		 */
+		VIEWING_CONDITIONS,
+		/**
+		 * see {@link InstrumentationListener#bulkConversion(Object, ColorSpace, ColorSpace, int, long)}
+		 */
+		BULK_CONVERSION
+	}
+
+	/**
+	 * Called before an operation starts.
+	 * @param kind the kind of operation
+	 * @return a token passed to the method reporting the operation, may be
+	 *         null
+	 */
+	default Object begin(Kind kind) {
+		return null;
+	}
+
+	/**
+	 * Reports a binary search by
+	 * {@link ColorTools#determineBoundaryColor(de.fhg.igd.pcolor.PColor, int, float, float, float, Predicate, ViewingConditions)}.
+	 * @param token the token returned by {@link #begin(Kind)}
+	 * @param channel the channel searched
+	 * @param iterations the number of bisection steps
+	 * @param error the distance between the result and the last color tested
+	 * @param nanos the time taken
+	 */
+	default void boundarySearch(Object token, int channel, int iterations, float error, long nanos) {
+		// nothing
+	}
+
+	/**
+	 * Reports a palette optimization by
+	 * {@link ColorTools#optimizePalette(de.fhg.igd.pcolor.PColor[], int, float, float, float, Predicate)}
+	 * or its parallel variant.
+	 * @param token the token returned by {@link #begin(Kind)}
+	 * @param size the number of colors in the palette
+	 * @param channel the channel optimized
+	 * @param commonMax the common maximum found
+	 * @param nanos the time taken
+	 */
+	default void paletteOptimization(Object token, int size, int channel, float commonMax, long nanos) {
+		// nothing
+	}
+
+	/**
+	 * Reports the creation of viewing conditions.
+	 * @param token the token returned by {@link #begin(Kind)}
+	 * @param vc the viewing conditions created
+	 * @param fullyAdapted whether full adaption was assumed
+	 * @param nanos the time taken
+	 */
+	default void viewingConditionsCreated(Object token, ViewingConditions vc, boolean fullyAdapted, long nanos) {
+		// nothing
+	}
+
+	/**
+	 * Reports a bulk conversion of flat arrays of triplets.
+	 * @param token the token returned by {@link #begin(Kind)}
+	 * @param source the source space
+	 * @param target the target space
+	 * @param count the number of colors converted
+	 * @param nanos the time taken
+	 */
+	default void bulkConversion(Object token, ColorSpace source, ColorSpace target, int count, long nanos) {
+		// nothing
+	}
+}
@@ -0,0 +1,61 @@
+package de.fhg.igd.pcolor.util;
+
+import java.util.Map;
+
+/**
+ * The JMX view of {@link Instrumentation}, see
+ * {@link Instrumentation#registerMBean()}.
+ */
+public interface InstrumentationMXBean {
+
+	/**
+	 * @return whether counters are updated
+	 */
+	boolean isEnabled();
+
+	/**
+	 * @param enabled whether to update counters
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * @return whether operations record latency histograms
+	 */
+	boolean isHistograms();
+
+	/**
+	 * @param histograms whether operations record latency histograms
+	 */
+	void setHistograms(boolean histograms);
+
+	/**
+	 * @return the number of conversions per source, target and path
+	 */
+	Map<String, Long> getConversionCounts();
+
+	/**
+	 * @return the number of calls per operation
+	 */
+	Map<String, Long> getOperationCalls();
+
+	/**
+	 * @return the total time spent per operation in nanoseconds
+	 */
+	Map<String, Long> getOperationNanos();
+
+	/**
+	 * @return the number of conversions triggered per operation
+	 */
+	Map<String, Long> getOperationConversions();
+
+	/**
+	 * @param operation the operation's name
+	 * @return the latency histogram of an operation
+	 */
+	long[] getLatencyHistogram(String operation);
+
+	/**
+	 * Clears all counters.
+	 */
+	void reset();
+}
@@ -119,8 +119,10 @@ public class MathTools {
 		assert a.length == a2.length;
 		double acc = 0;
 		
-        for (int i=0; i<a.length; i++)
-            acc += Math.pow(a[i] - a2[i], 2);
+        for (int i=0; i<a.length; i++) {
+            double d = a[i] - a2[i];
+            acc += d * d;
+        }
 
         return (float) Math.sqrt(acc);
     }
@@ -0,0 +1,203 @@
+package de.fhg.igd.pcolor.util;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.sRGB;
+
+/**
+ * Generates categorical palettes by farthest-point sampling: each new color
+ * is the candidate whose distance to all occupied colors is largest.
+ * <p>
+ * The generator keeps a pool of candidates in prepared coordinates of a
+ * {@link DistanceMetric}, along with each candidate's distance to the nearest
+ * occupied color. Occupying a color only updates these running minima, in
+ * parallel, so picking n colors costs O(n * candidates) distance evaluations
+ * and no conversions. By default, the candidates form a regular grid over the
+ * sRGB cube, so every candidate is inside sRGB and no rejection sampling is
+ * needed.
+ * <p>
+ * Instances are stateful and not thread-safe.
+ */
+public class PaletteGenerator {
+
+	/**
+	 * the number of candidates updated per parallel work unit
+	 */
+	private static final int CHUNK = 2048;
+
+	private final DistanceMetric metric;
+
+	/**
+	 * the candidates as given, or null if candidates are sRGB grid points
+	 */
+	private final PColor[] candidates;
+
+	/**
+	 * the sRGB grid points, or null if candidates are given
+	 */
+	private final float[] rgb;
+
+	/**
+	 * the prepared candidates
+	 */
+	private final float[] prepared;
+
+	/**
+	 * per candidate, the distance to the nearest occupied color
+	 */
+	private final float[] minDist;
+
+	/**
+	 * the candidate with the largest distance to the occupied colors
+	 */
+	private int best;
+
+	/**
+	 * Creates a generator using a regular grid over the sRGB cube as
+	 * candidates.
+	 * @param metric the metric to maximise distances in
+	 * @param steps the number of grid steps per channel, at least 2;
+	 *        e.g. 24 results in 13824 candidates
+	 */
+	public PaletteGenerator(DistanceMetric metric, int steps) {
+		if (steps < 2)
+			throw new IllegalArgumentException("at least two steps per channel are needed");
+		this.metric = metric;
+		this.candidates = null;
+		this.rgb = new float[steps * steps * steps * 3];
+		int k = 0;
+		for (int r = 0; r < steps; r++) {
+			for (int g = 0; g < steps; g++) {
+				for (int b = 0; b < steps; b++) {
+					rgb[k++] = r / (steps - 1f);
+					rgb[k++] = g / (steps - 1f);
+					rgb[k++] = b / (steps - 1f);
+				}
+			}
+		}
+		this.prepared = prepareRGB(metric, rgb);
+		this.minDist = new float[rgb.length / 3];
+		reset();
+	}
+
+	/**
+	 * Creates a generator choosing from the given candidates.
+	 * @param metric the metric to maximise distances in
+	 * @param candidates the colors to choose from
+	 */
+	public PaletteGenerator(DistanceMetric metric, PColor[] candidates) {
+		if (candidates.length == 0)
+			throw new IllegalArgumentException("no candidates given");
+		this.metric = metric;
+		this.candidates = candidates.clone();
+		this.rgb = null;
+		this.prepared = metric.prepare(candidates);
+		this.minDist = new float[candidates.length];
+		reset();
+	}
+
+	/**
+	 * convert in parallel chunks; the grid may be large
+	 */
+	private static float[] prepareRGB(DistanceMetric metric, float[] rgb) {
+		int n = rgb.length / 3;
+		float[] res = new float[rgb.length];
+		IntStream.range(0, (n + CHUNK - 1) / CHUNK).parallel().forEach(chunk -> {
+			int from = chunk * CHUNK;
+			int count = Math.min(CHUNK, n - from);
+			metric.getColorSpace().fromRGB(rgb, 3 * from, res, 3 * from, count);
+			metric.prepare(res, 3 * from, res, 3 * from, count);
+		});
+		return res;
+	}
+
+	/**
+	 * Forget all occupied colors.
+	 */
+	public void reset() {
+		Arrays.fill(minDist, Float.POSITIVE_INFINITY);
+		best = 0;
+	}
+
+	/**
+	 * @return the number of candidates
+	 */
+	public int getCandidateCount() {
+		return minDist.length;
+	}
+
+	/**
+	 * @return the metric distances are measured in
+	 */
+	public DistanceMetric getMetric() {
+		return metric;
+	}
+
+	/**
+	 * Marks a color as occupied, e.g. the background or colors of an existing
+	 * palette. Candidates close to it become less likely to be picked.
+	 * @param color the color
+	 */
+	public void occupy(PColor color) {
+		occupy(metric.prepare(color), 0);
+	}
+
+	/**
+	 * Picks the candidate farthest from all occupied colors and occupies it.
+	 * @return the picked color
+	 */
+	public PColor next() {
+		int pick = best;
+		occupy(prepared, 3 * pick);
+		return candidate(pick);
+	}
+
+	/**
+	 * Picks n colors, see {@link #next()}.
+	 * @param n the number of colors
+	 * @return the picked colors, in order of picking
+	 */
+	public PColor[] next(int n) {
+		PColor[] res = new PColor[n];
+		for (int i = 0; i < n; i++)
+			res[i] = next();
+		return res;
+	}
+
+	/**
+	 * @return the distance of the candidate {@link #next()} will pick to the
+	 *         nearest occupied color; infinite if nothing is occupied
+	 */
+	public float getNextDistance() {
+		return minDist[best];
+	}
+
+	private PColor candidate(int i) {
+		if (candidates != null)
+			return candidates[i];
+		return new sRGB(rgb[3 * i], rgb[3 * i + 1], rgb[3 * i + 2]);
+	}
+
+	/**
+	 * update the running minima against the given prepared triplet and
+	 * determine the new best candidate in the same pass
+	 */
+	private void occupy(float[] ref, int refOff) {
+		int n = minDist.length;
+		best = IntStream.range(0, (n + CHUNK - 1) / CHUNK).parallel().map(chunk -> {
+			int from = chunk * CHUNK;
+			int to = Math.min(from + CHUNK, n);
+			int localBest = from;
+			for (int i = from; i < to; i++) {
+				float d = metric.distance(ref, refOff, prepared, 3 * i);
+				if (d < minDist[i])
+					minDist[i] = d;
+				if (minDist[i] > minDist[localBest])
+					localBest = i;
+			}
+			return localBest;
+		}).reduce((a, b) -> minDist[b] > minDist[a] ? b : a).getAsInt();
+	}
+}
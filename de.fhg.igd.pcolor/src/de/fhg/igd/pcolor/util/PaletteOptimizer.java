@@ -0,0 +1,169 @@
+package de.fhg.igd.pcolor.util;
+
+import java.awt.color.ColorSpace;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.CAMLab;
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+
+/**
+ * A parallel version of {@link ColorTools#optimizePalette(PColor[], int, float, float, float, Predicate)}
+ * which keeps the boundaries it determines.
+ * <p>
+ * The boundary of each color is determined concurrently and the results are
+ * reduced to the common maximum. Colors that already satisfy the predicate at
+ * the best common value found so far are skipped. Boundaries are cached by
+ * the color's other channels, so optimizing palettes which share colors, or
+ * repeated (J, h) inputs within a palette, mostly reuses earlier searches.
+ * Keep an instance around to share the cache between palettes.
+ * <p>
+ * For {@link ColorPredicates#is_sRGB} on the chroma channel of CAMLch
+ * colors, boundaries are found with a {@link BoundarySolver}, in which case
+ * e is the precision on the channel rather than a distance.
+ * <p>
+ * Instances are thread-safe as long as the predicate is.
+ * @param <C> the color type
+ */
+public class PaletteOptimizer<C extends PColor> {
+
+	private final int channel;
+	private final float lower, upper, e;
+	private final Predicate<? super C> predicate;
+	private final Map<Key, Float> cache = new ConcurrentHashMap<>();
+	private final ThreadLocal<BoundarySolver> solver = new ThreadLocal<>();
+
+	/**
+	 * @param channel the channel to optimize
+	 * @param lower the lower bound for which all colors must satisfy the predicate
+	 * @param upper the upper bound, which may satisfy the predicate for most colors
+	 * @param e the CAM02-UCS distance below which a boundary search stops;
+	 *        for {@link ColorPredicates#is_sRGB} on the chroma of CAMLch
+	 *        colors, the precision of the boundary chroma instead
+	 * @param predicate a predicate defining a color space whose boundary is tested
+	 * @see ColorTools#optimizePalette(PColor[], int, float, float, float, Predicate)
+	 */
+	public PaletteOptimizer(int channel, float lower, float upper, float e, Predicate<? super C> predicate) {
+		this.channel = channel;
+		this.lower = lower;
+		this.upper = upper;
+		this.e = e;
+		this.predicate = predicate;
+	}
+
+	/**
+	 * Optimize the channel of a palette such that all colours satisfy the
+	 * predicate while sharing the same value for this channel.
+	 * @param palette the palette to optimize. Will not be modified. The values in
+	 * 		  the optimized channel are ignored.
+	 * @return new new array of optimized colors
+	 */
+	public C[] optimize(C[] palette) {
+		InstrumentationListener listener = Instrumentation.getListener();
+		Object token = listener != null ? listener.begin(InstrumentationListener.Kind.PALETTE_OPTIMIZATION) : null;
+		long start = listener != null ? System.nanoTime() : 0;
+		AtomicInteger common = new AtomicInteger(Float.floatToIntBits(upper));
+		IntStream.range(0, palette.length).parallel().forEach(i -> {
+			C color = palette[i];
+			// as in the sequential version, better check than be wrong
+			if (!predicate.apply(ColorTools.setChannel(color, channel, lower)))
+				throw new IllegalArgumentException("lower bound does not satisfy predicate for " + color.toString());
+			float current = Float.intBitsToFloat(common.get());
+			if (predicate.apply(ColorTools.setChannel(color, channel, current)))
+				return;
+			float b = boundary(color);
+			common.accumulateAndGet(Float.floatToIntBits(b), (x, y) ->
+					closerToLower(Float.intBitsToFloat(y), Float.intBitsToFloat(x)) ? y : x);
+		});
+		float max = Float.intBitsToFloat(common.get());
+		if (listener != null)
+			listener.paletteOptimization(token, palette.length, channel, max, System.nanoTime() - start);
+		return ColorTools.setChannel(palette.clone(), channel, max);
+	}
+
+	/**
+	 * Determines the boundary of a single color, using the cache. The search
+	 * runs outside the cache so that it does not block other threads; threads
+	 * that miss the same color at once may search twice, the first result is
+	 * kept.
+	 * @param color the color; the value in the optimized channel is ignored
+	 * @return the value of the channel closest to upper that satisfies the predicate
+	 */
+	public float boundary(C color) {
+		Key key = new Key(color, channel);
+		Float b = cache.get(key);
+		if (b == null) {
+			b = search(color);
+			Float prev = cache.putIfAbsent(key, b);
+			if (prev != null)
+				b = prev;
+		}
+		return b;
+	}
+
+	/**
+	 * @return the number of cached boundaries
+	 */
+	public int getCacheSize() {
+		return cache.size();
+	}
+
+	/**
+	 * Forget all cached boundaries.
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+
+	private boolean closerToLower(float a, float b) {
+		return lower <= upper ? a < b : a > b;
+	}
+
+	private float search(C color) {
+		if (predicate.apply(ColorTools.setChannel(color, channel, upper)))
+			return upper;
+		if ((Object) predicate == ColorPredicates.is_sRGB && channel == CAMLch.c && lower <= upper
+				&& color instanceof CAMLch && !(color instanceof CAMLab)) {
+			CAMLch col = (CAMLch) color;
+			BoundarySolver s = solver.get();
+			if (s == null || !s.getColorSpace().equals(col.getColorSpace())) {
+				s = new BoundarySolver(col.getColorSpace());
+				solver.set(s);
+			}
+			return s.maxChroma(col.get(CAMLch.L), col.get(CAMLch.h), lower, upper, e);
+		}
+		C start = ColorTools.setChannel(color, channel, lower);
+		return ColorTools.determineBoundaryColor(start, channel, lower, upper, e, predicate).get(channel);
+	}
+
+	/**
+	 * identifies a color regardless of the optimized channel
+	 */
+	private static final class Key {
+		private final ColorSpace space;
+		private final float[] comp;
+
+		Key(PColor color, int channel) {
+			this.space = color.getColorSpace();
+			this.comp = color.getRawComponents();
+			comp[channel] = 0;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * space.hashCode() + Arrays.hashCode(comp);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return space.equals(other.space) && Arrays.equals(comp, other.comp);
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package de.fhg.igd.pcolor.util;
+
+import java.awt.Paint;
+import java.awt.PaintContext;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.MultipleGradientPaint.CycleMethod;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.util.Colormap.Interpolation;
+
+/**
+ * A linear or radial gradient {@link Paint} that interpolates in CIECAM02
+ * JCh, Jab or CAM02-UCS instead of sRGB.
+ * <p>
+ * The gradient is rendered into a one-dimensional ramp of ARGB colors with
+ * a {@link RampRenderer}, sized to the gradient's length in device space.
+ * Ramps are cached per length, rounded up to a power of two, so repeated
+ * fills under the same (or a similar) transform only compute each pixel's
+ * position along the gradient and index the ramp, as
+ * {@link java.awt.GradientPaint} does.
+ * <p>
+ * Paints are immutable and may be shared between threads.
+ */
+public class PerceptualPaint implements Paint {
+
+	/**
+	 * bounds on the number of ramp entries
+	 */
+	private static final int MIN_RAMP = 16, MAX_RAMP = 4096;
+
+	private final boolean radial;
+	private final Point2D start, end;
+	private final float radius;
+	private final CycleMethod cycle;
+	private final RampRenderer renderer;
+	private final int transparency;
+	private final Map<Integer, int[]> ramps = new ConcurrentHashMap<>();
+
+	private PerceptualPaint(boolean radial, Point2D start, Point2D end, float radius, CycleMethod cycle,
+			CS_CAMLch space, Interpolation interpolation, PColor[] colors, float[] positions) {
+		this.radial = radial;
+		this.start = (Point2D) start.clone();
+		this.end = end == null ? null : (Point2D) end.clone();
+		this.radius = radius;
+		this.cycle = cycle;
+		this.renderer = new RampRenderer(space, interpolation, colors, positions, true);
+		boolean opaque = true;
+		for (PColor color : colors)
+			opaque &= color.getAlpha() >= 1;
+		this.transparency = opaque ? Transparency.OPAQUE : Transparency.TRANSLUCENT;
+	}
+
+	/**
+	 * Creates a linear gradient blending two colors as
+	 * {@link CAMLch#blend(CAMLch, CAMLch, float)} does. Beyond the end points,
+	 * the end colors are used.
+	 * @param start the user space point of the first color
+	 * @param end the user space point of the second color
+	 * @param from the first color
+	 * @param to the second color
+	 * @return the paint
+	 */
+	public static PerceptualPaint linear(Point2D start, Point2D end, CAMLch from, CAMLch to) {
+		return linear(start, end, CycleMethod.NO_CYCLE, from.getColorSpace(), Interpolation.JCH,
+				new PColor[] { from, to }, null);
+	}
+
+	/**
+	 * Creates a linear gradient.
+	 * @param start the user space point where the gradient starts
+	 * @param end the user space point where the gradient ends
+	 * @param cycle how to continue the gradient beyond its end points
+	 * @param space the CAM space to interpolate in
+	 * @param interpolation the coordinates to interpolate in
+	 * @param colors the colors along the gradient, in any color space
+	 * @param positions ascending positions of the colors in 0..1, or null
+	 *        to space them equally
+	 * @return the paint
+	 */
+	public static PerceptualPaint linear(Point2D start, Point2D end, CycleMethod cycle, CS_CAMLch space,
+			Interpolation interpolation, PColor[] colors, float[] positions) {
+		if (start.equals(end))
+			throw new IllegalArgumentException("start and end points must differ");
+		return new PerceptualPaint(false, start, end, 0, cycle, space, interpolation, colors, positions);
+	}
+
+	/**
+	 * Creates a radial gradient.
+	 * @param center the user space center of the gradient
+	 * @param radius the user space radius where the gradient ends
+	 * @param cycle how to continue the gradient beyond its radius
+	 * @param space the CAM space to interpolate in
+	 * @param interpolation the coordinates to interpolate in
+	 * @param colors the colors from the center outwards, in any color space
+	 * @param positions ascending positions of the colors in 0..1, or null
+	 *        to space them equally
+	 * @return the paint
+	 */
+	public static PerceptualPaint radial(Point2D center, float radius, CycleMethod cycle, CS_CAMLch space,
+			Interpolation interpolation, PColor[] colors, float[] positions) {
+		if (!(radius > 0))
+			throw new IllegalArgumentException("radius must be positive");
+		return new PerceptualPaint(true, center, null, radius, cycle, space, interpolation, colors, positions);
+	}
+
+	/**
+	 * @return the cycle method
+	 */
+	public CycleMethod getCycleMethod() {
+		return cycle;
+	}
+
+	@Override
+	public int getTransparency() {
+		return transparency;
+	}
+
+	@Override
+	public PaintContext createContext(ColorModel cm, Rectangle deviceBounds, Rectangle2D userBounds,
+			AffineTransform xform, RenderingHints hints) {
+		AffineTransform inverse;
+		try {
+			inverse = xform.createInverse();
+		} catch (NoninvertibleTransformException ex) {
+			// nothing visible is painted
+			inverse = new AffineTransform(0, 0, 0, 0, 0, 0);
+		}
+		double length;
+		if (radial) {
+			length = radius * Math.sqrt(Math.abs(xform.getDeterminant()));
+		} else {
+			Point2D a = xform.transform(start, null);
+			Point2D b = xform.transform(end, null);
+			length = a.distance(b);
+		}
+		return new Context(ramp(length), inverse);
+	}
+
+	/**
+	 * @return the cached ramp for a gradient of the given device space length
+	 */
+	private int[] ramp(double length) {
+		int size = MIN_RAMP;
+		while (size < length && size < MAX_RAMP)
+			size *= 2;
+		return ramps.computeIfAbsent(size, n -> {
+			int[] argb = new int[n];
+			synchronized (renderer) {
+				renderer.render(argb, 0, n);
+			}
+			return argb;
+		});
+	}
+
+	private final class Context implements PaintContext {
+
+		private final int[] ramp;
+		private final AffineTransform inverse;
+		private final ColorModel model;
+		private WritableRaster raster;
+
+		Context(int[] ramp, AffineTransform inverse) {
+			this.ramp = ramp;
+			this.inverse = inverse;
+			this.model = transparency == Transparency.OPAQUE
+					? new DirectColorModel(24, 0xff0000, 0xff00, 0xff)
+					: ColorModel.getRGBdefault();
+		}
+
+		@Override
+		public void dispose() {
+			raster = null;
+		}
+
+		@Override
+		public ColorModel getColorModel() {
+			return model;
+		}
+
+		@Override
+		public Raster getRaster(int x, int y, int w, int h) {
+			if (raster == null || raster.getWidth() < w || raster.getHeight() < h)
+				raster = model.createCompatibleWritableRaster(w, h);
+			int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+			int scan = raster.getWidth();
+			// user space steps per device pixel
+			double dxx = inverse.getScaleX(), dyx = inverse.getShearY();
+			double dxy = inverse.getShearX(), dyy = inverse.getScaleY();
+			Point2D.Double p = new Point2D.Double(x + 0.5, y + 0.5);
+			inverse.transform(p, p);
+			if (radial) {
+				double cx = start.getX(), cy = start.getY();
+				for (int j = 0; j < h; j++) {
+					double ux = p.x + dxy * j - cx, uy = p.y + dyy * j - cy;
+					for (int i = 0; i < w; i++) {
+						pixels[j * scan + i] = color(Math.hypot(ux, uy) / radius);
+						ux += dxx;
+						uy += dyx;
+					}
+				}
+			} else {
+				double gx = end.getX() - start.getX(), gy = end.getY() - start.getY();
+				double norm = 1 / (gx * gx + gy * gy);
+				double t0 = ((p.x - start.getX()) * gx + (p.y - start.getY()) * gy) * norm;
+				double dtx = (dxx * gx + dyx * gy) * norm;
+				double dty = (dxy * gx + dyy * gy) * norm;
+				for (int j = 0; j < h; j++) {
+					double t = t0 + dty * j;
+					for (int i = 0; i < w; i++) {
+						pixels[j * scan + i] = color(t);
+						t += dtx;
+					}
+				}
+			}
+			return raster;
+		}
+
+		/**
+		 * looks up the color for a position along the gradient
+		 */
+		private int color(double t) {
+			switch (cycle) {
+			case REPEAT:
+				t -= Math.floor(t);
+				break;
+			case REFLECT:
+				t = Math.abs(t) % 2;
+				if (t > 1)
+					t = 2 - t;
+				break;
+			default:
+				break;
+			}
+			int idx = (int) (t * (ramp.length - 1) + 0.5);
+			return ramp[idx < 0 ? 0 : idx >= ramp.length ? ramp.length - 1 : idx];
+		}
+	}
+}
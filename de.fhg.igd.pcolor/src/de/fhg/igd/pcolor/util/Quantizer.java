@@ -0,0 +1,341 @@
+package de.fhg.igd.pcolor.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import de.fhg.igd.pcolor.colorspace.ViewingConditions;
+
+/**
+ * Maps the pixels of images to a fixed palette, choosing the palette color
+ * closest in CAM02-UCS, i.e. by the distance of
+ * {@link ColorTools#distance(de.fhg.igd.pcolor.PColor, de.fhg.igd.pcolor.PColor, ViewingConditions)}.
+ * A palette can be given or extracted from an image with
+ * {@link DominantColors}, see {@link #fromImage(BufferedImage, int, ViewingConditions)}.
+ * <p>
+ * Nearest palette colors are found with a {@link ColorIndex}. Without
+ * dithering, pixels are mapped in parallel blocks; each block
+ * memoises the palette index of the pixel values it met in a small
+ * direct-mapped cache, so runs of equal pixels are converted to CAM02-UCS
+ * once. Error diffusion, see {@link Dithering}, is sequential by nature.
+ * <p>
+ * Alpha is ignored. Quantizers are immutable and may be shared between
+ * threads.
+ */
+public class Quantizer {
+
+	/**
+	 * How the quantization error of a pixel is passed on to its neighbours.
+	 */
+	public enum Dithering {
+		/**
+		 * no error diffusion, each pixel maps to its nearest palette color
+		 */
+		NONE,
+		/**
+		 * Floyd-Steinberg error diffusion in linear sRGB, which preserves the
+		 * average light emitted by an area
+		 */
+		LINEAR,
+		/**
+		 * Floyd-Steinberg error diffusion in CAM02-UCS, which preserves the
+		 * average perceived color of an area
+		 */
+		PERCEPTUAL
+	}
+
+	/**
+	 * the number of pixels per parallel block
+	 */
+	private static final int BLOCK = 16384;
+
+	/**
+	 * the number of entries of a block's cache, a power of two
+	 */
+	private static final int CACHE = 4096;
+
+	/**
+	 * linear sRGB values of 8 bit levels
+	 */
+	private static final float[] LINEAR = new float[256];
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			double c = i / 255.0;
+			LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+		}
+	}
+
+	private final ViewingConditions vc;
+	private final DistanceMetric metric;
+	private final int[] palette;
+	private final float[] paletteUCS;
+	private final float[] minUCS, maxUCS;
+	private final ColorIndex index;
+
+	/**
+	 * @param palette the palette as packed (A)RGB values
+	 * @param vc the viewing conditions to measure distances under
+	 */
+	public Quantizer(int[] palette, ViewingConditions vc) {
+		if (palette.length == 0)
+			throw new IllegalArgumentException("palette must not be empty");
+		this.vc = vc;
+		this.metric = DistanceMetric.cam02UCS(vc);
+		this.palette = palette.clone();
+		for (int i = 0; i < palette.length; i++)
+			this.palette[i] |= 0xff000000;
+		this.paletteUCS = ColorTools.toUCS_Jab(ColorBuffer.fromARGB(this.palette), vc);
+		this.minUCS = Arrays.copyOf(paletteUCS, 3);
+		this.maxUCS = Arrays.copyOf(paletteUCS, 3);
+		for (int i = 3; i < paletteUCS.length; i++) {
+			minUCS[i % 3] = Math.min(minUCS[i % 3], paletteUCS[i]);
+			maxUCS[i % 3] = Math.max(maxUCS[i % 3], paletteUCS[i]);
+		}
+		this.index = new ColorIndex(paletteUCS);
+	}
+
+	/**
+	 * Creates a quantizer for the dominant colors of an image.
+	 * @param image the image
+	 * @param colors the maximum number of palette colors
+	 * @param vc the viewing conditions to measure distances under
+	 * @return the quantizer
+	 * @see DominantColors
+	 */
+	public static Quantizer fromImage(BufferedImage image, int colors, ViewingConditions vc) {
+		DominantColors.Cluster[] clusters = new DominantColors(colors, vc).extract(image);
+		if (clusters.length == 0)
+			throw new IllegalArgumentException("image has no opaque pixels");
+		int[] palette = new int[clusters.length];
+		for (int i = 0; i < clusters.length; i++)
+			palette[i] = clusters[i].getColor().getARGB();
+		return new Quantizer(palette, vc);
+	}
+
+	/**
+	 * @return the viewing conditions distances are measured under
+	 */
+	public ViewingConditions getViewingConditions() {
+		return vc;
+	}
+
+	/**
+	 * @return a copy of the palette as opaque packed ARGB values
+	 */
+	public int[] getPalette() {
+		return palette.clone();
+	}
+
+	/**
+	 * Finds the nearest palette color of a pixel.
+	 * @param argb the packed pixel
+	 * @return the index of the nearest palette color
+	 */
+	public int nearest(int argb) {
+		float[] ucs = new float[3];
+		return nearest(argb, ucs);
+	}
+
+	/**
+	 * converts a single pixel with the scalar conversion; pixels that can
+	 * be collected first are converted in bulk instead
+	 */
+	private int nearest(int argb, float[] tmp) {
+		tmp[0] = (argb >>> 16 & 0xff) / 255f;
+		tmp[1] = (argb >>> 8 & 0xff) / 255f;
+		tmp[2] = (argb & 0xff) / 255f;
+		metric.prepare(metric.getColorSpace().fromRGB(tmp), 0, tmp, 0, 1);
+		return index.nearest(tmp);
+	}
+
+	/**
+	 * Maps pixels to their nearest palette colors, without dithering.
+	 * @param argb the packed pixels
+	 * @return the palette index of each pixel
+	 */
+	public int[] map(int[] argb) {
+		return map(argb, Math.max(1, argb.length), Dithering.NONE);
+	}
+
+	/**
+	 * Maps the pixels of an image, given row by row, to palette colors.
+	 * @param argb the packed pixels
+	 * @param width the width of the image
+	 * @param dithering the error diffusion to apply
+	 * @return the palette index of each pixel
+	 */
+	public int[] map(int[] argb, int width, Dithering dithering) {
+		if (width <= 0 || argb.length % width != 0)
+			throw new IllegalArgumentException("pixels do not form rows of the given width");
+		int[] res = new int[argb.length];
+		Instrumentation.Operation op = Instrumentation.begin("quantize");
+		try {
+			switch (dithering) {
+			case NONE:
+				IntStream.range(0, (argb.length + BLOCK - 1) / BLOCK).parallel().forEach(b -> {
+					int start = b * BLOCK, end = Math.min(argb.length, start + BLOCK);
+					// collect the cache misses of the block, then convert them at once
+					int[] keys = new int[CACHE];
+					int[] values = new int[CACHE];
+					Arrays.fill(keys, -1);
+					float[] misses = new float[3 * (end - start)];
+					int n = 0;
+					for (int i = start; i < end; i++) {
+						int rgb = argb[i] & 0xffffff;
+						int slot = (rgb * 0x9E3779B1) >>> 20;
+						if (keys[slot] != rgb) {
+							keys[slot] = rgb;
+							values[slot] = n;
+							misses[3 * n] = (rgb >>> 16 & 0xff) / 255f;
+							misses[3 * n + 1] = (rgb >>> 8 & 0xff) / 255f;
+							misses[3 * n + 2] = (rgb & 0xff) / 255f;
+							n++;
+						}
+						res[i] = values[slot];
+					}
+					metric.getColorSpace().fromRGB(misses, 0, misses, 0, n);
+					metric.prepare(misses, 0, misses, 0, n);
+					int[] nearest = new int[n];
+					float[] tmp = new float[3];
+					for (int k = 0; k < n; k++) {
+						System.arraycopy(misses, 3 * k, tmp, 0, 3);
+						nearest[k] = index.nearest(tmp);
+					}
+					for (int i = start; i < end; i++)
+						res[i] = nearest[res[i]];
+				});
+				break;
+			case LINEAR:
+				diffuseLinear(argb, width, res);
+				break;
+			case PERCEPTUAL:
+				diffusePerceptual(argb, width, res);
+				break;
+			}
+		} finally {
+			Instrumentation.end(op);
+		}
+		return res;
+	}
+
+	/**
+	 * Quantizes an image to an indexed image.
+	 * @param image the image
+	 * @param dithering the error diffusion to apply
+	 * @return a {@link BufferedImage#TYPE_BYTE_INDEXED} image using the palette
+	 * @throws IllegalStateException if the palette has more than 256 colors
+	 */
+	public BufferedImage toIndexed(BufferedImage image, Dithering dithering) {
+		int n = palette.length;
+		if (n > 256)
+			throw new IllegalStateException("indexed images hold at most 256 colors");
+		byte[] r = new byte[n], g = new byte[n], b = new byte[n];
+		for (int i = 0; i < n; i++) {
+			r[i] = (byte) (palette[i] >>> 16);
+			g[i] = (byte) (palette[i] >>> 8);
+			b[i] = (byte) palette[i];
+		}
+		IndexColorModel model = new IndexColorModel(8, n, r, g, b);
+		int w = image.getWidth(), h = image.getHeight();
+		int[] indices = map(image.getRGB(0, 0, w, h, null, 0, w), w, dithering);
+		BufferedImage res = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_INDEXED, model);
+		byte[] data = ((DataBufferByte) res.getRaster().getDataBuffer()).getData();
+		for (int i = 0; i < indices.length; i++)
+			data[i] = (byte) indices[i];
+		return res;
+	}
+
+	/**
+	 * Floyd-Steinberg in linear sRGB; adjusted colors are re-encoded to 8
+	 * bits, so the cache applies to them as well
+	 */
+	private void diffuseLinear(int[] argb, int width, int[] res) {
+		float[] cur = new float[3 * (width + 2)], next = new float[3 * (width + 2)];
+		float[] lin = new float[3 * palette.length];
+		for (int i = 0; i < palette.length; i++)
+			for (int c = 0; c < 3; c++)
+				lin[3 * i + c] = LINEAR[palette[i] >>> (16 - 8 * c) & 0xff];
+		int[] keys = new int[CACHE];
+		int[] values = new int[CACHE];
+		Arrays.fill(keys, -1);
+		float[] tmp = new float[3];
+		float[] v = new float[3];
+		for (int y = 0, rows = argb.length / width; y < rows; y++) {
+			for (int x = 0; x < width; x++) {
+				int p = argb[y * width + x];
+				int rgb = 0;
+				for (int c = 0; c < 3; c++) {
+					v[c] = Math.min(1, Math.max(0, LINEAR[p >>> (16 - 8 * c) & 0xff] + cur[3 * (x + 1) + c]));
+					rgb = rgb << 8 | encode(v[c]);
+				}
+				int slot = (rgb * 0x9E3779B1) >>> 20;
+				if (keys[slot] != rgb) {
+					keys[slot] = rgb;
+					values[slot] = nearest(rgb, tmp);
+				}
+				int q = values[slot];
+				res[y * width + x] = q;
+				for (int c = 0; c < 3; c++)
+					spread(v[c] - lin[3 * q + c], cur, next, x, c);
+			}
+			float[] t = cur;
+			cur = next;
+			next = t;
+			Arrays.fill(next, 0);
+		}
+	}
+
+	/**
+	 * Floyd-Steinberg in CAM02-UCS; distinct pixel values are converted once,
+	 * in bulk. Adjusted colors are clamped to the bounding box of the palette
+	 * so that errors the palette cannot compensate do not accumulate
+	 */
+	private void diffusePerceptual(int[] argb, int width, int[] res) {
+		int[] distinct = new int[argb.length];
+		for (int i = 0; i < argb.length; i++)
+			distinct[i] = argb[i] & 0xffffff;
+		distinct = IntStream.of(distinct).parallel().sorted().distinct().toArray();
+		float[] ucs = ColorTools.toUCS_Jab(ColorBuffer.fromARGB(distinct), vc);
+		float[] cur = new float[3 * (width + 2)], next = new float[3 * (width + 2)];
+		float[] v = new float[3];
+		for (int y = 0, rows = argb.length / width; y < rows; y++) {
+			for (int x = 0; x < width; x++) {
+				int d = Arrays.binarySearch(distinct, argb[y * width + x] & 0xffffff);
+				for (int c = 0; c < 3; c++)
+					v[c] = Math.min(maxUCS[c], Math.max(minUCS[c], ucs[3 * d + c] + cur[3 * (x + 1) + c]));
+				int q = index.nearest(v);
+				res[y * width + x] = q;
+				for (int c = 0; c < 3; c++)
+					spread(v[c] - paletteUCS[3 * q + c], cur, next, x, c);
+			}
+			float[] t = cur;
+			cur = next;
+			next = t;
+			Arrays.fill(next, 0);
+		}
+	}
+
+	/**
+	 * distributes the error of pixel x in channel c to the right (7/16) and
+	 * to the next row (3/16, 5/16, 1/16); rows are padded by one pixel on
+	 * either side
+	 */
+	private static void spread(float err, float[] cur, float[] next, int x, int c) {
+		int i = 3 * (x + 1) + c;
+		cur[i + 3] += err * 7 / 16;
+		next[i - 3] += err * 3 / 16;
+		next[i] += err * 5 / 16;
+		next[i + 3] += err / 16;
+	}
+
+	/**
+	 * the 8 bit sRGB level of a linear value in 0..1
+	 */
+	private static int encode(float linear) {
+		double c = linear <= 0.0031308 ? linear * 12.92 : 1.055 * Math.pow(linear, 1 / 2.4) - 0.055;
+		return (int) Math.round(c * 255);
+	}
+}
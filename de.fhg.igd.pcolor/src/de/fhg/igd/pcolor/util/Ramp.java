@@ -0,0 +1,141 @@
+package de.fhg.igd.pcolor.util;
+
+import java.util.Arrays;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLab;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.util.Colormap.Interpolation;
+
+/**
+ * A piecewise linear color ramp over 0..1, interpolating control points in
+ * the coordinates of an {@link Interpolation}. Samples are produced as
+ * polar triplets of {@link #getColorSpace()} so they can be gamut mapped
+ * and converted in bulk; sampling allocates nothing. Ramps are immutable.
+ */
+final class Ramp {
+
+	private final CS_CAMLch space;
+	private final DistanceMetric ucs;
+	private final Interpolation interpolation;
+	private final float hueCircle;
+	private final float[] positions;
+	private final float[] coords;
+	private final float[] alpha;
+
+	/**
+	 * @param space the space the ramp is defined in; CAMLab spaces are
+	 *        replaced by their polar equivalent
+	 * @param controls the control points, at least one
+	 * @param positions ascending positions of the control points in 0..1, or
+	 *        null to space them equally
+	 * @param interpolation the coordinates to interpolate in
+	 */
+	Ramp(CS_CAMLch space, PColor[] controls, float[] positions, Interpolation interpolation) {
+		if (controls.length == 0)
+			throw new IllegalArgumentException("at least one control point is needed");
+		if (positions != null && positions.length != controls.length)
+			throw new IllegalArgumentException("positions do not match control points");
+		if (space instanceof CS_CAMLab)
+			space = new CS_CAMLch(space.getViewingconditions(), space.getCorrelateConfig());
+		this.ucs = interpolation == Interpolation.UCS ? DistanceMetric.cam02UCS(space.getViewingconditions()) : null;
+		if (ucs != null)
+			space = ucs.getColorSpace();
+		this.space = space;
+		CS_CAMLab lab = CS_CAMLab.deriveFromLch(space);
+		this.interpolation = interpolation;
+		this.hueCircle = space.getMaxValue(CAMLch.h);
+		int n = controls.length;
+		this.positions = new float[n];
+		for (int i = 0; i < n; i++) {
+			this.positions[i] = positions != null ? positions[i] : n == 1 ? 0 : i / (n - 1f);
+			if (i > 0 && this.positions[i] < this.positions[i - 1])
+				throw new IllegalArgumentException("positions must be ascending");
+		}
+		this.coords = new float[3 * n];
+		this.alpha = new float[n];
+		for (int i = 0; i < n; i++) {
+			float[] lch = PColor.convert(controls[i], space).getComponents();
+			alpha[i] = controls[i].getAlpha();
+			switch (interpolation) {
+			case JCH:
+				System.arraycopy(lch, 0, coords, 3 * i, 3);
+				break;
+			case JAB:
+				System.arraycopy(lab.lchToLab(lch), 0, coords, 3 * i, 3);
+				break;
+			case UCS:
+				ucs.prepare(lch, 0, coords, 3 * i, 1);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return the polar space samples are in; JMh for UCS interpolation
+	 */
+	CS_CAMLch getColorSpace() {
+		return space;
+	}
+
+	/**
+	 * Samples the ramp. Positions outside of the control points take the
+	 * nearest control point. Control points sharing a position form a hard
+	 * stop; at the stop itself the last of them applies.
+	 * @param t the position in 0..1
+	 * @param out receives the triplet in {@link #getColorSpace()}
+	 * @param off the offset of the triplet
+	 * @return the interpolated alpha
+	 */
+	float sample(float t, float[] out, int off) {
+		int n = positions.length;
+		int i = Arrays.binarySearch(positions, t);
+		if (i < 0)
+			i = -i - 2;
+		else
+			while (i < n - 1 && positions[i + 1] == t)
+				i++;
+		float w;
+		if (i < 0) {
+			i = 0;
+			w = 0;
+		} else if (i >= n - 1) {
+			i = n - 1;
+			w = 0;
+		} else {
+			float span = positions[i + 1] - positions[i];
+			w = span > 0 ? (t - positions[i]) / span : 0;
+		}
+		int j = Math.min(i + 1, n - 1);
+		float x = coords[3 * i] + (coords[3 * j] - coords[3 * i]) * w;
+		float y = coords[3 * i + 1] + (coords[3 * j + 1] - coords[3 * i + 1]) * w;
+		float z;
+		switch (interpolation) {
+		case JCH:
+			z = coords[3 * i + 2] + ColorTools.hueDifference(coords[3 * i + 2], coords[3 * j + 2], hueCircle) * w;
+			out[off] = x;
+			out[off + 1] = y;
+			out[off + 2] = z < 0 ? z + hueCircle : z >= hueCircle ? z - hueCircle : z;
+			break;
+		case JAB:
+			z = coords[3 * i + 2] + (coords[3 * j + 2] - coords[3 * i + 2]) * w;
+			out[off] = x;
+			out[off + 1] = (float) Math.hypot(y, z);
+			out[off + 2] = hue(y, z);
+			break;
+		case UCS:
+			out[off] = x;
+			out[off + 1] = y;
+			out[off + 2] = coords[3 * i + 2] + (coords[3 * j + 2] - coords[3 * i + 2]) * w;
+			ucs.unprepare(out, off, out, off, 1);
+			break;
+		}
+		return alpha[i] + (alpha[j] - alpha[i]) * w;
+	}
+
+	private float hue(float a, float b) {
+		float h = (float) (Math.atan2(b, a) * hueCircle / (2 * Math.PI));
+		return h < 0 ? h + hueCircle : h;
+	}
+}
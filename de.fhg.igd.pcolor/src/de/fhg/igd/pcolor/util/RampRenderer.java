@@ -0,0 +1,197 @@
+package de.fhg.igd.pcolor.util;
+
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+import de.fhg.igd.pcolor.CAMLch;
+import de.fhg.igd.pcolor.PColor;
+import de.fhg.igd.pcolor.colorspace.CS_CAMLch;
+import de.fhg.igd.pcolor.util.Colormap.Interpolation;
+
+/**
+ * Renders perceptual color ramps (gradients) directly into pixel arrays and
+ * rasters.
+ * <p>
+ * Where blending colors one by one with {@link CAMLch#blend(CAMLch, CAMLch, float)}
+ * and {@link PColor#getARGB()} creates several objects per pixel, a renderer
+ * converts its control points to interpolation coordinates once and
+ * converts whole rows with the bulk inverse transform, see
+ * {@link CS_CAMLch#toRGB(float[], int, float[], int, int)}. Only the row
+ * along the ramp is converted; the other rows of an area are copies.
+ * <p>
+ * Renderers keep scratch arrays between calls and are not thread-safe; use
+ * one per thread.
+ */
+public class RampRenderer {
+
+	private final Ramp ramp;
+	private final GamutMapper mapper;
+	private float[] comp = new float[0];
+	private float[] alpha = new float[0];
+	private int[] row = new int[0];
+	private int[] line = new int[0];
+	private int[] samples = new int[0];
+
+	/**
+	 * Creates a renderer that blends two colors as
+	 * {@link CAMLch#blend(CAMLch, CAMLch, float)} does and gamut maps the
+	 * result.
+	 * @param from the color at the start of the ramp
+	 * @param to the color at the end of the ramp
+	 */
+	public RampRenderer(CAMLch from, CAMLch to) {
+		this(from.getColorSpace(), Interpolation.JCH, new PColor[] { from, to }, null, true);
+	}
+
+	/**
+	 * Creates a renderer for equally spaced colors which are gamut mapped.
+	 * @param space the CAM space to interpolate in
+	 * @param interpolation the coordinates to interpolate in
+	 * @param colors the colors along the ramp, in any color space
+	 */
+	public RampRenderer(CS_CAMLch space, Interpolation interpolation, PColor... colors) {
+		this(space, interpolation, colors, null, true);
+	}
+
+	/**
+	 * @param space the CAM space to interpolate in
+	 * @param interpolation the coordinates to interpolate in
+	 * @param colors the colors along the ramp, in any color space
+	 * @param positions ascending positions of the colors in 0..1, or null
+	 *        to space them equally
+	 * @param gamutMapping whether to reduce chroma of out-of-gamut colors
+	 *        or to clip them in sRGB
+	 */
+	public RampRenderer(CS_CAMLch space, Interpolation interpolation, PColor[] colors, float[] positions,
+			boolean gamutMapping) {
+		this.ramp = new Ramp(space, colors, positions, interpolation);
+		this.mapper = gamutMapping ? new GamutMapper(ramp.getColorSpace()) : null;
+	}
+
+	/**
+	 * Renders the whole ramp into a run of pixels.
+	 * @param argb receives the packed ARGB pixels
+	 * @param off the offset of the first pixel
+	 * @param length the number of pixels
+	 */
+	public void render(int[] argb, int off, int length) {
+		render(0, 1, argb, off, length);
+	}
+
+	/**
+	 * Renders a section of the ramp into a run of pixels, e.g. for tiles.
+	 * The first pixel is at t0 and the last at t1.
+	 * @param t0 the ramp position of the first pixel
+	 * @param t1 the ramp position of the last pixel
+	 * @param argb receives the packed ARGB pixels
+	 * @param off the offset of the first pixel
+	 * @param length the number of pixels
+	 */
+	public void render(float t0, float t1, int[] argb, int off, int length) {
+		if (comp.length < 3 * length) {
+			comp = new float[3 * length];
+			alpha = new float[length];
+		}
+		float step = length > 1 ? (t1 - t0) / (length - 1) : 0;
+		for (int i = 0; i < length; i++)
+			alpha[i] = ramp.sample(t0 + step * i, comp, 3 * i);
+		if (mapper != null) {
+			mapper.mapToRGB(comp, 0, comp, 0, length);
+		} else {
+			ramp.getColorSpace().toRGB(comp, 0, comp, 0, length);
+		}
+		for (int i = 0; i < length; i++)
+			argb[off + i] = Colormap.packARGB(comp, 3 * i, alpha[i]);
+	}
+
+	/**
+	 * Renders the ramp into an area of a pixel array, e.g. the data of a
+	 * {@link java.awt.image.BufferedImage#TYPE_INT_ARGB} image.
+	 * @param pixels receives the packed ARGB pixels
+	 * @param off the offset of the top left pixel
+	 * @param scansize the distance between rows
+	 * @param width the width of the area
+	 * @param height the height of the area
+	 * @param vertical whether the ramp runs from top to bottom rather than
+	 *        from left to right
+	 */
+	public void render(int[] pixels, int off, int scansize, int width, int height, boolean vertical) {
+		if (width <= 0 || height <= 0)
+			return;
+		if (vertical) {
+			int[] col = row(height);
+			for (int y = 0; y < height; y++)
+				Arrays.fill(pixels, off + y * scansize, off + y * scansize + width, col[y]);
+		} else {
+			render(pixels, off, width);
+			for (int y = 1; y < height; y++)
+				System.arraycopy(pixels, off, pixels, off + y * scansize, width);
+		}
+	}
+
+	/**
+	 * Renders the ramp into a raster, e.g. that of a
+	 * {@link java.awt.image.BufferedImage}. Rasters with one integer element
+	 * per pixel receive packed ARGB values as used by
+	 * {@link java.awt.image.BufferedImage#TYPE_INT_ARGB} and
+	 * {@link java.awt.image.BufferedImage#TYPE_INT_RGB}; others must have
+	 * red, green, blue and optionally alpha bands.
+	 * @param raster the raster to fill
+	 * @param vertical whether the ramp runs from top to bottom rather than
+	 *        from left to right
+	 */
+	public void render(WritableRaster raster, boolean vertical) {
+		int width = raster.getWidth(), height = raster.getHeight();
+		int x0 = raster.getMinX(), y0 = raster.getMinY();
+		if (width <= 0 || height <= 0)
+			return;
+		int[] colors = row(vertical ? height : width);
+		boolean packed = raster.getTransferType() == DataBuffer.TYPE_INT && raster.getNumDataElements() == 1;
+		if (packed) {
+			for (int y = 0; y < height; y++)
+				raster.setDataElements(x0, y0 + y, width, 1, vertical ? line(width, colors[y]) : colors);
+			return;
+		}
+		int bands = raster.getNumBands();
+		if (bands != 3 && bands != 4)
+			throw new IllegalArgumentException("raster needs three or four bands");
+		if (samples.length < bands * width)
+			samples = new int[bands * width];
+		for (int y = 0; y < height; y++) {
+			if (vertical || y == 0) {
+				for (int x = 0; x < width; x++)
+					unpack(vertical ? colors[y] : colors[x], samples, x * bands, bands);
+			}
+			raster.setPixels(x0, y0 + y, width, 1, samples);
+		}
+	}
+
+	/**
+	 * renders the whole ramp into the scratch row
+	 */
+	private int[] row(int length) {
+		if (row.length != length)
+			row = new int[length];
+		render(row, 0, length);
+		return row;
+	}
+
+	/**
+	 * a scratch row of constant color, for vertical ramps in packed rasters
+	 */
+	private int[] line(int width, int argb) {
+		if (line.length != width)
+			line = new int[width];
+		Arrays.fill(line, argb);
+		return line;
+	}
+
+	private static void unpack(int argb, int[] samples, int off, int bands) {
+		samples[off] = argb >>> 16 & 0xff;
+		samples[off + 1] = argb >>> 8 & 0xff;
+		samples[off + 2] = argb & 0xff;
+		if (bands > 3)
+			samples[off + 3] = argb >>> 24;
+	}
+}